@@ -1,14 +1,29 @@
 package com.example.HyperledgerSpring.Account.Controller;
 
+import com.example.HyperledgerSpring.Account.AccountType;
 import com.example.HyperledgerSpring.Account.Domain.Account;
+import com.example.HyperledgerSpring.Account.Domain.AccountHistoryPage;
+import com.example.HyperledgerSpring.Account.Domain.AccountPage;
+import com.example.HyperledgerSpring.Account.Domain.AccountsResult;
+import com.example.HyperledgerSpring.Account.Domain.CreateResult;
+import com.example.HyperledgerSpring.Account.Domain.TransactionStatus;
+import com.example.HyperledgerSpring.Account.Domain.TransferResult;
 import com.example.HyperledgerSpring.Account.Service.AccountService;
 import com.example.HyperledgerSpring.Account.Service.AccountServiceImpl;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,8 +32,17 @@ import java.util.Map;
 @RequestMapping("account")
 public class AccountController {
 
+    // 체인코드 CreateAssetsBatch 한 번에 넣을 수 있는 최대 계좌 수
+    private static final int MAX_UPLOAD_BATCH_SIZE = 1000;
+
+    // 커밋 결과 알림(SSE)을 기다리는 최대 시간, account.tx.commit-timeout 보다 길게
+    private static final long TX_EVENTS_TIMEOUT_MILLIS = 120_000;
+
     private final AccountService accountService;
 
+    @Value("${account.upload.batch-size:500}")
+    private int uploadBatchSize;
+
     @Autowired
     public AccountController(AccountServiceImpl accountService){
         this.accountService = accountService;
@@ -26,11 +50,48 @@ public class AccountController {
 
 
     @GetMapping("list")
-    public ResponseEntity<List<Account>> getAllList(){
-        List<Account> accounts = this.accountService.getAllAccount();
+    public ResponseEntity<AccountPage> getAllList(@RequestParam(defaultValue = "100") int pageSize,
+                                                  @RequestParam(defaultValue = "") String bookmark,
+                                                  @RequestParam(required = false) String owner,
+                                                  @RequestParam(required = false) AccountType type,
+                                                  @RequestParam(defaultValue = "false") boolean fromLedger){
+        AccountPage page = this.accountService.getAccountPage(pageSize, bookmark, owner, type, fromLedger);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping("balance")
+    public ResponseEntity<AccountPage> getListByAmount(@RequestParam(required = false) Long minAmount,
+                                                       @RequestParam(required = false) Long maxAmount,
+                                                       @RequestParam(required = false) AccountType type,
+                                                       @RequestParam(defaultValue = "desc") String sort,
+                                                       @RequestParam(defaultValue = "100") int pageSize,
+                                                       @RequestParam(defaultValue = "") String bookmark){
+        AccountPage page = this.accountService.getAccountPageByAmount(minAmount, maxAmount, type, sort, pageSize, bookmark);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping("batch")
+    public ResponseEntity<AccountsResult> getAccounts(@RequestParam List<String> ids,
+                                                      @RequestParam(defaultValue = "false") boolean fromLedger){
+        AccountsResult accounts = this.accountService.getAccounts(ids, fromLedger);
         return ResponseEntity.ok(accounts);
     }
 
+    @GetMapping("{accountId}")
+    public ResponseEntity<Account> getAccount(@PathVariable String accountId,
+                                              @RequestParam(defaultValue = "false") boolean fromLedger){
+        Account account = this.accountService.getAccount(accountId, fromLedger);
+        return ResponseEntity.ok(account);
+    }
+
+    @GetMapping("history/{accountId}")
+    public ResponseEntity<AccountHistoryPage> getHistory(@PathVariable String accountId,
+                                                         @RequestParam(defaultValue = "100") int pageSize,
+                                                         @RequestParam(defaultValue = "") String bookmark){
+        AccountHistoryPage page = this.accountService.getAccountHistory(accountId, pageSize, bookmark);
+        return ResponseEntity.ok(page);
+    }
+
     @PostMapping("create")
     public ResponseEntity<Map> createAccount(final @Valid @RequestBody AccountInputForm accountInput){
         Account account = new Account(accountInput);
@@ -41,17 +102,91 @@ public class AccountController {
         return ResponseEntity.status(HttpStatus.CREATED).body(result);
     }
 
+    @PostMapping(value = "upload", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<List<CreateResult>> uploadAccounts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                             InputStream body) throws IOException {
+        int batchSize = Math.max(1, Math.min(uploadBatchSize, MAX_UPLOAD_BATCH_SIZE));
+        List<CreateResult> createResults = new ArrayList<>();
+
+        try (AccountUploadReader reader = new AccountUploadReader(body, contentType.startsWith("application/x-ndjson"))) {
+            List<Account> accounts;
+
+            while (!(accounts = reader.next(batchSize)).isEmpty()){
+                int offset = createResults.size();
+
+                try {
+                    for (CreateResult createResult : this.accountService.createAccounts(accounts)){
+                        createResult.setIndex(offset + createResult.getIndex());
+                        createResults.add(createResult);
+                    }
+                } catch (HttpServerErrorException e){
+                    // 앞의 묶음은 이미 커밋됨, 같은 파일을 다시 올리면 accountId 가 있는 계좌는 EXISTS 로 건너뜀
+                    throw new HttpServerErrorException(e.getStatusCode(), offset + "번째 계좌부터 업로드 실패 \n" + e.getStatusText());
+                }
+            }
+        }
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(createResults);
+    }
+
     @PutMapping("transfer")
-    public ResponseEntity<Map> transferAccount(final @Valid @RequestBody TransferInputForm transferInputForm){
+    public ResponseEntity<Map> transferAccount(final @Valid @RequestBody TransferInputForm transferInputForm,
+                                               @RequestParam(defaultValue = "false") boolean async){
 
         String senderId = transferInputForm.getSender().toString();
         String receiverId = transferInputForm.getReceiver().toString();
         String sendAmount = transferInputForm.getSendAmount().toString();
 
+        if (async){
+            // 커밋을 기다리지 않고 txId 를 바로 돌려줌, 결과는 tx/{txId} 조회나 tx/{txId}/events 로 확인
+            TransactionStatus status = this.accountService.tranferAccountAsync(senderId, receiverId, sendAmount);
+            String statusUrl = "/account/tx/" + status.getTxId();
+
+            Map<String, String> result = new HashMap<>();
+            result.put("txId", status.getTxId());
+            result.put("status", status.getStatus());
+            result.put("message", status.getResult());
+            result.put("statusUrl", statusUrl);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).header(HttpHeaders.LOCATION, statusUrl).body(result);
+        }
+
         String transferResult = this.accountService.tranferAccount(senderId, receiverId, sendAmount);
         Map<String, String> result = new HashMap<>();
         result.put("message", transferResult);
         return ResponseEntity.status(HttpStatus.CREATED).body(result);
     }
 
+    @GetMapping("tx/{txId}")
+    public ResponseEntity<TransactionStatus> getTransactionStatus(@PathVariable String txId){
+        TransactionStatus status = this.accountService.getTransactionStatus(txId);
+        return ResponseEntity.ok(status);
+    }
+
+    @GetMapping(value = "tx/{txId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getTransactionEvents(@PathVariable String txId){
+        SseEmitter emitter = new SseEmitter(TX_EVENTS_TIMEOUT_MILLIS);
+
+        // 커밋 결과가 나오면 status 이벤트 하나를 보내고 닫음 (이미 끝난 트랜잭션이면 바로)
+        boolean tracked = this.accountService.onTransactionComplete(txId, status -> {
+            try {
+                emitter.send(SseEmitter.event().name("status").data(status, MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (IOException | IllegalStateException e){
+                emitter.completeWithError(e);
+            }
+        });
+
+        if (!tracked){
+            throw new HttpServerErrorException(HttpStatus.NOT_FOUND, "트랜잭션이 존재하지 않거나 조회 기간이 지났습니다.");
+        }
+
+        return emitter;
+    }
+
+    @PutMapping("transfer/batch")
+    public ResponseEntity<List<TransferResult>> transferBatch(final @Valid @RequestBody TransferBatchInputForm transferBatchInputForm){
+        List<TransferResult> transferResults = this.accountService.transferBatch(transferBatchInputForm.getTransfers());
+        return ResponseEntity.status(HttpStatus.CREATED).body(transferResults);
+    }
+
 }
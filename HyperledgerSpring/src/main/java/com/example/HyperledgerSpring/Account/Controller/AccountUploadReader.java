@@ -0,0 +1,108 @@
+package com.example.HyperledgerSpring.Account.Controller;
+
+import com.example.HyperledgerSpring.Account.AccountType;
+import com.example.HyperledgerSpring.Account.Domain.Account;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 업로드된 계좌 목록을 한 줄씩 읽어서 batchSize 단위로 넘겨줌 (전체 파일을 메모리에 올리지 않음)
+ *
+ * CSV    : owner,amount,type[,accountId] (첫 줄이 owner 로 시작하면 헤더로 보고 건너뜀)
+ * NDJSON : {"owner": "A", "amount": 100, "type": "USER", "accountId": "..."}
+ *
+ * accountId 를 주면 같은 파일을 다시 올려도 이미 생성된 계좌는 EXISTS 로 건너뛰므로 재시도가 안전함
+ */
+public class AccountUploadReader implements Closeable {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    // accountId 가 없는 줄은 업로드 시작 시각 * ID_SPACE + 줄 번호로 ID 를 만듦 (같은 밀리초에 만든 계좌끼리 겹치지 않도록)
+    private static final long ID_SPACE = 1_000_000L;
+
+    private final BufferedReader reader;
+    private final boolean ndjson;
+    private final long idBase;
+    private int lineNumber;
+
+    public AccountUploadReader(InputStream inputStream, boolean ndjson) {
+        this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        this.ndjson = ndjson;
+        this.idBase = System.currentTimeMillis() * ID_SPACE;
+    }
+
+    /**
+     * @return 다음 계좌 묶음, 더 읽을 줄이 없으면 빈 리스트
+     */
+    public List<Account> next(int batchSize) throws IOException {
+        List<Account> accounts = new ArrayList<>();
+        String line;
+
+        while (accounts.size() < batchSize && (line = reader.readLine()) != null) {
+            lineNumber++;
+
+            if (line.isBlank() || (!ndjson && lineNumber == 1 && line.trim().toLowerCase().startsWith("owner"))){
+                continue;
+            }
+
+            try {
+                accounts.add(ndjson ? parseJson(line) : parseCsv(line));
+            } catch (IllegalArgumentException | IOException e){
+                throw new HttpServerErrorException(HttpStatus.BAD_REQUEST, lineNumber + "번째 줄의 형식이 잘못되었습니다. \n" + e.getMessage());
+            }
+        }
+
+        return accounts;
+    }
+
+    private Account parseCsv(String line) {
+        String[] columns = line.split(",", -1);
+
+        if (columns.length < 3 || columns.length > 4){
+            throw new IllegalArgumentException("owner,amount,type[,accountId] 형식이어야 합니다.");
+        }
+
+        String accountId = columns.length == 4 ? columns[3].trim() : "";
+        return newAccount(accountId, columns[0].trim(), Long.parseLong(columns[1].trim()), AccountType.valueOf(columns[2].trim()));
+    }
+
+    private Account parseJson(String line) throws IOException {
+        JsonNode node = mapper.readTree(line);
+
+        if (!node.hasNonNull("owner") || !node.hasNonNull("amount") || !node.hasNonNull("type")){
+            throw new IllegalArgumentException("owner, amount, type 은 필수입니다.");
+        }
+
+        String accountId = node.hasNonNull("accountId") ? node.get("accountId").asText() : "";
+        return newAccount(accountId, node.get("owner").asText(), node.get("amount").asLong(), AccountType.valueOf(node.get("type").asText()));
+    }
+
+    private Account newAccount(String accountId, String owner, long amount, AccountType type) {
+        if (lineNumber >= ID_SPACE){
+            throw new IllegalArgumentException("한 번에 업로드할 수 있는 줄 수를 넘었습니다.");
+        }
+
+        return Account.builder()
+                .accountId(accountId.isEmpty() ? String.valueOf(idBase + lineNumber) : accountId)
+                .owner(owner)
+                .amount(amount)
+                .type(type)
+                .build();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.HyperledgerSpring.Account.Controller;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class TransferBatchInputForm {
+
+    @NotEmpty
+    @Size(max = 1000)
+    @Valid
+    List<TransferInputForm> transfers;
+
+}
@@ -0,0 +1,17 @@
+package com.example.HyperledgerSpring.Account.Domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountHistoryEntry {
+
+    private String txId;
+    private String timestamp;
+    private boolean deleted;
+    // 삭제된 이력이면 null
+    private Account account;
+}
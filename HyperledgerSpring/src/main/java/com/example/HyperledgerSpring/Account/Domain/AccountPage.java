@@ -0,0 +1,18 @@
+package com.example.HyperledgerSpring.Account.Domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountPage {
+
+    private List<Account> records = new ArrayList<>();
+    private String bookmark = "";
+    private int fetchedCount;
+}
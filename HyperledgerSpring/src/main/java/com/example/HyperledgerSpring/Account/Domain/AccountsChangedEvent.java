@@ -0,0 +1,35 @@
+package com.example.HyperledgerSpring.Account.Domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 체인코드가 잔액을 바꾸는 트랜잭션마다 하나씩 보내는 AccountsChanged 이벤트
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AccountsChangedEvent {
+
+    private String tx;
+    private String fn;
+    private long seq;
+    private long commission;
+    private List<Change> changes = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Change {
+
+        private String id;
+        // 트랜잭션 후 잔액, 체인코드가 모르는 경우(샤딩 계좌, 수수료 계좌)는 null
+        private Long balance;
+        private long delta;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.HyperledgerSpring.Account.Domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountsResult {
+
+    private List<Account> accounts = new ArrayList<>();
+    // 원장에 없는 계좌 ID
+    private List<String> missing = new ArrayList<>();
+}
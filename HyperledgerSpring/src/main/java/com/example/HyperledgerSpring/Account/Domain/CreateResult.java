@@ -0,0 +1,18 @@
+package com.example.HyperledgerSpring.Account.Domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreateResult {
+
+    public static final String CREATED = "CREATED";
+    public static final String EXISTS = "EXISTS";
+
+    private int index;
+    private String accountId;
+    private String status;
+}
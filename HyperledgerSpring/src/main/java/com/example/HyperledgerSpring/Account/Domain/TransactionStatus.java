@@ -0,0 +1,27 @@
+package com.example.HyperledgerSpring.Account.Domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionStatus {
+
+    public static final String PENDING = "PENDING";
+    public static final String COMMITTED = "COMMITTED";
+    public static final String FAILED = "FAILED";
+
+    private String txId;
+    private String status;
+    // 피어의 트랜잭션 검증 코드 (VALID, MVCC_READ_CONFLICT 등), 커밋 전이면 null
+    private String code;
+    private Long blockNumber;
+    // 체인코드가 보증 단계에서 돌려준 결과
+    private String result;
+
+    public boolean isDone(){
+        return !PENDING.equals(status);
+    }
+}
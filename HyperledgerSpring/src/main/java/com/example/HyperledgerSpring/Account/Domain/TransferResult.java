@@ -0,0 +1,21 @@
+package com.example.HyperledgerSpring.Account.Domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferResult {
+
+    private int index;
+    private String sender;
+    private String receiver;
+    private long amount;
+    private long commission;
+    private long senderAmount;
+    private long receiverAmount;
+    // TransferAccount 가 돌려주는 것과 같은 형식의 결과
+    private String message;
+}
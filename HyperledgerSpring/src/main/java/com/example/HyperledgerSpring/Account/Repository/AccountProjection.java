@@ -0,0 +1,297 @@
+package com.example.HyperledgerSpring.Account.Repository;
+
+import com.example.HyperledgerSpring.Account.AccountType;
+import com.example.HyperledgerSpring.Account.Domain.Account;
+import com.example.HyperledgerSpring.Account.Domain.AccountPage;
+import com.example.HyperledgerSpring.Account.Domain.AccountsChangedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.hyperledger.fabric.client.CloseableIterator;
+import org.hyperledger.fabric.client.InMemoryCheckpointer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 원장 계좌를 메모리에 복제한 조회용 뷰.
+ *
+ * GetAssetsPage 로 전체 계좌를 한 번 읽어 채우고, 그 뒤로는 체인코드의 AccountsChanged 이벤트로 갱신한다.
+ * 이벤트 수신을 전체 조회보다 먼저 시작하므로 조회 중에 커밋된 변경도 빠지지 않는다. 이벤트에 잔액이 있으면
+ * 그 값으로 바꾸고(두 번 적용해도 같은 결과), 잔액이 없으면(샤딩 계좌, 수수료 계좌) delta 를 더한다.
+ * 원장을 다시 읽는 것은 처음 보는 계좌와, 원장에서 읽은 시각 전에 만들어진 트랜잭션(seq)의 delta 뿐이다.
+ * 그런 delta 는 읽은 잔액에 이미 들어 있을 수도 있어서 더하지 않고 GetAccounts 로 다시 읽는다.
+ *
+ * 이벤트 스트림이 끊기면 체크포인트(마지막으로 적용한 이벤트)부터 다시 받는다. 끊긴 뒤 max-staleness 가
+ * 지나면 isFresh() 가 false 가 되어 서비스는 원장에서 조회한다. 수수료 계좌 잔액은 GetAccounts 와 같이
+ * 아직 정산(SweepCommission)되지 않은 수수료까지 더한 값이다.
+ */
+@Slf4j
+@Component
+public class AccountProjection {
+
+    private static final String EVENT_NAME = "AccountsChanged";
+    private static final String ACCOUNT_KEY_PREFIX = "account:";
+    private static final int PAGE_SIZE = 500;
+    // 체인코드의 MAX_PAGE_SIZE 와 같은 상한
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final long RETRY_MILLIS = 5000;
+    // seq 는 트랜잭션을 만든 클라이언트 시계 기준이므로 서버 시계와 이만큼 어긋나도 delta 를 두 번 더하지 않게 여유를 둠
+    private static final long CLOCK_SKEW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final AccountRepository accountRepository;
+    private final FabricGateWay fabricGateWay;
+    private final boolean enabled;
+    private final Duration maxStaleness;
+
+    // accountId 순으로 정렬해서 GetAssetsPage 와 같은 순서로 페이지 조회
+    private final ConcurrentSkipListMap<String, Account> accounts = new ConcurrentSkipListMap<>();
+    private final InMemoryCheckpointer checkpointer = new InMemoryCheckpointer();
+    // GetAccounts 로 다시 읽은 계좌의 읽은 시각(epoch nanos), 없으면 전체 조회를 마친 시각
+    private final Map<String, Long> readAt = new ConcurrentHashMap<>();
+
+    private volatile String commissionAccountId;
+    private volatile boolean ready;
+    private volatile long bootstrappedAt;
+    // 이벤트 스트림이 끊긴 시각, 연결되어 있으면 0
+    private volatile long disconnectedAt;
+    private volatile boolean running;
+    private volatile CloseableIterator<ChaincodeEvent> events;
+    private Thread listener;
+
+    @Autowired
+    public AccountProjection(AccountRepository fabricAccountRepository, FabricGateWay fabricGateWay,
+                             @Value("${account.projection.enabled:true}") boolean enabled,
+                             @Value("${account.projection.max-staleness:5s}") Duration maxStaleness) {
+        this.accountRepository = fabricAccountRepository;
+        this.fabricGateWay = fabricGateWay;
+        this.enabled = enabled;
+        this.maxStaleness = maxStaleness;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        running = true;
+        listener = new Thread(this::listen, "account-projection");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        closeEvents();
+
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    /**
+     * 뷰에서 읽어도 되는지, 즉 전체 조회가 끝났고 이벤트 스트림이 연결되어 있거나 끊긴 지 max-staleness 이내인지.
+     */
+    public boolean isFresh() {
+        if (!ready) {
+            return false;
+        }
+
+        long disconnected = disconnectedAt;
+        return disconnected == 0 || System.currentTimeMillis() - disconnected <= maxStaleness.toMillis();
+    }
+
+    public Optional<Account> findById(String accountId) {
+        return Optional.ofNullable(accounts.get(accountId));
+    }
+
+    public List<Account> findAllById(List<String> accountIds) {
+        List<Account> found = new ArrayList<>();
+
+        // GetAccounts 와 같이 중복 ID 는 한 번만
+        for (String accountId : new LinkedHashSet<>(accountIds)) {
+            Account account = accounts.get(accountId);
+
+            if (account != null) {
+                found.add(account);
+            }
+        }
+
+        return found;
+    }
+
+    public Optional<Account> findCommissionAccount() {
+        String accountId = commissionAccountId;
+        return accountId == null ? Optional.empty() : findById(accountId);
+    }
+
+    /**
+     * GetAssetsPage 와 같은 순서, 같은 bookmark 형식으로 페이지 조회 (뷰와 원장을 섞어서 넘겨도 이어짐)
+     */
+    public AccountPage getPage(int pageSize, String bookmark) {
+        int size = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        String fromId = bookmark == null || !bookmark.startsWith(ACCOUNT_KEY_PREFIX) ? "" : bookmark.substring(ACCOUNT_KEY_PREFIX.length());
+
+        List<Account> records = new ArrayList<>();
+        String next = "";
+
+        for (Map.Entry<String, Account> entry : accounts.tailMap(fromId, true).entrySet()) {
+            if (records.size() == size) {
+                next = ACCOUNT_KEY_PREFIX + entry.getKey();
+                break;
+            }
+
+            records.add(entry.getValue());
+        }
+
+        return new AccountPage(records, next, records.size());
+    }
+
+    private void listen() {
+        while (running) {
+            try {
+                if (!ready) {
+                    bootstrap();
+                } else {
+                    events = openEvents();
+                }
+
+                disconnectedAt = 0;
+
+                while (running && events.hasNext()) {
+                    apply(events.next());
+                }
+            } catch (RuntimeException e) {
+                if (running) {
+                    log.warn("계좌 이벤트 수신 중단, {}ms 후 다시 연결", RETRY_MILLIS, e);
+                }
+            } finally {
+                closeEvents();
+            }
+
+            if (disconnectedAt == 0) {
+                disconnectedAt = System.currentTimeMillis();
+            }
+
+            // 이벤트를 하나도 못 받았으면 어디서부터 이어 받을지 모르므로 전체 조회부터 다시
+            if (checkpointer.getBlockNumber().isEmpty()) {
+                ready = false;
+            }
+
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void bootstrap() {
+        // 이벤트 수신을 먼저 시작하고 전체 조회, 조회 중에 쌓인 이벤트는 조회가 끝난 뒤 순서대로 적용
+        events = openEvents();
+
+        accounts.clear();
+        readAt.clear();
+        commissionAccountId = null;
+
+        String bookmark = "";
+        AccountPage page;
+
+        do {
+            page = accountRepository.getPage(PAGE_SIZE, bookmark);
+
+            for (Account account : page.getRecords()) {
+                put(account);
+            }
+
+            bookmark = page.getBookmark();
+        } while (page.getFetchedCount() == PAGE_SIZE);
+
+        bootstrappedAt = now();
+        ready = true;
+        log.info("계좌 뷰 전체 조회 완료, {}개", accounts.size());
+    }
+
+    private CloseableIterator<ChaincodeEvent> openEvents() {
+        // 다시 연결할 때마다 그 시점의 primary 피어에서 받음
+        return fabricGateWay.connection().getNetwork(FabricAccountRepository.CHANNEL_NAME).newChaincodeEventsRequest(FabricAccountRepository.CHAINCODE_NAME)
+                .checkpoint(checkpointer)
+                .build()
+                .getEvents();
+    }
+
+    void apply(ChaincodeEvent event) {
+        if (EVENT_NAME.equals(event.getEventName())) {
+            try {
+                AccountsChangedEvent changed = mapper.readValue(event.getPayload(), AccountsChangedEvent.class);
+                List<String> refresh = new ArrayList<>();
+
+                for (AccountsChangedEvent.Change change : changed.getChanges()) {
+                    Account account = accounts.get(change.getId());
+
+                    if (account == null) {
+                        refresh.add(change.getId());
+                    } else if (change.getBalance() != null) {
+                        put(new Account(account.getAccountId(), account.getOwner(), change.getBalance(), account.getType()));
+                    } else if (changed.getSeq() > readAt.getOrDefault(change.getId(), bootstrappedAt) + CLOCK_SKEW_NANOS) {
+                        put(new Account(account.getAccountId(), account.getOwner(), account.getAmount() + change.getDelta(), account.getType()));
+                    } else {
+                        refresh.add(change.getId());
+                    }
+                }
+
+                if (!refresh.isEmpty()) {
+                    long refreshedAt = now();
+
+                    for (Account account : accountRepository.findAllById(refresh)) {
+                        put(account);
+                        readAt.put(account.getAccountId(), refreshedAt);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("AccountsChanged 이벤트 파싱 실패, 트랜잭션 {}", event.getTransactionId(), e);
+            }
+        }
+
+        checkpointer.checkpointChaincodeEvent(event);
+    }
+
+    private void put(Account account) {
+        accounts.put(account.getAccountId(), account);
+
+        if (account.getType() == AccountType.COMMISSION) {
+            commissionAccountId = account.getAccountId();
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    }
+
+    private void closeEvents() {
+        CloseableIterator<ChaincodeEvent> current = events;
+
+        if (current != null) {
+            current.close();
+        }
+    }
+}
@@ -1,18 +1,47 @@
 package com.example.HyperledgerSpring.Account.Repository;
 
+import com.example.HyperledgerSpring.Account.AccountType;
 import com.example.HyperledgerSpring.Account.Controller.TransferInputForm;
 import com.example.HyperledgerSpring.Account.Domain.Account;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.example.HyperledgerSpring.Account.Domain.AccountHistoryPage;
+import com.example.HyperledgerSpring.Account.Domain.AccountPage;
+import com.example.HyperledgerSpring.Account.Domain.AccountsResult;
+import com.example.HyperledgerSpring.Account.Domain.CreateResult;
+import com.example.HyperledgerSpring.Account.Domain.TransactionStatus;
+import com.example.HyperledgerSpring.Account.Domain.TransferResult;
 import org.hyperledger.fabric.client.*;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface AccountRepository {
 
     void createAccount(Account account) throws EndorseException, CommitException, SubmitException, CommitStatusException;
 
-    List<Account> getAll() throws GatewayException, JsonProcessingException;
+    List<CreateResult> createAccounts(List<Account> accounts);
+
+    AccountsResult getAccounts(List<String> accountIds);
+
+    Optional<Account> findById(String accountId);
+
+    List<Account> findAllById(List<String> accountIds);
+
+    Optional<Account> findCommissionAccount();
+
+    AccountPage getPage(int pageSize, String bookmark);
+
+    AccountPage getPageByOwner(String owner, int pageSize, String bookmark);
+
+    AccountPage getPageByType(AccountType type, int pageSize, String bookmark);
+
+    AccountPage getPageByAmount(Long minAmount, Long maxAmount, AccountType type, String sort, int pageSize, String bookmark);
+
+    AccountHistoryPage getHistory(String accountId, int pageSize, String bookmark);
 
     String transfer(String senderId, String receiverId, String sendAmount);
 
+    TransactionStatus transferAsync(String senderId, String receiverId, String sendAmount);
+
+    List<TransferResult> transferBatch(List<TransferInputForm> transfers);
+
 }
@@ -0,0 +1,113 @@
+package com.example.HyperledgerSpring.Account.Repository;
+
+import com.example.HyperledgerSpring.Account.Domain.PendingDeltas;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.GatewayException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 체인코드에 쌓인 수수료/통계 delta 를 주기적으로 정산(SweepCommission, SweepLedgerStats).
+ *
+ * 이체마다 delta 키가 하나씩 생기고 GetCommissionAccount, GetLedgerStats, 수수료 계좌 조회는 정산되지 않은
+ * delta 를 모두 읽으므로, interval 마다 MAX_SWEEP_SIZE 씩 최대 max-chunks 번 정산해서 조회 비용을 작게 유지한다.
+ * 먼저 GetPendingDeltas 조회로 정산할 delta 수를 보고 필요한 만큼만 submit 하므로, 이체가 없는 동안에는
+ * 오더러로 트랜잭션을 보내지 않는다. 정산은 같은 시각에 커밋된 이체와 충돌할 수 있는데,
+ * 다음 주기에 다시 하면 되므로 로그만 남긴다.
+ *
+ * 여러 서버를 띄우면 정산끼리 충돌하므로 한 서버에서만 enabled 로 둔다.
+ */
+@Slf4j
+@Component
+public class DeltaSweeper {
+
+    // 체인코드 SweepCommission/SweepLedgerStats 한 번에 정산하는 최대 delta 수
+    private static final int MAX_SWEEP_SIZE = 1000;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final FabricGateWay fabricGateWay;
+    private final boolean enabled;
+    private final Duration interval;
+    private final int maxChunks;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    @Autowired
+    public DeltaSweeper(FabricGateWay fabricGateWay,
+                        @Value("${account.sweep.enabled:true}") boolean enabled,
+                        @Value("${account.sweep.interval:10s}") Duration interval,
+                        @Value("${account.sweep.max-chunks:10}") int maxChunks) {
+        this.fabricGateWay = fabricGateWay;
+        this.enabled = enabled;
+        this.interval = interval;
+        this.maxChunks = Math.max(1, maxChunks);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            timer.scheduleWithFixedDelay(this::sweep, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.shutdownNow();
+    }
+
+    void sweep() {
+        PendingDeltas pending;
+
+        try {
+            var result = fabricGateWay.evaluate(FabricAccountRepository.CHANNEL_NAME, FabricAccountRepository.CHAINCODE_NAME, "GetPendingDeltas");
+            pending = mapper.readValue(new String(result), PendingDeltas.class);
+        } catch (GatewayException | JsonProcessingException e) {
+            log.warn("GetPendingDeltas 실패, 다음 주기에 다시 정산", e);
+            return;
+        }
+
+        sweep("SweepCommission", pending.getCommission());
+        sweep("SweepLedgerStats", pending.getStats());
+    }
+
+    /**
+     * @param pending 정산할 수 있는 delta 수, 0 이면 트랜잭션을 보내지 않음
+     * @return 정산 트랜잭션을 보낸 횟수
+     */
+    int sweep(String transactionName, long pending) {
+        long chunks = Math.min(maxChunks, (pending + MAX_SWEEP_SIZE - 1) / MAX_SWEEP_SIZE);
+
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            try {
+                contract().submitTransaction(transactionName, String.valueOf(MAX_SWEEP_SIZE));
+            } catch (Exception e) {
+                log.warn("{} 실패, 다음 주기에 다시 정산", transactionName, e);
+                return chunk;
+            }
+        }
+
+        if (pending > (long) maxChunks * MAX_SWEEP_SIZE) {
+            log.info("{} 할 delta {}개 중 {}개만 정산함, 계속 나오면 interval 을 줄이거나 max-chunks 를 늘려야 함",
+                    transactionName, pending, (long) maxChunks * MAX_SWEEP_SIZE);
+        }
+
+        return (int) chunks;
+    }
+
+    private Contract contract() {
+        return fabricGateWay.connection().getNetwork(FabricAccountRepository.CHANNEL_NAME).getContract(FabricAccountRepository.CHAINCODE_NAME);
+    }
+}
@@ -1,6 +1,14 @@
 package com.example.HyperledgerSpring.Account.Repository;
 
+import com.example.HyperledgerSpring.Account.AccountType;
+import com.example.HyperledgerSpring.Account.Controller.TransferInputForm;
 import com.example.HyperledgerSpring.Account.Domain.Account;
+import com.example.HyperledgerSpring.Account.Domain.AccountHistoryPage;
+import com.example.HyperledgerSpring.Account.Domain.AccountPage;
+import com.example.HyperledgerSpring.Account.Domain.AccountsResult;
+import com.example.HyperledgerSpring.Account.Domain.CreateResult;
+import com.example.HyperledgerSpring.Account.Domain.TransactionStatus;
+import com.example.HyperledgerSpring.Account.Domain.TransferResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.hyperledger.fabric.client.*;
@@ -9,29 +17,40 @@ import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
 
 @Repository
 public class FabricAccountRepository implements AccountRepository{
 
-    private static final String CHANNEL_NAME = "mychannel";
-    private static final String CHAINCODE_NAME = "basic";
+    static final String CHANNEL_NAME = "mychannel";
+    static final String CHAINCODE_NAME = "basic";
 
-    private final Contract contract;
+    // 수수료 계좌 인덱스가 없을 때 체인코드가 ASSET_NOT_FOUND 와 함께 보내는 메시지
+    private static final String COMMISSION_ACCOUNT_NOT_FOUND = "CommissionAccount does not exist";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final FabricGateWay fabricGateWay;
+    private final TransactionStatusTracker transactionStatusTracker;
+    private final TransferBatcher transferBatcher;
 
 
     @Autowired
-    public FabricAccountRepository (FabricGateWay fabricGateWay) {
-        var gateway = fabricGateWay.connection();
-        var network = gateway.getNetwork(CHANNEL_NAME);
-        contract = network.getContract(CHAINCODE_NAME);
+    public FabricAccountRepository (FabricGateWay fabricGateWay, TransactionStatusTracker transactionStatusTracker, TransferBatcher transferBatcher) {
+        this.fabricGateWay = fabricGateWay;
+        this.transactionStatusTracker = transactionStatusTracker;
+        this.transferBatcher = transferBatcher;
     }
 
     @Override
     public void createAccount(Account account) {
 
         try {
-            contract.submitTransaction("CreateAsset", account.getAccountId(), account.getOwner(), String.valueOf(account.getAmount()), String.valueOf(account.getType()));
+            contract().submitTransaction("CreateAsset", account.getAccountId(), account.getOwner(), String.valueOf(account.getAmount()), String.valueOf(account.getType()));
         } catch (EndorseException e) {
             e.printStackTrace();
             throw new RuntimeException("트랜잭션 제안 보증 실패(트랜잭션 실행 중 에러뜸)", e);
@@ -49,14 +68,39 @@ public class FabricAccountRepository implements AccountRepository{
     }
 
     @Override
-    public List<Account> getAll(){
-        List<Account> accounts = new ArrayList<>();
+    public List<CreateResult> createAccounts(List<Account> accounts) {
+
+        try {
+            var result = contract().submitTransaction("CreateAssetsBatch", mapper.writeValueAsString(accounts));
+            return Arrays.asList(mapper.readValue(new String(result), CreateResult[].class));
+
+        } catch (EndorseException e) {
+            e.printStackTrace();
+            throw new RuntimeException("트랜잭션 제안 보증 실패(트랜잭션 실행 중 에러뜸)", e);
+        } catch (CommitException e) {
+            e.printStackTrace();
+            throw new RuntimeException("트랜잭션 commit 실패", e);
+        } catch (SubmitException e) {
+            e.printStackTrace();
+            throw new RuntimeException("트랜잭션 order 에게 전달 실패", e);
+        } catch (CommitStatusException e) {
+            e.printStackTrace();
+            throw new RuntimeException("트랜잭션 commit 상태 조회 실패", e);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("JSON 파싱 실패", e);
+        }
+    }
+
+    @Override
+    public AccountsResult getAccounts(List<String> accountIds) {
+        AccountsResult accounts;
 
         try {
-            var result = contract.evaluateTransaction("GetAllAssets");
-            accounts = getStringJsonToList(new String(result));
+            // 계좌 여러 개를 한 번의 evaluate 로 조회 (ReadAsset 을 계좌마다 부르지 않음)
+            var result = fabricGateWay.evaluate(CHANNEL_NAME, CHAINCODE_NAME, "GetAccounts", mapper.writeValueAsString(accountIds));
+            accounts = mapper.readValue(new String(result), AccountsResult.class);
         } catch (GatewayException e) {
-            throw new RuntimeException("GetAllAssets 트랜잭션 실패", e);
+            throw new RuntimeException("GetAccounts 트랜잭션 실패", e);
         } catch (JsonProcessingException e) {
             throw new RuntimeException("JSON 파싱 실패", e);
         }
@@ -64,12 +108,144 @@ public class FabricAccountRepository implements AccountRepository{
         return accounts;
     }
 
+    @Override
+    public Optional<Account> findById(String accountId) {
+        // ReadAsset 은 없는 계좌를 에러로 응답하므로 GetAccounts 로 조회해서 없으면 빈 값
+        return findAllById(List.of(accountId)).stream().findFirst();
+    }
+
+    @Override
+    public List<Account> findAllById(List<String> accountIds) {
+        return getAccounts(accountIds).getAccounts();
+    }
+
+    @Override
+    public Optional<Account> findCommissionAccount() {
+        try {
+            // 체인코드의 수수료 계좌 인덱스로 조회 (type 인덱스가 없는 원장에서도 동작, 정산 안 된 수수료 포함)
+            var result = fabricGateWay.evaluate(CHANNEL_NAME, CHAINCODE_NAME, "GetCommissionAccount");
+            return Optional.of(mapper.readValue(new String(result), Account.class));
+        } catch (GatewayException e) {
+            if (isCommissionAccountNotFound(e)) {
+                return Optional.empty();
+            }
+
+            throw new RuntimeException("GetCommissionAccount 트랜잭션 실패", e);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("JSON 파싱 실패", e);
+        }
+    }
+
+    // 보증 실패 응답에는 체인코드 에러 payload(ASSET_NOT_FOUND) 가 없고 메시지만 오므로 메시지로 구분
+    private static boolean isCommissionAccountNotFound(GatewayException e) {
+        if (e.getMessage() != null && e.getMessage().contains(COMMISSION_ACCOUNT_NOT_FOUND)) {
+            return true;
+        }
+
+        return e.getDetails().stream().anyMatch(detail -> detail.getMessage().contains(COMMISSION_ACCOUNT_NOT_FOUND));
+    }
+
+    @Override
+    public AccountPage getPage(int pageSize, String bookmark) {
+        AccountPage page;
+
+        try {
+            var result = fabricGateWay.evaluate(CHANNEL_NAME, CHAINCODE_NAME, "GetAssetsPage", String.valueOf(pageSize), bookmark);
+            page = getStringJsonToPage(new String(result));
+        } catch (GatewayException e) {
+            throw new RuntimeException("GetAssetsPage 트랜잭션 실패", e);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("JSON 파싱 실패", e);
+        }
+
+        return page;
+    }
+
+    @Override
+    public AccountPage getPageByOwner(String owner, int pageSize, String bookmark) {
+        AccountPage page;
+
+        try {
+            var result = fabricGateWay.evaluate(CHANNEL_NAME, CHAINCODE_NAME, "QueryAccountsByOwner", owner, String.valueOf(pageSize), bookmark);
+            page = getStringJsonToPage(new String(result));
+        } catch (GatewayException e) {
+            throw new RuntimeException("QueryAccountsByOwner 트랜잭션 실패", e);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("JSON 파싱 실패", e);
+        }
+
+        return page;
+    }
+
+    @Override
+    public AccountPage getPageByType(AccountType type, int pageSize, String bookmark) {
+        AccountPage page;
+
+        try {
+            var result = fabricGateWay.evaluate(CHANNEL_NAME, CHAINCODE_NAME, "QueryAccountsByType", type.name(), String.valueOf(pageSize), bookmark);
+            page = getStringJsonToPage(new String(result));
+        } catch (GatewayException e) {
+            throw new RuntimeException("QueryAccountsByType 트랜잭션 실패", e);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("JSON 파싱 실패", e);
+        }
+
+        return page;
+    }
+
+    @Override
+    public AccountPage getPageByAmount(Long minAmount, Long maxAmount, AccountType type, String sort, int pageSize, String bookmark) {
+        AccountPage page;
+
+        try {
+            // CouchDB 인덱스로 잔액 범위 조회, 빈 값은 조건 없음
+            var result = fabricGateWay.evaluate(CHANNEL_NAME, CHAINCODE_NAME, "QueryAccounts",
+                    minAmount == null ? "" : String.valueOf(minAmount),
+                    maxAmount == null ? "" : String.valueOf(maxAmount),
+                    type == null ? "" : type.name(),
+                    sort, String.valueOf(pageSize), bookmark);
+            page = getStringJsonToPage(new String(result));
+        } catch (GatewayException e) {
+            throw new RuntimeException("QueryAccounts 트랜잭션 실패", e);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("JSON 파싱 실패", e);
+        }
+
+        return page;
+    }
+
+    @Override
+    public AccountHistoryPage getHistory(String accountId, int pageSize, String bookmark) {
+        AccountHistoryPage page;
+
+        try {
+            // 이력은 체인코드에서 pageSize 만큼만 읽고 끊으므로 긴 이력도 bookmark 로 나눠서 조회
+            var result = fabricGateWay.evaluate(CHANNEL_NAME, CHAINCODE_NAME, "GetAccountHistory", accountId, String.valueOf(pageSize), bookmark);
+            page = mapper.readValue(new String(result), AccountHistoryPage.class);
+        } catch (GatewayException e) {
+            throw new RuntimeException("GetAccountHistory 트랜잭션 실패", e);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("JSON 파싱 실패", e);
+        }
+
+        return page;
+    }
+
     @Override
     public String transfer(String senderId, String receiverId, String sendAmount) {
         String tranferResult = "";
 
+        if (transferBatcher.isEnabled()) {
+            // 다른 요청의 이체와 묶어서 TransferBatch 로 제출, 실패하면 직접 제출했을 때와 같은 예외
+            try {
+                return transferBatcher.submit(senderId, receiverId, sendAmount).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
         try {
-            var result = contract.submitTransaction("TransferAccount", senderId, receiverId, sendAmount);
+            var result = contract().submitTransaction("TransferAccount", senderId, receiverId, sendAmount);
             tranferResult = new String(result);
 
         } catch (EndorseException e) {
@@ -89,9 +265,79 @@ public class FabricAccountRepository implements AccountRepository{
         return tranferResult;
     }
 
-    private List<Account> getStringJsonToList(String json) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        return Arrays.asList(mapper.readValue(json, Account[].class));
+    @Override
+    public TransactionStatus transferAsync(String senderId, String receiverId, String sendAmount) {
+        var proposal = contract().newProposal("TransferAccount")
+                .addArguments(senderId, receiverId, sendAmount)
+                .build();
+        String txId = proposal.getTransactionId();
+
+        // 커밋은 기다리지 않음, 결과는 TransactionStatusTracker 가 블록 이벤트로 채움
+        transactionStatusTracker.register(txId);
+        boolean tracked = false;
+
+        try {
+            var submitted = proposal.endorse().submitAsync();
+            String tranferResult = new String(submitted.getResult());
+            transactionStatusTracker.submitted(txId, tranferResult, submitted);
+            tracked = true;
+
+            return new TransactionStatus(txId, TransactionStatus.PENDING, null, null, tranferResult);
+
+        } catch (EndorseException e) {
+            e.printStackTrace();
+            throw new RuntimeException("트랜잭션 제안 보증 실패(트랜잭션 실행 중 에러뜸)", e);
+        } catch (SubmitException e) {
+            e.printStackTrace();
+            throw new RuntimeException("트랜잭션 order 에게 전달 실패", e);
+        } finally {
+            // 어떤 예외로든 여기서 끝나면 호출자는 txId 를 받지 못하므로 추적에서 뺌 (남겨두면 타임아웃 검사에도 안 걸려서 계속 쌓임)
+            if (!tracked) {
+                transactionStatusTracker.discard(txId);
+            }
+        }
+    }
+
+    @Override
+    public List<TransferResult> transferBatch(List<TransferInputForm> transfers) {
+        List<Map<String, Object>> entries = new ArrayList<>();
+
+        for (TransferInputForm transfer : transfers) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("sender", transfer.getSender().toString());
+            entry.put("receiver", transfer.getReceiver().toString());
+            entry.put("amount", transfer.getSendAmount());
+            entries.add(entry);
+        }
+
+        try {
+            var result = contract().submitTransaction("TransferBatch", mapper.writeValueAsString(entries));
+            return Arrays.asList(mapper.readValue(new String(result), TransferResult[].class));
+
+        } catch (EndorseException e) {
+            e.printStackTrace();
+            throw new RuntimeException("트랜잭션 제안 보증 실패(트랜잭션 실행 중 에러뜸)", e);
+        } catch (CommitException e) {
+            e.printStackTrace();
+            throw new RuntimeException("트랜잭션 commit 실패", e);
+        } catch (SubmitException e) {
+            e.printStackTrace();
+            throw new RuntimeException("트랜잭션 order 에게 전달 실패", e);
+        } catch (CommitStatusException e) {
+            e.printStackTrace();
+            throw new RuntimeException("트랜잭션 commit 상태 조회 실패", e);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("JSON 파싱 실패", e);
+        }
+    }
+
+    // submit 은 primary 피어로, primary 가 빠지면 다음 피어의 Gateway 로 바뀜
+    private Contract contract() {
+        return fabricGateWay.connection().getNetwork(CHANNEL_NAME).getContract(CHAINCODE_NAME);
+    }
+
+    private AccountPage getStringJsonToPage(String json) throws JsonProcessingException {
+        return mapper.readValue(json, AccountPage.class);
     }
 
 }
@@ -5,7 +5,9 @@ import io.grpc.ManagedChannel;
 import io.grpc.TlsChannelCredentials;
 import jakarta.annotation.PreDestroy;
 import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.GatewayException;
 import org.hyperledger.fabric.client.identity.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
@@ -14,50 +16,78 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.InvalidKeyException;
 import java.security.cert.CertificateException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * 피어마다 채널과 Gateway 를 하나씩 만들어 PeerPool 로 계속 유지 (요청마다 connect 하지 않음).
+ * connection() 은 submit, 이벤트용 primary Gateway 를, evaluate() 는 피어 사이에 나눠 보낸 조회 결과를 돌려줌.
+ */
 @Component
 public class FabricGateWay {
 
-    private static ManagedChannel channel;
-    private static Gateway.Builder builder;
-
     private static String MSP_ID;
     private static Path CRYPTO_PATH;
     private static Path CERT_PATH;
     private static Path KEY_DIR_PATH;
-    private static Path TLS_CERT_PATH;
 
-    private static String PEER_END_POINT;
-    private static String OVERRIDE_AUTH;
+    private final PeerPool peerPool;
 
-    public FabricGateWay(){
+    public FabricGateWay(@Value("${fabric.peer.endpoints:localhost:7051}") String[] endpoints,
+                         @Value("${fabric.peer.override-authorities:peer0.org1.example.com}") String[] overrideAuthorities,
+                         @Value("${fabric.peer.tls-cert-paths:peers/peer0.org1.example.com/tls/ca.crt}") String[] tlsCertPaths,
+                         @Value("${fabric.peer.routing:LEAST_OUTSTANDING}") PeerPool.Routing routing,
+                         @Value("${fabric.peer.ejection-time:30s}") Duration ejectionTime,
+                         @Value("${fabric.peer.health-check-interval:5s}") Duration healthCheckInterval,
+                         @Value("${fabric.grpc.keep-alive-time:60s}") Duration keepAliveTime,
+                         @Value("${fabric.grpc.keep-alive-timeout:20s}") Duration keepAliveTimeout,
+                         @Value("${fabric.grpc.idle-timeout:5m}") Duration idleTimeout){
 
         MSP_ID = "Org1MSP";
 
         CRYPTO_PATH = Paths.get("/Users/creativehill/Desktop/hyperledger-sample/fabric-samples/test-network/organizations/peerOrganizations/org1.example.com");
         CERT_PATH = CRYPTO_PATH.resolve(Paths.get("users/User1@org1.example.com/msp/signcerts/cert.pem"));
         KEY_DIR_PATH = CRYPTO_PATH.resolve(Paths.get("users/User1@org1.example.com/msp/keystore"));
-        TLS_CERT_PATH = CRYPTO_PATH.resolve(Paths.get("peers/peer0.org1.example.com/tls/ca.crt"));
 
-        PEER_END_POINT = "localhost:7051";
-        OVERRIDE_AUTH = "peer0.org1.example.com";
+        if (overrideAuthorities.length != endpoints.length || tlsCertPaths.length != endpoints.length){
+            throw new IllegalArgumentException("fabric.peer.endpoints, override-authorities, tls-cert-paths 의 개수가 같아야 합니다.");
+        }
+
+        Map<String, ManagedChannel> channels = new LinkedHashMap<>();
 
-        this.channel = newGrpcConnection();
-        this.builder = initBuilder();
+        for (int i = 0; i < endpoints.length; i++){
+            channels.put(endpoints[i].trim(), newGrpcConnection(endpoints[i].trim(), overrideAuthorities[i].trim(), CRYPTO_PATH.resolve(tlsCertPaths[i].trim()),
+                    keepAliveTime, keepAliveTimeout, idleTimeout));
+        }
+
+        this.peerPool = new PeerPool(channels, channel -> initBuilder(channel).connect(), routing, ejectionTime, healthCheckInterval);
     }
 
 
+    /**
+     * submit 과 이벤트 스트림용 Gateway, 계속 유지되므로 호출한 쪽에서 닫지 않음
+     */
     public Gateway connection() {
-        return this.builder.connect();
+        return this.peerPool.primary();
+    }
+
+    /**
+     * 조회 트랜잭션을 정상 피어 중 하나에 보내고, 피어 장애면 다른 피어로 다시 보냄
+     */
+    public byte[] evaluate(String channelName, String chaincodeName, String transactionName, String... arguments) throws GatewayException {
+        return this.peerPool.evaluate(gateway -> gateway.getNetwork(channelName)
+                .getContract(chaincodeName)
+                .evaluateTransaction(transactionName, arguments));
     }
 
     @PreDestroy
     public void channelDown() throws InterruptedException {
-        this.channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        this.peerPool.close();
     }
 
-    private static Gateway.Builder initBuilder() {
+    private static Gateway.Builder initBuilder(ManagedChannel channel) {
 
         try {
             return Gateway.newInstance().identity(newIdentity()).signer(newSigner()).connection(channel)
@@ -99,14 +129,20 @@ public class FabricGateWay {
     }
 
 
-    private static ManagedChannel newGrpcConnection() {
+    private static ManagedChannel newGrpcConnection(String endpoint, String overrideAuthority, Path tlsCertPath,
+                                                    Duration keepAliveTime, Duration keepAliveTimeout, Duration idleTimeout) {
         try {
             var credentials = TlsChannelCredentials.newBuilder()
-                    .trustManager(TLS_CERT_PATH.toFile())
+                    .trustManager(tlsCertPath.toFile())
                     .build();
 
-            return Grpc.newChannelBuilder(PEER_END_POINT, credentials)
-                    .overrideAuthority(OVERRIDE_AUTH)
+            // 피어의 keepalive.minInterval(기본 60s)보다 자주 ping 하면 피어가 연결을 끊음
+            return Grpc.newChannelBuilder(endpoint, credentials)
+                    .overrideAuthority(overrideAuthority)
+                    .keepAliveTime(keepAliveTime.toMillis(), TimeUnit.MILLISECONDS)
+                    .keepAliveTimeout(keepAliveTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .keepAliveWithoutCalls(true)
+                    .idleTimeout(idleTimeout.toMillis(), TimeUnit.MILLISECONDS)
                     .build();
         } catch (IOException ioException){
             ioException.printStackTrace();
@@ -0,0 +1,240 @@
+package com.example.HyperledgerSpring.Account.Repository;
+
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.GatewayException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 피어마다 gRPC 채널 하나와 그 위의 Gateway 하나를 계속 유지.
+ *
+ * evaluate 는 정상 피어 사이에 ROUND_ROBIN 또는 LEAST_OUTSTANDING(처리 중인 요청이 가장 적은 피어)으로 나눠 보내고,
+ * UNAVAILABLE 이나 DEADLINE_EXCEEDED 로 실패하면 그 피어를 ejection-time 동안 빼고 다른 피어로 다시 보낸다.
+ * submit 과 이벤트 스트림은 설정 순서에서 첫 번째 정상 피어(primary)를 쓴다.
+ *
+ * health-check-interval 마다 채널 상태를 확인해서 TRANSIENT_FAILURE 인 피어는 빼고, 빠진 피어는 재연결을
+ * 요청해서 READY 가 되면 다시 넣는다. ejection-time 이 지난 피어도 다시 요청을 받는다.
+ */
+@Slf4j
+public class PeerPool implements AutoCloseable {
+
+    public enum Routing {
+        ROUND_ROBIN,
+        LEAST_OUTSTANDING
+    }
+
+    @FunctionalInterface
+    public interface GatewayCall<T> {
+
+        T call(Gateway gateway) throws GatewayException;
+    }
+
+    static final class Peer {
+
+        private final String endpoint;
+        private final ManagedChannel channel;
+        private final Gateway gateway;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        // 0 이면 정상, 아니면 이 시각까지 요청을 보내지 않음
+        private volatile long ejectedUntil;
+
+        private Peer(String endpoint, ManagedChannel channel, Gateway gateway) {
+            this.endpoint = endpoint;
+            this.channel = channel;
+            this.gateway = gateway;
+        }
+
+        String getEndpoint() {
+            return endpoint;
+        }
+
+        int getOutstanding() {
+            return outstanding.get();
+        }
+
+        private boolean isAvailable(long now) {
+            return ejectedUntil <= now;
+        }
+    }
+
+    private final List<Peer> peers = new ArrayList<>();
+    private final Routing routing;
+    private final long ejectionMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService healthCheck;
+
+    /**
+     * @param channels       endpoint 별 채널, 순서가 primary 우선순위
+     * @param gatewayFactory 채널 위에 Gateway 를 만드는 함수 (테스트에서는 in-process 채널이나 목을 넘김)
+     * @param healthInterval 0 이면 주기적인 상태 확인을 하지 않음
+     */
+    public PeerPool(Map<String, ManagedChannel> channels, Function<ManagedChannel, Gateway> gatewayFactory,
+                    Routing routing, Duration ejectionTime, Duration healthInterval) {
+        if (channels.isEmpty()) {
+            throw new IllegalArgumentException("피어가 하나 이상 필요합니다.");
+        }
+
+        for (Map.Entry<String, ManagedChannel> entry : new LinkedHashMap<>(channels).entrySet()) {
+            peers.add(new Peer(entry.getKey(), entry.getValue(), gatewayFactory.apply(entry.getValue())));
+        }
+
+        this.routing = routing;
+        this.ejectionMillis = ejectionTime.toMillis();
+
+        if (healthInterval.isZero()) {
+            healthCheck = null;
+        } else {
+            healthCheck = Executors.newSingleThreadScheduledExecutor();
+            healthCheck.scheduleWithFixedDelay(this::checkHealth, healthInterval.toMillis(), healthInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * submit 과 이벤트 스트림용, 설정 순서에서 첫 번째 정상 피어 (모두 빠졌으면 가장 먼저 복귀할 피어)
+     */
+    public Gateway primary() {
+        long now = System.currentTimeMillis();
+        Peer earliest = peers.get(0);
+
+        for (Peer peer : peers) {
+            if (peer.isAvailable(now)) {
+                return peer.gateway;
+            }
+
+            if (peer.ejectedUntil < earliest.ejectedUntil) {
+                earliest = peer;
+            }
+        }
+
+        return earliest.gateway;
+    }
+
+    /**
+     * 고른 피어에서 call 을 실행, 피어 장애로 실패하면 아직 시도하지 않은 다른 피어에서 다시 실행
+     */
+    public <T> T evaluate(GatewayCall<T> call) throws GatewayException {
+        List<Peer> tried = new ArrayList<>();
+
+        while (true) {
+            Peer peer = choose(tried);
+            tried.add(peer);
+            peer.outstanding.incrementAndGet();
+
+            try {
+                return call.call(peer.gateway);
+            } catch (GatewayException e) {
+                if (!isPeerFailure(e)) {
+                    throw e;
+                }
+
+                eject(peer, e.getStatus().getCode().name());
+
+                if (tried.size() == peers.size()) {
+                    throw e;
+                }
+            } finally {
+                peer.outstanding.decrementAndGet();
+            }
+        }
+    }
+
+    void checkHealth() {
+        for (Peer peer : peers) {
+            // true 를 넘기면 IDLE 이나 끊긴 채널에 재연결을 요청
+            ConnectivityState state = peer.channel.getState(true);
+
+            if (state == ConnectivityState.TRANSIENT_FAILURE) {
+                eject(peer, state.name());
+            } else if (state == ConnectivityState.READY && peer.ejectedUntil != 0) {
+                peer.ejectedUntil = 0;
+                log.info("피어 {} 복구", peer.endpoint);
+            }
+        }
+    }
+
+    List<Peer> getPeers() {
+        return peers;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (healthCheck != null) {
+            healthCheck.shutdownNow();
+        }
+
+        for (Peer peer : peers) {
+            peer.gateway.close();
+            peer.channel.shutdownNow();
+        }
+
+        for (Peer peer : peers) {
+            peer.channel.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private Peer choose(List<Peer> tried) {
+        long now = System.currentTimeMillis();
+        List<Peer> candidates = new ArrayList<>();
+
+        for (Peer peer : peers) {
+            if (peer.isAvailable(now) && !tried.contains(peer)) {
+                candidates.add(peer);
+            }
+        }
+
+        // 정상 피어가 없으면 빠진 피어라도 시도 (요청을 바로 실패시키지 않음)
+        if (candidates.isEmpty()) {
+            for (Peer peer : peers) {
+                if (!tried.contains(peer)) {
+                    candidates.add(peer);
+                }
+            }
+        }
+
+        int start = Math.floorMod(next.getAndIncrement(), candidates.size());
+
+        if (routing == Routing.ROUND_ROBIN) {
+            return candidates.get(start);
+        }
+
+        // 처리 중인 요청 수가 같으면 돌아가면서 고름
+        Peer least = candidates.get(start);
+
+        for (int i = 1; i < candidates.size(); i++) {
+            Peer peer = candidates.get((start + i) % candidates.size());
+
+            if (peer.outstanding.get() < least.outstanding.get()) {
+                least = peer;
+            }
+        }
+
+        return least;
+    }
+
+    private void eject(Peer peer, String reason) {
+        boolean wasAvailable = peer.isAvailable(System.currentTimeMillis());
+        peer.ejectedUntil = System.currentTimeMillis() + ejectionMillis;
+
+        if (wasAvailable) {
+            log.warn("피어 {} 를 {}ms 동안 제외 ({})", peer.endpoint, ejectionMillis, reason);
+        }
+    }
+
+    private static boolean isPeerFailure(GatewayException e) {
+        Status.Code code = e.getStatus().getCode();
+        return code == Status.Code.UNAVAILABLE || code == Status.Code.DEADLINE_EXCEEDED;
+    }
+}
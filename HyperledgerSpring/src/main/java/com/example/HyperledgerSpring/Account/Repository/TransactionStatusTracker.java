@@ -0,0 +1,281 @@
+package com.example.HyperledgerSpring.Account.Repository;
+
+import com.example.HyperledgerSpring.Account.Domain.TransactionStatus;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.fabric.client.CloseableIterator;
+import org.hyperledger.fabric.client.CommitStatusException;
+import org.hyperledger.fabric.client.InMemoryCheckpointer;
+import org.hyperledger.fabric.client.Status;
+import org.hyperledger.fabric.client.SubmittedTransaction;
+import org.hyperledger.fabric.protos.peer.FilteredBlock;
+import org.hyperledger.fabric.protos.peer.FilteredTransaction;
+import org.hyperledger.fabric.protos.peer.TxValidationCode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 비동기로 제출한 트랜잭션의 커밋 결과를 추적.
+ *
+ * 트랜잭션마다 커밋을 기다리는 스레드를 두지 않고, 채널의 filtered block 이벤트 스트림 하나에서 각 트랜잭션의
+ * 검증 코드를 읽어 대기 중인 트랜잭션을 완료 처리한다. 스트림이 끊겼다가 다시 연결되면 체크포인트(마지막으로 처리한
+ * 블록)부터 이어 받는다. commit-timeout 이 지나도 블록에서 못 찾은 트랜잭션은 피어에 커밋 상태를 직접 물어본다.
+ * 완료된 결과는 최근 MAX_COMPLETED 개만 보관한다.
+ */
+@Slf4j
+@Component
+public class TransactionStatusTracker {
+
+    private static final int MAX_COMPLETED = 10000;
+    private static final long RETRY_MILLIS = 5000;
+    private static final long SWEEP_SECONDS = 5;
+
+    private final FabricGateWay fabricGateWay;
+    private final Duration commitTimeout;
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final Map<String, TransactionStatus> completed = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TransactionStatus> eldest) {
+            return size() > MAX_COMPLETED;
+        }
+    });
+    private final InMemoryCheckpointer checkpointer = new InMemoryCheckpointer();
+    // 타임아웃된 트랜잭션의 커밋 상태 조회용, 블록 스트림이 정상이면 거의 쓰이지 않음
+    private final ExecutorService statusExecutor = Executors.newFixedThreadPool(2);
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor();
+
+    private volatile boolean running;
+    private volatile CloseableIterator<FilteredBlock> blocks;
+    private Thread listener;
+
+    private static final class Pending {
+
+        private final long startedAt = System.currentTimeMillis();
+        private final List<Consumer<TransactionStatus>> listeners = new ArrayList<>();
+        private volatile String result;
+        private volatile SubmittedTransaction submitted;
+        private boolean checking;
+    }
+
+    @Autowired
+    public TransactionStatusTracker(FabricGateWay fabricGateWay,
+                                    @Value("${account.tx.commit-timeout:60s}") Duration commitTimeout) {
+        this.fabricGateWay = fabricGateWay;
+        this.commitTimeout = commitTimeout;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        listener = new Thread(this::listen, "transaction-status");
+        listener.setDaemon(true);
+        listener.start();
+        sweeper.scheduleWithFixedDelay(this::checkTimedOut, SWEEP_SECONDS, SWEEP_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        closeBlocks();
+
+        if (listener != null) {
+            listener.interrupt();
+        }
+
+        sweeper.shutdownNow();
+        statusExecutor.shutdownNow();
+    }
+
+    /**
+     * 보증 전에 등록해야 블록이 먼저 도착해도 놓치지 않음
+     */
+    public void register(String txId) {
+        pending.put(txId, new Pending());
+    }
+
+    public void submitted(String txId, String result, SubmittedTransaction submitted) {
+        Pending transaction = pending.get(txId);
+
+        if (transaction != null) {
+            transaction.result = result;
+            transaction.submitted = submitted;
+        } else {
+            // 제출이 끝나기 전에 블록에서 이미 완료 처리된 경우
+            completed.computeIfPresent(txId, (id, status) -> new TransactionStatus(id, status.getStatus(), status.getCode(), status.getBlockNumber(), result));
+        }
+    }
+
+    /**
+     * 보증이나 주문자 전달에 실패해서 커밋될 일이 없는 트랜잭션
+     */
+    public void discard(String txId) {
+        pending.remove(txId);
+    }
+
+    public Optional<TransactionStatus> getStatus(String txId) {
+        TransactionStatus status = completed.get(txId);
+
+        if (status != null) {
+            return Optional.of(status);
+        }
+
+        Pending transaction = pending.get(txId);
+        return transaction == null
+                ? Optional.empty()
+                : Optional.of(new TransactionStatus(txId, TransactionStatus.PENDING, null, null, transaction.result));
+    }
+
+    /**
+     * 커밋 결과가 나오면 한 번 호출, 이미 끝났으면 바로 호출
+     *
+     * @return 추적 중이거나 끝난 트랜잭션이면 true
+     */
+    public boolean onComplete(String txId, Consumer<TransactionStatus> callback) {
+        Pending transaction = pending.get(txId);
+
+        if (transaction != null) {
+            synchronized (transaction) {
+                if (pending.get(txId) == transaction) {
+                    transaction.listeners.add(callback);
+                    return true;
+                }
+            }
+        }
+
+        TransactionStatus status = completed.get(txId);
+
+        if (status == null) {
+            return false;
+        }
+
+        callback.accept(status);
+        return true;
+    }
+
+    private void listen() {
+        while (running) {
+            try {
+                // 다시 연결할 때마다 그 시점의 primary 피어에서 받음
+                blocks = fabricGateWay.connection().getNetwork(FabricAccountRepository.CHANNEL_NAME).newFilteredBlockEventsRequest()
+                        .checkpoint(checkpointer)
+                        .build()
+                        .getEvents();
+
+                while (running && blocks.hasNext()) {
+                    apply(blocks.next());
+                }
+            } catch (RuntimeException e) {
+                if (running) {
+                    log.warn("블록 이벤트 수신 중단, {}ms 후 다시 연결", RETRY_MILLIS, e);
+                }
+            } finally {
+                closeBlocks();
+            }
+
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    void apply(FilteredBlock block) {
+        for (FilteredTransaction transaction : block.getFilteredTransactionsList()) {
+            if (pending.containsKey(transaction.getTxid())) {
+                complete(transaction.getTxid(), transaction.getTxValidationCode() == TxValidationCode.VALID,
+                        transaction.getTxValidationCode().name(), block.getNumber());
+            }
+        }
+
+        checkpointer.checkpointBlock(block.getNumber());
+    }
+
+    private void checkTimedOut() {
+        long deadline = System.currentTimeMillis() - commitTimeout.toMillis();
+
+        for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+            Pending transaction = entry.getValue();
+
+            if (transaction.startedAt > deadline || transaction.checking) {
+                continue;
+            }
+
+            SubmittedTransaction submitted = transaction.submitted;
+
+            if (submitted == null) {
+                // 보증이나 제출에서 멈춘 트랜잭션, 요청 스레드 쪽에서 실패 처리됨
+                continue;
+            }
+
+            transaction.checking = true;
+            statusExecutor.execute(() -> checkStatus(entry.getKey(), submitted));
+        }
+    }
+
+    private void checkStatus(String txId, SubmittedTransaction submitted) {
+        try {
+            Status status = submitted.getStatus();
+            complete(txId, status.isSuccessful(), status.getCode().name(), status.getBlockNumber());
+        } catch (CommitStatusException | RuntimeException e) {
+            log.warn("트랜잭션 {} 커밋 상태 조회 실패", txId, e);
+            complete(txId, false, "UNKNOWN", null);
+        }
+    }
+
+    private void complete(String txId, boolean successful, String code, Long blockNumber) {
+        Pending transaction = pending.get(txId);
+
+        if (transaction == null) {
+            return;
+        }
+
+        TransactionStatus status = new TransactionStatus(txId, successful ? TransactionStatus.COMMITTED : TransactionStatus.FAILED,
+                code, blockNumber, transaction.result);
+        List<Consumer<TransactionStatus>> listeners;
+
+        synchronized (transaction) {
+            if (!pending.remove(txId, transaction)) {
+                return;
+            }
+
+            completed.put(txId, status);
+            listeners = new ArrayList<>(transaction.listeners);
+        }
+
+        for (Consumer<TransactionStatus> callback : listeners) {
+            try {
+                callback.accept(status);
+            } catch (RuntimeException e) {
+                log.warn("트랜잭션 {} 완료 알림 실패", txId, e);
+            }
+        }
+    }
+
+    private void closeBlocks() {
+        CloseableIterator<FilteredBlock> current = blocks;
+
+        if (current != null) {
+            current.close();
+        }
+    }
+}
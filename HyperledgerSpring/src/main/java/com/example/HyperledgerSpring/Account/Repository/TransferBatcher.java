@@ -0,0 +1,371 @@
+package com.example.HyperledgerSpring.Account.Repository;
+
+import com.example.HyperledgerSpring.Account.Domain.TransferResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.fabric.client.CommitException;
+import org.hyperledger.fabric.client.CommitStatusException;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.EndorseException;
+import org.hyperledger.fabric.client.SubmitException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 단건 이체를 모아서 TransferBatch 트랜잭션 하나로 제출.
+ *
+ * 첫 이체가 들어온 뒤 window 가 지나거나 max-size 만큼 모이면 제출하고, 각 호출자는 자기 이체의 결과를
+ * future 로 받는다. 제출 중인 묶음과 계좌가 겹치는 이체는 다음 묶음으로 미룬다 (같은 블록에서 같은 키를 쓰면
+ * 뒤 트랜잭션이 MVCC_READ_CONFLICT 로 무효가 됨). 한 번 미룬 계좌의 이체는 뒤에 들어온 것도 같이 미뤄서
+ * 계좌별로는 들어온 순서대로 제출된다.
+ *
+ * TransferBatch 는 하나라도 실패하면 전체가 실패하므로, 묶음이 보증에서 실패하거나 커밋 검증에서 무효가 되면
+ * 각 이체를 TransferAccount 로 다시 제출해서 다른 호출자의 이체가 같이 실패하지 않게 한다. 주문자 전달, 커밋 상태
+ * 조회, 결과 파싱 실패는 묶음이 이미 커밋됐을 수 있으므로 (다시 제출하면 두 번 반영됨) 다시 제출하지 않고 묶음의
+ * 모든 이체를 실패로 끝낸다. 결과에 없는 이체도 실패로 끝낸다.
+ *
+ * 기본은 꺼져 있고 account.transfer.batch.enabled=true 로 켠다.
+ * window 를 늘리면 지연이 늘고 묶음이 커지며, max-in-flight 는 동시에 제출 중인 묶음 수의 상한이다.
+ * 묶음 크기는 제출마다 debug 로그로, 1분 요약은 info 로그로 남긴다.
+ */
+@Slf4j
+@Component
+public class TransferBatcher {
+
+    // 체인코드 TransferBatch 한 번에 넣을 수 있는 최대 이체 수
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final long REPORT_SECONDS = 60;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final FabricGateWay fabricGateWay;
+    private final boolean enabled;
+    private final long windowMillis;
+    private final int maxSize;
+    private final int maxInFlight;
+
+    private final ExecutorService submitters;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    // 아래 필드는 모두 lock 으로 보호
+    private final Object lock = new Object();
+    private final ArrayDeque<PendingTransfer> queue = new ArrayDeque<>();
+    private final Set<String> inFlightAccounts = new HashSet<>();
+    private int inFlight;
+    private boolean drainScheduled;
+    private boolean stopped;
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedEntries = new AtomicLong();
+    private final AtomicLong largestFlush = new AtomicLong();
+    private final AtomicLong resubmitted = new AtomicLong();
+
+    private static final class PendingTransfer {
+
+        private final String senderId;
+        private final String receiverId;
+        private final long sendAmount;
+        private final long enqueuedAt = System.currentTimeMillis();
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        private PendingTransfer(String senderId, String receiverId, long sendAmount) {
+            this.senderId = senderId;
+            this.receiverId = receiverId;
+            this.sendAmount = sendAmount;
+        }
+    }
+
+    @Autowired
+    public TransferBatcher(FabricGateWay fabricGateWay,
+                           @Value("${account.transfer.batch.enabled:false}") boolean enabled,
+                           @Value("${account.transfer.batch.window:20ms}") Duration window,
+                           @Value("${account.transfer.batch.max-size:100}") int maxSize,
+                           @Value("${account.transfer.batch.max-in-flight:4}") int maxInFlight) {
+        this.fabricGateWay = fabricGateWay;
+        this.enabled = enabled;
+        this.windowMillis = window.toMillis();
+        this.maxSize = Math.max(1, Math.min(maxSize, MAX_BATCH_SIZE));
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.submitters = Executors.newFixedThreadPool(this.maxInFlight);
+
+        if (enabled) {
+            timer.scheduleAtFixedRate(this::report, REPORT_SECONDS, REPORT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return 이 이체가 커밋되면 TransferAccount 와 같은 형식의 결과 메시지로, 실패하면 FabricAccountRepository.transfer 와 같은 예외로 끝나는 future
+     */
+    public CompletableFuture<String> submit(String senderId, String receiverId, String sendAmount) {
+        PendingTransfer transfer = new PendingTransfer(senderId, receiverId, Long.parseLong(sendAmount));
+
+        synchronized (lock) {
+            if (stopped) {
+                throw new IllegalStateException("이체 묶음 제출이 종료되었습니다.");
+            }
+
+            queue.addLast(transfer);
+            drain();
+        }
+
+        return transfer.result;
+    }
+
+    @PreDestroy
+    public void stop() {
+        List<PendingTransfer> remaining;
+
+        synchronized (lock) {
+            stopped = true;
+            remaining = new ArrayList<>(queue);
+            queue.clear();
+        }
+
+        for (PendingTransfer transfer : remaining) {
+            transfer.result.completeExceptionally(new IllegalStateException("서버 종료로 이체를 제출하지 못했습니다."));
+        }
+
+        timer.shutdownNow();
+        submitters.shutdown();
+    }
+
+    /**
+     * 제출할 수 있는 묶음을 모두 제출하고, 남은 이체는 가장 오래된 이체의 window 가 끝날 때 다시 확인. lock 안에서 호출.
+     */
+    private void drain() {
+        while (!stopped && !queue.isEmpty() && inFlight < maxInFlight) {
+            long waited = System.currentTimeMillis() - queue.peekFirst().enqueuedAt;
+
+            if (queue.size() < maxSize && waited < windowMillis) {
+                scheduleDrain(windowMillis - waited);
+                return;
+            }
+
+            List<PendingTransfer> batch = takeBatch();
+
+            if (batch.isEmpty()) {
+                // 남은 이체가 모두 제출 중인 묶음과 겹침, 그 묶음이 끝나면 다시 drain
+                return;
+            }
+
+            inFlight++;
+            submitters.execute(() -> flush(batch));
+        }
+    }
+
+    private List<PendingTransfer> takeBatch() {
+        List<PendingTransfer> batch = new ArrayList<>();
+        Set<String> deferred = new HashSet<>();
+        Iterator<PendingTransfer> iterator = queue.iterator();
+
+        while (iterator.hasNext() && batch.size() < maxSize) {
+            PendingTransfer transfer = iterator.next();
+
+            if (conflicts(transfer, inFlightAccounts) || conflicts(transfer, deferred)) {
+                deferred.add(transfer.senderId);
+                deferred.add(transfer.receiverId);
+                continue;
+            }
+
+            iterator.remove();
+            batch.add(transfer);
+        }
+
+        // 같은 묶음 안에서는 계좌가 겹쳐도 체인코드가 순서대로 반영하므로 묶음을 다 고른 뒤에 잠금
+        for (PendingTransfer transfer : batch) {
+            inFlightAccounts.add(transfer.senderId);
+            inFlightAccounts.add(transfer.receiverId);
+        }
+
+        return batch;
+    }
+
+    private static boolean conflicts(PendingTransfer transfer, Set<String> accounts) {
+        return accounts.contains(transfer.senderId) || accounts.contains(transfer.receiverId);
+    }
+
+    private void scheduleDrain(long delayMillis) {
+        if (drainScheduled) {
+            return;
+        }
+
+        drainScheduled = true;
+        timer.schedule(() -> {
+            synchronized (lock) {
+                drainScheduled = false;
+                drain();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush(List<PendingTransfer> batch) {
+        record(batch.size());
+
+        try {
+            if (batch.size() == 1) {
+                submitOne(batch.get(0));
+            } else {
+                submitBatch(batch);
+            }
+        } finally {
+            synchronized (lock) {
+                for (PendingTransfer transfer : batch) {
+                    inFlightAccounts.remove(transfer.senderId);
+                    inFlightAccounts.remove(transfer.receiverId);
+                }
+
+                inFlight--;
+                drain();
+            }
+        }
+    }
+
+    private void submitBatch(List<PendingTransfer> batch) {
+        List<Map<String, Object>> entries = new ArrayList<>();
+
+        for (PendingTransfer transfer : batch) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("sender", transfer.senderId);
+            entry.put("receiver", transfer.receiverId);
+            entry.put("amount", transfer.sendAmount);
+            entries.add(entry);
+        }
+
+        TransferResult[] results;
+
+        try {
+            var result = contract().submitTransaction("TransferBatch", mapper.writeValueAsString(entries));
+            results = mapper.readValue(new String(result), TransferResult[].class);
+        } catch (EndorseException e) {
+            // 한 건 때문에 묶음 전체가 보증에서 실패했을 수 있음, 원장에는 반영되지 않았으므로 각자 다시 제출
+            resubmit(batch, e);
+            return;
+        } catch (CommitException e) {
+            // CommitException 은 무효가 된 트랜잭션에만 나오고, 무효 트랜잭션은 원장에 반영되지 않음 (MVCC_READ_CONFLICT 등)
+            resubmit(batch, e);
+            return;
+        } catch (SubmitException | CommitStatusException | JsonProcessingException | RuntimeException e) {
+            failAll(batch, e);
+            return;
+        }
+
+        boolean[] completed = new boolean[batch.size()];
+
+        for (TransferResult result : results) {
+            if (result.getIndex() < 0 || result.getIndex() >= batch.size()) {
+                log.warn("이체 묶음 결과의 index {} 가 묶음 크기 {} 를 벗어남", result.getIndex(), batch.size());
+                continue;
+            }
+
+            completed[result.getIndex()] = true;
+            // 체인코드가 TransferAccount 결과와 같은 형식으로 만든 메시지
+            batch.get(result.getIndex()).result.complete(result.getMessage());
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            if (!completed[i]) {
+                batch.get(i).result.completeExceptionally(new RuntimeException("이체 묶음 결과에 이 이체가 없습니다."));
+            }
+        }
+    }
+
+    private void resubmit(List<PendingTransfer> batch, Exception cause) {
+        log.warn("이체 묶음 {}건 제출 실패, 한 건씩 다시 제출", batch.size(), cause);
+        resubmitted.addAndGet(batch.size());
+
+        for (PendingTransfer transfer : batch) {
+            submitOne(transfer);
+        }
+    }
+
+    private void failAll(List<PendingTransfer> batch, Exception cause) {
+        log.warn("이체 묶음 {}건 결과 확인 실패, 이미 커밋됐을 수 있으므로 다시 제출하지 않음", batch.size(), cause);
+        RuntimeException failure = failureOf(cause);
+
+        for (PendingTransfer transfer : batch) {
+            transfer.result.completeExceptionally(failure);
+        }
+    }
+
+    private void submitOne(PendingTransfer transfer) {
+        try {
+            var result = contract().submitTransaction("TransferAccount", transfer.senderId, transfer.receiverId, String.valueOf(transfer.sendAmount));
+            transfer.result.complete(new String(result));
+
+        } catch (EndorseException | CommitException | SubmitException | CommitStatusException | RuntimeException e) {
+            transfer.result.completeExceptionally(failureOf(e));
+        }
+    }
+
+    /**
+     * FabricAccountRepository.transfer 와 같은 메시지의 예외로 바꿈
+     */
+    private static RuntimeException failureOf(Exception e) {
+        if (e instanceof EndorseException) {
+            return new RuntimeException("트랜잭션 제안 보증 실패(트랜잭션 실행 중 에러뜸)", e);
+        } else if (e instanceof CommitException) {
+            return new RuntimeException("트랜잭션 commit 실패", e);
+        } else if (e instanceof SubmitException) {
+            return new RuntimeException("트랜잭션 order 에게 전달 실패", e);
+        } else if (e instanceof CommitStatusException) {
+            return new RuntimeException("트랜잭션 commit 상태 조회 실패", e);
+        } else if (e instanceof JsonProcessingException) {
+            return new RuntimeException("JSON 파싱 실패", e);
+        } else if (e instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+
+        return new RuntimeException(e);
+    }
+
+    private Contract contract() {
+        return fabricGateWay.connection().getNetwork(FabricAccountRepository.CHANNEL_NAME).getContract(FabricAccountRepository.CHAINCODE_NAME);
+    }
+
+    private void record(int size) {
+        flushes.incrementAndGet();
+        flushedEntries.addAndGet(size);
+        largestFlush.accumulateAndGet(size, Math::max);
+
+        if (log.isDebugEnabled()) {
+            synchronized (lock) {
+                log.debug("이체 묶음 {}건 제출, 대기 {}건, 제출 중 묶음 {}개", size, queue.size(), inFlight);
+            }
+        }
+    }
+
+    private void report() {
+        long count = flushes.getAndSet(0);
+        long entries = flushedEntries.getAndSet(0);
+        long largest = largestFlush.getAndSet(0);
+        long retried = resubmitted.getAndSet(0);
+
+        if (count > 0) {
+            log.info("최근 {}초 이체 묶음 {}회, 이체 {}건 (평균 {}건, 최대 {}건), 묶음 실패로 다시 제출 {}건",
+                    REPORT_SECONDS, count, entries, String.format("%.1f", (double) entries / count), largest, retried);
+        }
+    }
+}
@@ -1,16 +1,42 @@
 package com.example.HyperledgerSpring.Account.Service;
 
 
+import com.example.HyperledgerSpring.Account.AccountType;
 import com.example.HyperledgerSpring.Account.Controller.TransferInputForm;
 import com.example.HyperledgerSpring.Account.Domain.Account;
+import com.example.HyperledgerSpring.Account.Domain.AccountHistoryPage;
+import com.example.HyperledgerSpring.Account.Domain.AccountPage;
+import com.example.HyperledgerSpring.Account.Domain.AccountsResult;
+import com.example.HyperledgerSpring.Account.Domain.CreateResult;
+import com.example.HyperledgerSpring.Account.Domain.TransactionStatus;
+import com.example.HyperledgerSpring.Account.Domain.TransferResult;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface AccountService {
 
     void createAccount(Account account);
 
-    List<Account> getAllAccount();
+    List<CreateResult> createAccounts(List<Account> accounts);
+
+    Account getAccount(String accountId, boolean fromLedger);
+
+    AccountsResult getAccounts(List<String> accountIds, boolean fromLedger);
+
+    AccountPage getAccountPage(int pageSize, String bookmark, String owner, AccountType type, boolean fromLedger);
+
+    AccountPage getAccountPageByAmount(Long minAmount, Long maxAmount, AccountType type, String sort, int pageSize, String bookmark);
+
+    AccountHistoryPage getAccountHistory(String accountId, int pageSize, String bookmark);
 
     String tranferAccount(String senderId, String receiverId, String sendAmount);
+
+    TransactionStatus tranferAccountAsync(String senderId, String receiverId, String sendAmount);
+
+    TransactionStatus getTransactionStatus(String txId);
+
+    boolean onTransactionComplete(String txId, Consumer<TransactionStatus> callback);
+
+    List<TransferResult> transferBatch(List<TransferInputForm> transfers);
 }
@@ -1,34 +1,50 @@
 package com.example.HyperledgerSpring.Account.Service;
 
 import com.example.HyperledgerSpring.Account.AccountType;
+import com.example.HyperledgerSpring.Account.Controller.TransferInputForm;
 import com.example.HyperledgerSpring.Account.Domain.Account;
+import com.example.HyperledgerSpring.Account.Domain.AccountHistoryPage;
+import com.example.HyperledgerSpring.Account.Domain.AccountPage;
+import com.example.HyperledgerSpring.Account.Domain.AccountsResult;
+import com.example.HyperledgerSpring.Account.Domain.CreateResult;
+import com.example.HyperledgerSpring.Account.Domain.TransactionStatus;
+import com.example.HyperledgerSpring.Account.Domain.TransferResult;
+import com.example.HyperledgerSpring.Account.Repository.AccountProjection;
 import com.example.HyperledgerSpring.Account.Repository.AccountRepository;
 import com.example.HyperledgerSpring.Account.Repository.FabricGateWay;
+import com.example.HyperledgerSpring.Account.Repository.TransactionStatusTracker;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpServerErrorException;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 public class AccountServiceImpl implements AccountService{
 
-    private static AccountRepository accountRepository;
+    private final AccountRepository accountRepository;
+    private final AccountProjection accountProjection;
+    private final TransactionStatusTracker transactionStatusTracker;
 
     @Autowired
-    public AccountServiceImpl(AccountRepository fabricAccountRepository) {
-        accountRepository = fabricAccountRepository;
+    public AccountServiceImpl(AccountRepository fabricAccountRepository, AccountProjection projection, TransactionStatusTracker tracker) {
+        this.accountRepository = fabricAccountRepository;
+        this.accountProjection = projection;
+        this.transactionStatusTracker = tracker;
     }
 
     @Override
     public void createAccount(Account account){
 
         try {
-            List<Account> accounts = accountRepository.getAll();
-
-            if (checkInCommissionAccount(accounts) && account.getType() == AccountType.COMMISSION){
+            // 수수료 계좌를 만들 때만 기존 수수료 계좌를 조회 (원장 전체를 가져오지 않음)
+            // 뷰에 없더라도 체인코드가 중복 수수료 계좌를 거절하므로 뷰가 최신이면 원장은 조회하지 않음
+            if (account.getType() == AccountType.COMMISSION && findCommissionAccount(useProjection(false)).isPresent()){
                 throw new HttpServerErrorException(HttpStatus.CONFLICT, "이미 수수료 계좌가 존재합니다.");
             }
 
@@ -40,43 +56,118 @@ public class AccountServiceImpl implements AccountService{
     }
 
     @Override
-    public List<Account> getAllAccount(){
+    public List<CreateResult> createAccounts(List<Account> accounts){
+        List<CreateResult> createResults;
 
-        List<Account> accounts = new ArrayList<>();
+        try {
+            // 중복 계좌, 수수료 계좌 중복 검증은 체인코드의 CreateAssetsBatch 가 한 번에 처리 (이미 있는 계좌는 EXISTS 로 응답)
+            createResults = this.accountRepository.createAccounts(accounts);
+        } catch (Exception e){
+            throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "일괄 계좌 생성 실패 \n" + e.getMessage());
+        }
+
+        return createResults;
+    }
+
+    @Override
+    public Account getAccount(String accountId, boolean fromLedger){
+
+        Account account;
 
         try {
-            accounts = this.accountRepository.getAll();
+            // 뷰에 없으면 방금 만들어진 계좌일 수 있으므로 원장에서 다시 조회
+            Optional<Account> found = useProjection(fromLedger) ? accountProjection.findById(accountId) : Optional.empty();
+
+            if (found.isEmpty()){
+                found = this.accountRepository.findById(accountId);
+            }
+
+            account = found.orElseThrow(() -> new HttpServerErrorException(HttpStatus.NOT_FOUND, "계좌가 존재하지 않습니다."));
         } catch (Exception e){
             throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "계좌 조회 실패 \n" + e.getMessage());
         }
 
-        return accounts;
+        return account;
     }
 
     @Override
-    public String tranferAccount(String senderId, String receiverId, String sendAmount) {
-        String tranferResult = "";
+    public AccountsResult getAccounts(List<String> accountIds, boolean fromLedger){
+
+        AccountsResult accounts;
 
         try {
-            List<Account> accounts = accountRepository.getAll();
+            List<Account> found = useProjection(fromLedger) ? accountProjection.findAllById(accountIds) : List.of();
 
-            if (senderId.equals(receiverId)){
-                throw new HttpServerErrorException(HttpStatus.BAD_REQUEST, "보내는 사람과 받는 사람이 동일합니다.");
+            // 뷰에 전부 있을 때만 뷰 결과를 쓰고, 하나라도 없으면 원장에서 조회
+            if (!found.isEmpty() && found.size() == new HashSet<>(accountIds).size()){
+                accounts = new AccountsResult(found, new ArrayList<>());
+            } else {
+                accounts = this.accountRepository.getAccounts(accountIds);
             }
+        } catch (Exception e){
+            throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "계좌 조회 실패 \n" + e.getMessage());
+        }
 
-            if (!checkInAccountByAccountId(senderId, accounts) || !checkInAccountByAccountId(receiverId, accounts)){
-                throw new HttpServerErrorException(HttpStatus.BAD_REQUEST, "보내는 사람 혹은 받는 사람의 계좌가 존재하지 않습니다.");
-            }
+        return accounts;
+    }
 
-            Account senderAccount = getAccountById(senderId, accounts);
-            Account receiverAccount = getAccountById(receiverId, accounts);
+    @Override
+    public AccountPage getAccountPage(int pageSize, String bookmark, String owner, AccountType type, boolean fromLedger){
+
+        AccountPage page;
 
-            if (checkTransactionBetweenUsers(senderAccount.getType(), receiverAccount.getType()) && !checkInCommissionAccount(accounts)){
-                throw new HttpServerErrorException(HttpStatus.CONFLICT, "유저간의 거래이지만 수수료 계좌가 존재하지 않습니다.");
+        try {
+            // 소유자, 타입 조건은 체인코드의 인덱스로 조회 (원장 전체를 가져와서 거르지 않음)
+            if (owner != null && !owner.isEmpty()){
+                page = this.accountRepository.getPageByOwner(owner, pageSize, bookmark);
+            } else if (type != null){
+                page = this.accountRepository.getPageByType(type, pageSize, bookmark);
+            } else if (useProjection(fromLedger)){
+                page = accountProjection.getPage(pageSize, bookmark);
+            } else {
+                page = this.accountRepository.getPage(pageSize, bookmark);
             }
+        } catch (Exception e){
+            throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "계좌 조회 실패 \n" + e.getMessage());
+        }
+
+        return page;
+    }
+
+    @Override
+    public AccountPage getAccountPageByAmount(Long minAmount, Long maxAmount, AccountType type, String sort, int pageSize, String bookmark){
 
-            checkSenderAmount(senderAccount, receiverAccount, Long.parseLong(sendAmount));
+        AccountPage page;
+
+        try {
+            page = this.accountRepository.getPageByAmount(minAmount, maxAmount, type, sort, pageSize, bookmark);
+        } catch (Exception e){
+            throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "계좌 잔액 조회 실패 \n" + e.getMessage());
+        }
+
+        return page;
+    }
 
+    @Override
+    public AccountHistoryPage getAccountHistory(String accountId, int pageSize, String bookmark){
+
+        AccountHistoryPage page;
+
+        try {
+            page = this.accountRepository.getHistory(accountId, pageSize, bookmark);
+        } catch (Exception e){
+            throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "계좌 이력 조회 실패 \n" + e.getMessage());
+        }
+
+        return page;
+    }
+
+    @Override
+    public String tranferAccount(String senderId, String receiverId, String sendAmount) {
+        String tranferResult = "";
+
+        try {
+            validateTransfer(senderId, receiverId, sendAmount);
             tranferResult = this.accountRepository.transfer(senderId, receiverId, sendAmount);
 
         } catch (Exception e){
@@ -86,24 +177,99 @@ public class AccountServiceImpl implements AccountService{
         return tranferResult;
     }
 
-    public boolean checkInCommissionAccount(List<Account> accounts){
-        for (Account account : accounts){
-            if (account.getType() == AccountType.COMMISSION){
-                return true;
+    @Override
+    public TransactionStatus tranferAccountAsync(String senderId, String receiverId, String sendAmount) {
+        TransactionStatus status;
+
+        try {
+            // 검증은 동기 이체와 같고, 보증과 주문자 전달까지만 기다림 (커밋 결과는 getTransactionStatus 로 조회)
+            validateTransfer(senderId, receiverId, sendAmount);
+            status = this.accountRepository.transferAsync(senderId, receiverId, sendAmount);
+
+        } catch (Exception e){
+            throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "이체 실패 \n" + e.getMessage());
+        }
+
+        return status;
+    }
+
+    @Override
+    public TransactionStatus getTransactionStatus(String txId) {
+        TransactionStatus status;
+
+        try {
+            status = transactionStatusTracker.getStatus(txId)
+                    .orElseThrow(() -> new HttpServerErrorException(HttpStatus.NOT_FOUND, "트랜잭션이 존재하지 않거나 조회 기간이 지났습니다."));
+        } catch (Exception e){
+            throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "트랜잭션 조회 실패 \n" + e.getMessage());
+        }
+
+        return status;
+    }
+
+    @Override
+    public boolean onTransactionComplete(String txId, Consumer<TransactionStatus> callback) {
+        return transactionStatusTracker.onComplete(txId, callback);
+    }
+
+    @Override
+    public List<TransferResult> transferBatch(List<TransferInputForm> transfers) {
+        List<TransferResult> transferResults;
+
+        try {
+            for (TransferInputForm transfer : transfers){
+                if (transfer.getSender().equals(transfer.getReceiver())){
+                    throw new HttpServerErrorException(HttpStatus.BAD_REQUEST, "보내는 사람과 받는 사람이 동일합니다.");
+                }
             }
+
+            // 잔액, 계좌 존재 여부, 수수료 계좌 검증은 체인코드의 TransferBatch 가 한 번에 처리 (하나라도 실패하면 전체 실패)
+            transferResults = this.accountRepository.transferBatch(transfers);
+
+        } catch (Exception e){
+            throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "일괄 이체 실패 \n" + e.getMessage());
         }
 
-        return false;
+        return transferResults;
     }
 
-    public boolean checkInAccountByAccountId(String checkAccountId, List<Account> accounts){
-        for (Account account : accounts){
-            if (account.getAccountId().equals(checkAccountId)){
-                return true;
+    private void validateTransfer(String senderId, String receiverId, String sendAmount){
+        if (senderId.equals(receiverId)){
+            throw new HttpServerErrorException(HttpStatus.BAD_REQUEST, "보내는 사람과 받는 사람이 동일합니다.");
+        }
+
+        boolean fromProjection = useProjection(false);
+
+        try {
+            checkTransfer(senderId, receiverId, Long.parseLong(sendAmount), fromProjection);
+        } catch (HttpServerErrorException e){
+            if (!fromProjection){
+                throw e;
             }
+
+            // 뷰가 늦게 갱신되어 생긴 실패일 수 있으므로 거절하기 전에 원장으로 다시 검증
+            checkTransfer(senderId, receiverId, Long.parseLong(sendAmount), false);
         }
+    }
 
-        return false;
+    public void checkTransfer(String senderId, String receiverId, long sendAmount, boolean fromProjection){
+        // 보내는 사람과 받는 사람 계좌만 한 번에 조회 (원장 전체를 가져오지 않음)
+        List<Account> accounts = fromProjection
+                ? accountProjection.findAllById(List.of(senderId, receiverId))
+                : this.accountRepository.findAllById(List.of(senderId, receiverId));
+
+        Account senderAccount = getAccountById(senderId, accounts);
+        Account receiverAccount = getAccountById(receiverId, accounts);
+
+        if (senderAccount == null || receiverAccount == null){
+            throw new HttpServerErrorException(HttpStatus.BAD_REQUEST, "보내는 사람 혹은 받는 사람의 계좌가 존재하지 않습니다.");
+        }
+
+        if (checkTransactionBetweenUsers(senderAccount.getType(), receiverAccount.getType()) && findCommissionAccount(fromProjection).isEmpty()){
+            throw new HttpServerErrorException(HttpStatus.CONFLICT, "유저간의 거래이지만 수수료 계좌가 존재하지 않습니다.");
+        }
+
+        checkSenderAmount(senderAccount, receiverAccount, sendAmount);
     }
 
     public Account getAccountById(String accountId, List<Account> accounts){
@@ -132,6 +298,15 @@ public class AccountServiceImpl implements AccountService{
         }
     }
 
+    // fromLedger 가 아니고 뷰가 max-staleness 이내로 최신일 때만 뷰에서 조회
+    private boolean useProjection(boolean fromLedger){
+        return !fromLedger && accountProjection.isFresh();
+    }
+
+    private Optional<Account> findCommissionAccount(boolean fromProjection){
+        return fromProjection ? accountProjection.findCommissionAccount() : this.accountRepository.findCommissionAccount();
+    }
+
     public boolean checkTransactionBetweenUsers(AccountType senderType, AccountType receiverType){
         if (senderType == receiverType && senderType == AccountType.USER){
             return true;
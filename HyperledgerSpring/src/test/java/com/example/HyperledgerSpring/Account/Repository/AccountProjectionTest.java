@@ -0,0 +1,159 @@
+package com.example.HyperledgerSpring.Account.Repository;
+
+import com.example.HyperledgerSpring.Account.AccountType;
+import com.example.HyperledgerSpring.Account.Domain.Account;
+import com.example.HyperledgerSpring.Account.Domain.AccountPage;
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class AccountProjectionTest {
+
+    @Mock
+    FabricAccountRepository fabricAccountRepository;
+
+    @Mock
+    FabricGateWay fabricGateWay;
+
+    AccountProjection accountProjection;
+
+    @BeforeEach
+    public void beforeEach(){
+        accountProjection = new AccountProjection(fabricAccountRepository, fabricGateWay, true, Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("처음 보는 계좌는 원장에서 읽어서 뷰에 추가")
+    void unknownAccountIsReadFromLedger(){
+        Account created = Account.builder().accountId("1111").owner("A").type(AccountType.USER).amount(1000L).build();
+
+        when(fabricAccountRepository.findAllById(List.of("1111")))
+                .thenReturn(List.of(created));
+
+        accountProjection.apply(event(1, "tx1", "{\"tx\":\"tx1\",\"fn\":\"CreateAsset\",\"changes\":[{\"id\":\"1111\",\"balance\":1000,\"delta\":1000}]}"));
+
+        assertThat(accountProjection.findById("1111")).contains(created);
+    }
+
+    @Test
+    @DisplayName("이벤트에 잔액이 있으면 원장을 조회하지 않고 갱신, 두 번 적용해도 같은 결과")
+    void balanceIsTakenFromEvent(){
+        when(fabricAccountRepository.findAllById(List.of("1111", "2222")))
+                .thenReturn(List.of(
+                        Account.builder().accountId("1111").owner("A").type(AccountType.USER).amount(1000L).build(),
+                        Account.builder().accountId("2222").owner("B").type(AccountType.USER).amount(0L).build()));
+
+        accountProjection.apply(event(1, "tx1", "{\"fn\":\"CreateAssetsBatch\",\"changes\":[{\"id\":\"1111\",\"balance\":1000,\"delta\":1000},"
+                + "{\"id\":\"2222\",\"balance\":0,\"delta\":0}]}"));
+
+        ChaincodeEvent transfer = event(2, "tx2", "{\"fn\":\"TransferAccount\",\"changes\":[{\"id\":\"1111\",\"balance\":900,\"delta\":-100},"
+                + "{\"id\":\"2222\",\"balance\":100,\"delta\":100}]}");
+        accountProjection.apply(transfer);
+        accountProjection.apply(transfer);
+
+        assertThat(accountProjection.findAllById(List.of("1111", "2222")))
+                .extracting(Account::getAmount)
+                .containsExactly(900L, 100L);
+        verify(fabricAccountRepository, never()).findAllById(List.of("1111"));
+    }
+
+    @Test
+    @DisplayName("잔액이 없는 변경은 원장을 조회하지 않고 delta 를 더함")
+    void deltaIsAddedWithoutLedgerRead(){
+        when(fabricAccountRepository.findAllById(List.of("c")))
+                .thenReturn(List.of(Account.builder().accountId("c").owner("C").type(AccountType.COMMISSION).amount(10L).build()));
+
+        accountProjection.apply(event(1, "tx1", "{\"changes\":[{\"id\":\"c\",\"delta\":0}]}"));
+        accountProjection.apply(event(2, "tx2", "{\"seq\":" + nanosFromNow(10) + ",\"changes\":[{\"id\":\"c\",\"delta\":3}]}"));
+
+        assertThat(accountProjection.findCommissionAccount()).map(Account::getAmount).contains(13L);
+        verify(fabricAccountRepository, times(1)).findAllById(List.of("c"));
+    }
+
+    @Test
+    @DisplayName("원장에서 읽기 전에 만들어진 트랜잭션의 delta 는 이미 들어 있을 수 있어서 다시 읽음")
+    void deltaOlderThanReadIsReadFromLedger(){
+        when(fabricAccountRepository.findAllById(List.of("c")))
+                .thenReturn(List.of(Account.builder().accountId("c").owner("C").type(AccountType.COMMISSION).amount(10L).build()))
+                .thenReturn(List.of(Account.builder().accountId("c").owner("C").type(AccountType.COMMISSION).amount(13L).build()));
+
+        accountProjection.apply(event(1, "tx1", "{\"changes\":[{\"id\":\"c\",\"delta\":0}]}"));
+        accountProjection.apply(event(2, "tx2", "{\"seq\":" + nanosFromNow(-10) + ",\"changes\":[{\"id\":\"c\",\"delta\":3}]}"));
+
+        assertThat(accountProjection.findCommissionAccount()).map(Account::getAmount).contains(13L);
+        verify(fabricAccountRepository, times(2)).findAllById(List.of("c"));
+    }
+
+    @Test
+    @DisplayName("GetAssetsPage 와 같은 bookmark 형식으로 페이지 조회")
+    void pagesWithLedgerBookmarks(){
+        when(fabricAccountRepository.findAllById(any()))
+                .thenReturn(List.of(
+                        Account.builder().accountId("a").owner("A").type(AccountType.USER).amount(1L).build(),
+                        Account.builder().accountId("b").owner("B").type(AccountType.USER).amount(2L).build(),
+                        Account.builder().accountId("c").owner("C").type(AccountType.COMMISSION).amount(0L).build()));
+
+        accountProjection.apply(event(1, "tx1", "{\"changes\":[{\"id\":\"a\",\"delta\":1},{\"id\":\"b\",\"delta\":2},{\"id\":\"c\",\"delta\":0}]}"));
+
+        AccountPage first = accountProjection.getPage(2, "");
+        AccountPage second = accountProjection.getPage(2, first.getBookmark());
+
+        assertThat(first.getRecords()).extracting(Account::getAccountId).containsExactly("a", "b");
+        assertThat(first.getBookmark()).isEqualTo("account:c");
+        assertThat(second.getRecords()).extracting(Account::getAccountId).containsExactly("c");
+        assertThat(second.getBookmark()).isEmpty();
+        assertThat(accountProjection.findCommissionAccount()).map(Account::getAccountId).contains("c");
+        // 전체 조회 전에는 서비스가 뷰를 쓰지 않음
+        assertThat(accountProjection.isFresh()).isFalse();
+    }
+
+    private static long nanosFromNow(long seconds){
+        return TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) + TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    private static ChaincodeEvent event(long blockNumber, String transactionId, String payload){
+        return new ChaincodeEvent() {
+            @Override
+            public long getBlockNumber() {
+                return blockNumber;
+            }
+
+            @Override
+            public String getTransactionId() {
+                return transactionId;
+            }
+
+            @Override
+            public String getChaincodeName() {
+                return "basic";
+            }
+
+            @Override
+            public String getEventName() {
+                return "AccountsChanged";
+            }
+
+            @Override
+            public byte[] getPayload() {
+                return payload.getBytes(StandardCharsets.UTF_8);
+            }
+        };
+    }
+}
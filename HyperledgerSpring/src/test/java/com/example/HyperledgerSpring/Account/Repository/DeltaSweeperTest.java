@@ -0,0 +1,104 @@
+package com.example.HyperledgerSpring.Account.Repository;
+
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.Network;
+import org.hyperledger.fabric.client.SubmitException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class DeltaSweeperTest {
+
+    @Mock
+    FabricGateWay fabricGateWay;
+
+    @Mock
+    Gateway gateway;
+
+    @Mock
+    Network network;
+
+    @Mock
+    Contract contract;
+
+    DeltaSweeper deltaSweeper;
+
+    @BeforeEach
+    public void beforeEach(){
+        deltaSweeper = new DeltaSweeper(fabricGateWay, true, Duration.ofSeconds(10), 5);
+    }
+
+    @Test
+    @DisplayName("정산할 delta 가 없으면 submit 하지 않음")
+    void idleLedgerIsNotSwept() throws Exception {
+        when(fabricGateWay.evaluate("mychannel", "basic", "GetPendingDeltas"))
+                .thenReturn(bytes("{\"commission\":0,\"stats\":0}"));
+
+        deltaSweeper.sweep();
+
+        verify(fabricGateWay, never()).connection();
+        verify(contract, never()).submitTransaction(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("남은 delta 수만큼 MAX_SWEEP_SIZE 단위로 정산")
+    void sweepSubmitsOneChunkPerThousandDeltas() throws Exception {
+        stubContract();
+        when(fabricGateWay.evaluate("mychannel", "basic", "GetPendingDeltas"))
+                .thenReturn(bytes("{\"commission\":1500,\"stats\":0}"));
+
+        deltaSweeper.sweep();
+
+        verify(contract, times(2)).submitTransaction("SweepCommission", "1000");
+        verify(contract, never()).submitTransaction("SweepLedgerStats", "1000");
+    }
+
+    @Test
+    @DisplayName("한 주기에 max-chunks 번까지만 정산")
+    void sweepStopsAtMaxChunks() throws Exception {
+        stubContract();
+
+        assertThat(deltaSweeper.sweep("SweepLedgerStats", 100_000)).isEqualTo(5);
+        verify(contract, times(5)).submitTransaction("SweepLedgerStats", "1000");
+    }
+
+    @Test
+    @DisplayName("정산이 실패하면 이번 주기는 멈추고 다음 주기에 다시 정산")
+    void failedSweepWaitsForNextRun() throws Exception {
+        stubContract();
+        SubmitException conflict = mock(SubmitException.class);
+
+        when(contract.submitTransaction("SweepLedgerStats", "1000"))
+                .thenReturn(bytes("{\"totalSupply\":100}"))
+                .thenThrow(conflict);
+
+        assertThat(deltaSweeper.sweep("SweepLedgerStats", 3000)).isEqualTo(1);
+        verify(contract, times(2)).submitTransaction("SweepLedgerStats", "1000");
+    }
+
+    private void stubContract(){
+        when(fabricGateWay.connection()).thenReturn(gateway);
+        when(gateway.getNetwork("mychannel")).thenReturn(network);
+        when(network.getContract("basic")).thenReturn(contract);
+    }
+
+    private static byte[] bytes(String value){
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.HyperledgerSpring.Account.Repository;
+
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.GatewayException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PeerPoolTest {
+
+    @Mock
+    ManagedChannel peer0Channel;
+
+    @Mock
+    ManagedChannel peer1Channel;
+
+    @Mock
+    Gateway peer0;
+
+    @Mock
+    Gateway peer1;
+
+    Map<String, ManagedChannel> channels = new LinkedHashMap<>();
+
+    @BeforeEach
+    public void beforeEach(){
+        channels.clear();
+        channels.put("peer0:7051", peer0Channel);
+        channels.put("peer1:7051", peer1Channel);
+    }
+
+    @Test
+    @DisplayName("ROUND_ROBIN 이면 조회를 피어마다 돌아가면서 보냄")
+    void evaluatesAreSpreadRoundRobin() throws Exception {
+        PeerPool peerPool = newPeerPool(PeerPool.Routing.ROUND_ROBIN);
+        List<Gateway> used = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++){
+            peerPool.evaluate(used::add);
+        }
+
+        assertThat(used).containsExactly(peer0, peer1, peer0, peer1);
+    }
+
+    @Test
+    @DisplayName("LEAST_OUTSTANDING 이면 처리 중인 요청이 있는 피어를 피함")
+    void evaluatesAvoidBusyPeer() throws Exception {
+        PeerPool peerPool = newPeerPool(PeerPool.Routing.LEAST_OUTSTANDING);
+
+        // 첫 조회가 끝나기 전에 들어온 조회는 다른 피어로
+        Gateway nested = peerPool.evaluate(busy -> {
+            Gateway other = peerPool.evaluate(gateway -> gateway);
+            assertThat(other).isNotSameAs(busy);
+            return other;
+        });
+
+        assertThat(nested).isIn(peer0, peer1);
+        assertThat(peerPool.getPeers()).extracting(PeerPool.Peer::getOutstanding).containsOnly(0);
+    }
+
+    @Test
+    @DisplayName("피어가 UNAVAILABLE 이면 빼고 다른 피어로 다시 보내고, primary 도 다음 피어로 바뀜")
+    void unavailablePeerIsEjected() throws Exception {
+        PeerPool peerPool = newPeerPool(PeerPool.Routing.ROUND_ROBIN);
+        GatewayException unavailable = mock(GatewayException.class);
+        List<Gateway> used = new ArrayList<>();
+
+        when(unavailable.getStatus()).thenReturn(Status.UNAVAILABLE);
+
+        Gateway answered = peerPool.evaluate(gateway -> {
+            used.add(gateway);
+
+            if (gateway == peer0){
+                throw unavailable;
+            }
+
+            return gateway;
+        });
+
+        assertThat(answered).isSameAs(peer1);
+        assertThat(used).containsExactly(peer0, peer1);
+        assertThat(peerPool.primary()).isSameAs(peer1);
+
+        for (int i = 0; i < 3; i++){
+            assertThat(peerPool.evaluate(gateway -> gateway)).isSameAs(peer1);
+        }
+    }
+
+    @Test
+    @DisplayName("피어 장애가 아닌 실패(체인코드 에러 등)는 다른 피어로 다시 보내지 않음")
+    void chaincodeErrorIsNotRetried() {
+        PeerPool peerPool = newPeerPool(PeerPool.Routing.ROUND_ROBIN);
+        GatewayException aborted = mock(GatewayException.class);
+        List<Gateway> used = new ArrayList<>();
+
+        when(aborted.getStatus()).thenReturn(Status.ABORTED);
+
+        assertThrows(GatewayException.class, () -> peerPool.evaluate(gateway -> {
+            used.add(gateway);
+            throw aborted;
+        }));
+
+        assertThat(used).hasSize(1);
+        assertThat(peerPool.primary()).isSameAs(peer0);
+    }
+
+    @Test
+    @DisplayName("상태 확인에서 TRANSIENT_FAILURE 면 빼고, 다시 READY 가 되면 넣음")
+    void healthCheckEjectsAndRestores() {
+        PeerPool peerPool = newPeerPool(PeerPool.Routing.ROUND_ROBIN);
+
+        when(peer0Channel.getState(true))
+                .thenReturn(ConnectivityState.TRANSIENT_FAILURE)
+                .thenReturn(ConnectivityState.READY);
+        when(peer1Channel.getState(true))
+                .thenReturn(ConnectivityState.READY);
+
+        peerPool.checkHealth();
+        assertThat(peerPool.primary()).isSameAs(peer1);
+
+        peerPool.checkHealth();
+        assertThat(peerPool.primary()).isSameAs(peer0);
+    }
+
+    private PeerPool newPeerPool(PeerPool.Routing routing){
+        return new PeerPool(channels, channel -> channel == peer0Channel ? peer0 : peer1,
+                routing, Duration.ofMinutes(1), Duration.ZERO);
+    }
+}
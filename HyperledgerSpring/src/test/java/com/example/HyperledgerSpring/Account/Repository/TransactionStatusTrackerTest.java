@@ -0,0 +1,77 @@
+package com.example.HyperledgerSpring.Account.Repository;
+
+import com.example.HyperledgerSpring.Account.Domain.TransactionStatus;
+import org.hyperledger.fabric.protos.peer.FilteredBlock;
+import org.hyperledger.fabric.protos.peer.FilteredTransaction;
+import org.hyperledger.fabric.protos.peer.TxValidationCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+public class TransactionStatusTrackerTest {
+
+    @Mock
+    FabricGateWay fabricGateWay;
+
+    TransactionStatusTracker transactionStatusTracker;
+
+    @BeforeEach
+    public void beforeEach(){
+        transactionStatusTracker = new TransactionStatusTracker(fabricGateWay, Duration.ofSeconds(60));
+    }
+
+    @Test
+    @DisplayName("블록에서 VALID 로 확인된 트랜잭션은 COMMITTED, 기다리던 알림도 호출")
+    void validTransactionIsCommitted(){
+        List<TransactionStatus> notified = new ArrayList<>();
+
+        transactionStatusTracker.register("tx1");
+        transactionStatusTracker.submitted("tx1", "OK", null);
+        assertThat(transactionStatusTracker.onComplete("tx1", notified::add)).isTrue();
+        assertThat(transactionStatusTracker.getStatus("tx1")).map(TransactionStatus::getStatus).contains(TransactionStatus.PENDING);
+
+        transactionStatusTracker.apply(block(7, "other", TxValidationCode.VALID, "tx1", TxValidationCode.VALID));
+
+        assertThat(transactionStatusTracker.getStatus("tx1"))
+                .contains(new TransactionStatus("tx1", TransactionStatus.COMMITTED, "VALID", 7L, "OK"));
+        assertThat(notified).extracting(TransactionStatus::getStatus).containsExactly(TransactionStatus.COMMITTED);
+        // 추적하지 않은 트랜잭션은 기록하지 않음
+        assertThat(transactionStatusTracker.getStatus("other")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("검증에 실패한 트랜잭션은 FAILED 와 검증 코드, 끝난 뒤 등록한 알림은 바로 호출")
+    void invalidTransactionIsFailed(){
+        List<TransactionStatus> notified = new ArrayList<>();
+
+        transactionStatusTracker.register("tx1");
+        transactionStatusTracker.apply(block(3, "tx1", TxValidationCode.MVCC_READ_CONFLICT));
+        transactionStatusTracker.submitted("tx1", "OK", null);
+
+        assertThat(transactionStatusTracker.onComplete("tx1", notified::add)).isTrue();
+        assertThat(notified).containsExactly(new TransactionStatus("tx1", TransactionStatus.FAILED, "MVCC_READ_CONFLICT", 3L, "OK"));
+        assertThat(transactionStatusTracker.onComplete("unknown", notified::add)).isFalse();
+    }
+
+    private static FilteredBlock block(long number, Object... transactions){
+        FilteredBlock.Builder block = FilteredBlock.newBuilder().setNumber(number);
+
+        for (int i = 0; i < transactions.length; i += 2){
+            block.addFilteredTransactions(FilteredTransaction.newBuilder()
+                    .setTxid((String) transactions[i])
+                    .setTxValidationCode((TxValidationCode) transactions[i + 1]));
+        }
+
+        return block.build();
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.HyperledgerSpring.Account.Repository;
+
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.EndorseException;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.Network;
+import org.hyperledger.fabric.client.SubmitException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TransferBatcherTest {
+
+    // 체인코드 TransferAccount 결과와 같은 형식
+    private static final String FIRST_MESSAGE = "Account [accountId=1111, owner=A, amount=900, type=USER] -> Account [accountId=2222, owner=B, amount=100, type=USER]";
+    private static final String SECOND_MESSAGE = "Account [accountId=3333, owner=C, amount=950, type=USER] -> Account [accountId=4444, owner=D, amount=50, type=USER]";
+
+    @Mock
+    FabricGateWay fabricGateWay;
+
+    @Mock
+    Gateway gateway;
+
+    @Mock
+    Network network;
+
+    @Mock
+    Contract contract;
+
+    TransferBatcher transferBatcher;
+
+    @BeforeEach
+    public void beforeEach(){
+        when(fabricGateWay.connection()).thenReturn(gateway);
+        when(gateway.getNetwork("mychannel")).thenReturn(network);
+        when(network.getContract("basic")).thenReturn(contract);
+
+        // 두 건이 모이면 바로 제출, 한 건이면 1분을 기다림
+        transferBatcher = new TransferBatcher(fabricGateWay, true, Duration.ofMinutes(1), 2, 1);
+    }
+
+    @AfterEach
+    public void afterEach(){
+        transferBatcher.stop();
+    }
+
+    @Test
+    @DisplayName("max-size 만큼 모이면 TransferBatch 하나로 제출하고 각자 자기 결과를 받음")
+    void transfersAreSubmittedAsOneBatch() throws Exception {
+        when(contract.submitTransaction(eq("TransferBatch"), anyString()))
+                .thenReturn(("[{\"index\":0,\"sender\":\"1111\",\"receiver\":\"2222\",\"amount\":100,\"commission\":0,\"senderAmount\":900,\"receiverAmount\":100,\"message\":\"" + FIRST_MESSAGE + "\"},"
+                        + "{\"index\":1,\"sender\":\"3333\",\"receiver\":\"4444\",\"amount\":50,\"commission\":0,\"senderAmount\":950,\"receiverAmount\":50,\"message\":\"" + SECOND_MESSAGE + "\"}]")
+                        .getBytes(StandardCharsets.UTF_8));
+
+        CompletableFuture<String> first = transferBatcher.submit("1111", "2222", "100");
+        CompletableFuture<String> second = transferBatcher.submit("3333", "4444", "50");
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(FIRST_MESSAGE);
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(SECOND_MESSAGE);
+        verify(contract, times(1)).submitTransaction(eq("TransferBatch"), anyString());
+    }
+
+    @Test
+    @DisplayName("묶음이 실패하면 한 건씩 다시 제출해서 실패한 이체만 실패")
+    void failedBatchIsResubmittedOneByOne() throws Exception {
+        EndorseException insufficientFunds = mock(EndorseException.class);
+
+        when(contract.submitTransaction(eq("TransferBatch"), anyString()))
+                .thenThrow(insufficientFunds);
+        when(contract.submitTransaction("TransferAccount", "1111", "2222", "100000"))
+                .thenThrow(insufficientFunds);
+        when(contract.submitTransaction("TransferAccount", "3333", "4444", "50"))
+                .thenReturn("OK".getBytes(StandardCharsets.UTF_8));
+
+        CompletableFuture<String> failed = transferBatcher.submit("1111", "2222", "100000");
+        CompletableFuture<String> succeeded = transferBatcher.submit("3333", "4444", "50");
+
+        assertThat(succeeded.get(5, TimeUnit.SECONDS)).isEqualTo("OK");
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertThat(e.getCause()).hasMessage("트랜잭션 제안 보증 실패(트랜잭션 실행 중 에러뜸)");
+    }
+
+    @Test
+    @DisplayName("주문자 전달에 실패한 묶음은 이미 커밋됐을 수 있으므로 다시 제출하지 않고 모두 실패")
+    void submitFailureIsNotResubmitted() throws Exception {
+        SubmitException unavailable = mock(SubmitException.class);
+
+        when(contract.submitTransaction(eq("TransferBatch"), anyString()))
+                .thenThrow(unavailable);
+
+        CompletableFuture<String> first = transferBatcher.submit("1111", "2222", "100");
+        CompletableFuture<String> second = transferBatcher.submit("3333", "4444", "50");
+
+        for (CompletableFuture<String> transfer : List.of(first, second)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> transfer.get(5, TimeUnit.SECONDS));
+            assertThat(e.getCause()).hasMessage("트랜잭션 order 에게 전달 실패");
+        }
+
+        verify(contract, never()).submitTransaction(eq("TransferAccount"), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("묶음 결과에 없는 이체는 실패")
+    void transferMissingFromResultsFails() throws Exception {
+        when(contract.submitTransaction(eq("TransferBatch"), anyString()))
+                .thenReturn("[{\"index\":0,\"sender\":\"1111\",\"receiver\":\"2222\",\"amount\":100,\"commission\":0,\"senderAmount\":900,\"receiverAmount\":100,\"message\":\"" + FIRST_MESSAGE + "\"}]"
+                        .getBytes(StandardCharsets.UTF_8));
+
+        CompletableFuture<String> first = transferBatcher.submit("1111", "2222", "100");
+        CompletableFuture<String> second = transferBatcher.submit("3333", "4444", "50");
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(FIRST_MESSAGE);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertThat(e.getCause()).hasMessage("이체 묶음 결과에 이 이체가 없습니다.");
+    }
+}
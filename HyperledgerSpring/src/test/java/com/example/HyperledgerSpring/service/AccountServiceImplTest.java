@@ -2,7 +2,10 @@ package com.example.HyperledgerSpring.service;
 
 import com.example.HyperledgerSpring.Account.AccountType;
 import com.example.HyperledgerSpring.Account.Domain.Account;
+import com.example.HyperledgerSpring.Account.Domain.TransactionStatus;
+import com.example.HyperledgerSpring.Account.Repository.AccountProjection;
 import com.example.HyperledgerSpring.Account.Repository.FabricAccountRepository;
+import com.example.HyperledgerSpring.Account.Repository.TransactionStatusTracker;
 import com.example.HyperledgerSpring.Account.Service.AccountServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -15,9 +18,14 @@ import org.springframework.web.client.HttpServerErrorException;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,12 +37,18 @@ public class AccountServiceImplTest {
     @Mock
     FabricAccountRepository fabricAccountRepository;
 
+    @Mock
+    AccountProjection accountProjection;
+
+    @Mock
+    TransactionStatusTracker transactionStatusTracker;
+
     List<Account> mockAccountListByCommission = new ArrayList<>();
     List<Account> mockAccountListByNotCommission = new ArrayList<>();
 
     @BeforeEach
     public void beforeEach(){
-        accountService = new AccountServiceImpl(fabricAccountRepository);
+        accountService = new AccountServiceImpl(fabricAccountRepository, accountProjection, transactionStatusTracker);
 
         mockAccountListByCommission.clear();
         mockAccountListByNotCommission.clear();
@@ -95,8 +109,8 @@ public class AccountServiceImplTest {
                 .amount(0L)
                 .build();
 
-        when(fabricAccountRepository.getAll())
-                .thenReturn(this.mockAccountListByCommission);
+        when(fabricAccountRepository.findCommissionAccount())
+                .thenReturn(Optional.of(this.mockAccountListByCommission.get(3)));
 
         HttpServerErrorException e = assertThrows(HttpServerErrorException.class,
                 () -> accountService.createAccount(commissionAccount));
@@ -112,13 +126,11 @@ public class AccountServiceImplTest {
         String senderId = "1111";
         String receiverId = "1111";
 
-        when(fabricAccountRepository.getAll())
-                .thenReturn(this.mockAccountListByCommission);
-
         HttpServerErrorException e = assertThrows(HttpServerErrorException.class,
                 () -> accountService.tranferAccount(senderId, receiverId, "1000"));
 
         assertThat(e.getMessage()).isEqualTo("500 이체 실패 \n400 보내는 사람과 받는 사람이 동일합니다.");
+        verify(fabricAccountRepository, never()).findAllById(any());
     }
 
     @Test
@@ -127,8 +139,8 @@ public class AccountServiceImplTest {
         String senderId = "1111";
         String receiverId = "99999";
 
-        when(fabricAccountRepository.getAll())
-                .thenReturn(this.mockAccountListByCommission);
+        when(fabricAccountRepository.findAllById(List.of(senderId, receiverId)))
+                .thenReturn(List.of(this.mockAccountListByCommission.get(0)));
 
         HttpServerErrorException e = assertThrows(HttpServerErrorException.class,
                 () -> accountService.tranferAccount(senderId, receiverId, "1000"));
@@ -142,8 +154,10 @@ public class AccountServiceImplTest {
         String senderId = "1111";
         String receiverId = "2222";
 
-        when(fabricAccountRepository.getAll())
-                .thenReturn(this.mockAccountListByNotCommission);
+        when(fabricAccountRepository.findAllById(List.of(senderId, receiverId)))
+                .thenReturn(this.mockAccountListByNotCommission.subList(0, 2));
+        when(fabricAccountRepository.findCommissionAccount())
+                .thenReturn(Optional.empty());
 
         HttpServerErrorException e = assertThrows(HttpServerErrorException.class,
                 () -> accountService.tranferAccount(senderId, receiverId, "1000"));
@@ -157,12 +171,140 @@ public class AccountServiceImplTest {
         String senderId = "1111";
         String receiverId = "2222";
 
-        when(fabricAccountRepository.getAll())
-                .thenReturn(this.mockAccountListByCommission);
+        when(fabricAccountRepository.findAllById(List.of(senderId, receiverId)))
+                .thenReturn(this.mockAccountListByCommission.subList(0, 2));
+        when(fabricAccountRepository.findCommissionAccount())
+                .thenReturn(Optional.of(this.mockAccountListByCommission.get(3)));
 
         HttpServerErrorException e = assertThrows(HttpServerErrorException.class,
                 () -> accountService.tranferAccount(senderId, receiverId, "100000"));
 
         assertThat(e.getMessage()).isEqualTo("500 이체 실패 \n400 보내는 사람의 계좌 잔액이 부족합니다.");
     }
+
+    @Test
+    @DisplayName("transferAccount 두 계좌만 조회하고 전체 원장은 조회하지 않는 테스트")
+    void transferAccountReadsOnlyBothAccounts(){
+        String senderId = "1111";
+        String receiverId = "2222";
+
+        when(fabricAccountRepository.findAllById(List.of(senderId, receiverId)))
+                .thenReturn(this.mockAccountListByCommission.subList(0, 2));
+        when(fabricAccountRepository.findCommissionAccount())
+                .thenReturn(Optional.of(this.mockAccountListByCommission.get(3)));
+        when(fabricAccountRepository.transfer(senderId, receiverId, "1000"))
+                .thenReturn("OK");
+
+        assertThat(accountService.tranferAccount(senderId, receiverId, "1000")).isEqualTo("OK");
+        verify(fabricAccountRepository, never()).getPage(anyInt(), any());
+    }
+
+    @Test
+    @DisplayName("getAccount 존재하지 않은 계좌 에러 테스트")
+    void getAccountByNonExistentAccount(){
+        when(fabricAccountRepository.findById("99999"))
+                .thenReturn(Optional.empty());
+
+        HttpServerErrorException e = assertThrows(HttpServerErrorException.class,
+                () -> accountService.getAccount("99999", false));
+
+        assertThat(e.getMessage()).isEqualTo("500 계좌 조회 실패 \n404 계좌가 존재하지 않습니다.");
+    }
+
+    @Test
+    @DisplayName("transferAccount 최신 뷰로 검증하고 원장은 조회하지 않는 테스트")
+    void transferAccountValidatedFromProjection(){
+        String senderId = "1111";
+        String receiverId = "2222";
+
+        when(accountProjection.isFresh())
+                .thenReturn(true);
+        when(accountProjection.findAllById(List.of(senderId, receiverId)))
+                .thenReturn(this.mockAccountListByCommission.subList(0, 2));
+        when(accountProjection.findCommissionAccount())
+                .thenReturn(Optional.of(this.mockAccountListByCommission.get(3)));
+        when(fabricAccountRepository.transfer(senderId, receiverId, "1000"))
+                .thenReturn("OK");
+
+        assertThat(accountService.tranferAccount(senderId, receiverId, "1000")).isEqualTo("OK");
+        verify(fabricAccountRepository, never()).findAllById(any());
+        verify(fabricAccountRepository, never()).findCommissionAccount();
+    }
+
+    @Test
+    @DisplayName("transferAccount 뷰의 잔액이 늦으면 원장으로 다시 검증하는 테스트")
+    void transferAccountRecheckedOnLedgerWhenProjectionRejects(){
+        String senderId = "1111";
+        String receiverId = "2222";
+        Account staleSender = Account.builder().accountId(senderId)
+                .owner("A")
+                .type(AccountType.USER)
+                .amount(0L)
+                .build();
+
+        when(accountProjection.isFresh())
+                .thenReturn(true);
+        when(accountProjection.findAllById(List.of(senderId, receiverId)))
+                .thenReturn(List.of(staleSender, this.mockAccountListByCommission.get(1)));
+        when(accountProjection.findCommissionAccount())
+                .thenReturn(Optional.of(this.mockAccountListByCommission.get(3)));
+        when(fabricAccountRepository.findAllById(List.of(senderId, receiverId)))
+                .thenReturn(this.mockAccountListByCommission.subList(0, 2));
+        when(fabricAccountRepository.findCommissionAccount())
+                .thenReturn(Optional.of(this.mockAccountListByCommission.get(3)));
+        when(fabricAccountRepository.transfer(senderId, receiverId, "1000"))
+                .thenReturn("OK");
+
+        assertThat(accountService.tranferAccount(senderId, receiverId, "1000")).isEqualTo("OK");
+    }
+
+    @Test
+    @DisplayName("getAccount fromLedger 이면 뷰를 쓰지 않는 테스트")
+    void getAccountFromLedger(){
+        when(fabricAccountRepository.findById("1111"))
+                .thenReturn(Optional.of(this.mockAccountListByCommission.get(0)));
+
+        assertThat(accountService.getAccount("1111", true)).isEqualTo(this.mockAccountListByCommission.get(0));
+        verify(accountProjection, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("transferAccountAsync 검증 실패하면 제출하지 않는 테스트")
+    void transferAccountAsyncBySameAccount(){
+        HttpServerErrorException e = assertThrows(HttpServerErrorException.class,
+                () -> accountService.tranferAccountAsync("1111", "1111", "1000"));
+
+        assertThat(e.getMessage()).isEqualTo("500 이체 실패 \n400 보내는 사람과 받는 사람이 동일합니다.");
+        verify(fabricAccountRepository, never()).transferAsync(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("transferAccountAsync 커밋을 기다리지 않고 PENDING 상태를 돌려주는 테스트")
+    void transferAccountAsyncReturnsPending(){
+        String senderId = "1111";
+        String receiverId = "2222";
+        TransactionStatus pending = new TransactionStatus("tx1", TransactionStatus.PENDING, null, null, "OK");
+
+        when(fabricAccountRepository.findAllById(List.of(senderId, receiverId)))
+                .thenReturn(this.mockAccountListByCommission.subList(0, 2));
+        when(fabricAccountRepository.findCommissionAccount())
+                .thenReturn(Optional.of(this.mockAccountListByCommission.get(3)));
+        when(fabricAccountRepository.transferAsync(senderId, receiverId, "1000"))
+                .thenReturn(pending);
+
+        assertThat(accountService.tranferAccountAsync(senderId, receiverId, "1000")).isEqualTo(pending);
+        verify(fabricAccountRepository, never()).transfer(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("getTransactionStatus 존재하지 않은 트랜잭션 에러 테스트")
+    void getTransactionStatusByUnknownTransaction(){
+        when(transactionStatusTracker.getStatus("tx1"))
+                .thenReturn(Optional.empty());
+
+        HttpServerErrorException e = assertThrows(HttpServerErrorException.class,
+                () -> accountService.getTransactionStatus("tx1"));
+
+        assertThat(e.getMessage()).isEqualTo("500 트랜잭션 조회 실패 \n404 트랜잭션이 존재하지 않거나 조회 기간이 지났습니다.");
+    }
 }
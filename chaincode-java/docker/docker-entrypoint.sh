@@ -3,14 +3,41 @@
 # SPDX-License-Identifier: Apache-2.0
 #
 set -euo pipefail
-: ${CORE_PEER_TLS_ENABLED:="false"}
+# peer: ContractRouter connects to the peer that launched it (CORE_PEER_ADDRESS, CORE_CHAINCODE_ID_NAME)
+# server: AssetTransferServer listens on CHAINCODE_SERVER_ADDRESS as an external chaincode service
+# the first argument, when given, takes precedence over CHAINCODE_MODE
+: ${CHAINCODE_MODE:="peer"}
+CHAINCODE_MODE="${1:-${CHAINCODE_MODE}}"
 : ${DEBUG:="false"}
+: ${CHAINCODE_CONFIG_DIR:="/config"}
+# size the heap from the container memory limit unless JAVA_OPTS says otherwise
+: ${JAVA_OPTS:="-XX:MaxRAMPercentage=75.0 -XX:+UseG1GC -XX:+ExitOnOutOfMemoryError"}
+
+JAVA_ARGS=(${JAVA_OPTS})
+
+# the AppCDS archive dumped into the image; the JVM quietly falls back to loading classes from the jar if it cannot map it
+: ${CHAINCODE_CDS_ARCHIVE:="/chaincode.jsa"}
+
+if [ -f "${CHAINCODE_CDS_ARCHIVE}" ]; then
+   JAVA_ARGS+=(-XX:SharedArchiveFile=${CHAINCODE_CDS_ARCHIVE})
+fi
 
 if [ "${DEBUG,,}" = "true" ]; then
-   exec java -agentlib:jdwp=transport=dt_socket,server=y,suspend=n,address=0.0.0.0:8000 -jar /chaincode.jar
-elif [ "${CORE_PEER_TLS_ENABLED,,}" = "true" ]; then
-   exec java -jar /chaincode.jar # todo
-else
-   exec java -jar /chaincode.jar
+   JAVA_ARGS+=(-agentlib:jdwp=transport=dt_socket,server=y,suspend=n,address=0.0.0.0:8000)
 fi
 
+case "${CHAINCODE_MODE,,}" in
+   peer)
+      MAIN_CLASS=org.hyperledger.fabric.contract.ContractRouter
+      ;;
+   server)
+      MAIN_CLASS=org.hyperledger.fabric.samples.assettransfer.AssetTransferServer
+      ;;
+   *)
+      echo "Unknown CHAINCODE_MODE ${CHAINCODE_MODE}, expected peer or server" >&2
+      exit 1
+      ;;
+esac
+
+# CHAINCODE_CONFIG_DIR comes first so a mounted config.props overrides the one in the jar
+exec java "${JAVA_ARGS[@]}" -cp "${CHAINCODE_CONFIG_DIR}:/chaincode.jar" "${MAIN_CLASS}"
@@ -0,0 +1,125 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.hyperledger.fabric.contract.ContractRouter;
+import org.hyperledger.fabric.shim.Chaincode.Response;
+import org.hyperledger.fabric.shim.ChaincodeServer;
+import org.hyperledger.fabric.shim.ChaincodeServerProperties;
+import org.hyperledger.fabric.shim.GrpcServer;
+import org.hyperledger.fabric.shim.NettyGrpcServer;
+
+/**
+ * Training run for the AppCDS archive built by ./gradlew cdsArchive.
+ *
+ * Goes through the same startup as AssetTransferServer (contract scanning, metadata, binding the gRPC server) and then
+ * routes a representative mix of transactions through ContractRouter.invoke against the in-memory ledger, so the
+ * classes the first real transactions need (Genson bindings, protobuf messages, routing and serialization) are
+ * loaded and end up in the class list. Any failed transaction fails the run, so the archive is never built
+ * from a run that skipped part of the workload.
+ */
+public final class CdsTraining {
+
+    private static final String CONTRACT = "basic:";
+
+    private CdsTraining() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        long start = System.nanoTime();
+
+        TransactionMetrics.enableExport();
+
+        ContractRouter router = new ContractRouter(new String[] {"--id", "basic:training"});
+        ChaincodeServerProperties properties = new ChaincodeServerProperties();
+        properties.setServerAddress(new InetSocketAddress("127.0.0.1", 0));
+
+        router.startRouterWithChaincodeServer(new TrainingServer(new NettyGrpcServer(router, properties), router));
+
+        System.out.println(String.format("Training run finished in %d ms", (System.nanoTime() - start) / 1_000_000));
+    }
+
+    private static void train(final ContractRouter router) {
+        InMemoryLedger ledger = new InMemoryLedger();
+
+        invoke(router, ledger, "CreateAssetsBatch", "[{\"accountId\": \"company\", \"owner\": \"creativehill\", \"amount\": 1000000, \"type\": \"COMPANY\"},"
+                + " {\"accountId\": \"commission\", \"owner\": \"creativehill\", \"amount\": 0, \"type\": \"COMMISSION\"},"
+                + " {\"accountId\": \"user1\", \"owner\": \"owner1\", \"amount\": 1000, \"type\": \"USER\"}]");
+        invoke(router, ledger, "CreateAsset", "user2", "owner2", "1000", "USER");
+        invoke(router, ledger, "ShardAccount", "company", "4");
+        invoke(router, ledger, "TransferAccount", "user1", "user2", "100");
+        invoke(router, ledger, "TransferAccount", "company", "user1", "500");
+        invoke(router, ledger, "TransferBatch", "[{\"sender\": \"user2\", \"receiver\": \"user1\", \"amount\": 10},"
+                + " {\"sender\": \"user1\", \"receiver\": \"company\", \"amount\": 20}]");
+        invoke(router, ledger, "ReadAsset", "user1");
+        invoke(router, ledger, "AssetExists", "user2");
+        invoke(router, ledger, "GetAccounts", "[\"user1\", \"user2\", \"missing\"]");
+        invoke(router, ledger, "GetAllAssets");
+        invoke(router, ledger, "GetAssetsPage", "2", "");
+        invoke(router, ledger, "GetAccountHistory", "user1", "10", "");
+        invoke(router, ledger, "QueryAccountsByOwner", "owner1", "10", "");
+        invoke(router, ledger, "QueryAccountsByType", "USER", "10", "");
+        invoke(router, ledger, "SweepCommission", "100");
+        invoke(router, ledger, "GetCommissionAccount");
+        invoke(router, ledger, "SweepLedgerStats", "100");
+        invoke(router, ledger, "GetLedgerStats");
+        invoke(router, ledger, "RebalanceShards", "company");
+
+        TransactionMetrics.render();
+    }
+
+    private static void invoke(final ContractRouter router, final InMemoryLedger ledger, final String function, final String... parameters) {
+        String[] args = new String[parameters.length + 1];
+        args[0] = CONTRACT + function;
+        System.arraycopy(parameters, 0, args, 1, parameters.length);
+
+        InMemoryChaincodeStub stub = ledger.newInvocation("training" + ledger.getHeight(), Arrays.asList(args));
+        Response response = router.invoke(stub);
+
+        if (response.getStatus() != Response.Status.SUCCESS) {
+            String message = response.getMessage() != null ? response.getMessage() : new String(response.getPayload(), StandardCharsets.UTF_8);
+            throw new IllegalStateException(String.format("Training transaction %s failed: %s", function, message));
+        }
+
+        if (ledger.commit(stub) != InMemoryLedger.ValidationCode.VALID) {
+            throw new IllegalStateException(String.format("Training transaction %s did not commit", function));
+        }
+    }
+
+    /**
+     * Binds the gRPC server like the real one, runs the workload instead of waiting for peers, then shuts down.
+     */
+    private static final class TrainingServer implements ChaincodeServer {
+
+        private final GrpcServer grpcServer;
+        private final ContractRouter router;
+
+        TrainingServer(final GrpcServer grpcServer, final ContractRouter router) {
+            this.grpcServer = grpcServer;
+            this.router = router;
+        }
+
+        @Override
+        public void start() throws IOException {
+            grpcServer.start();
+
+            try {
+                train(router);
+            } finally {
+                stop();
+            }
+        }
+
+        @Override
+        public void stop() {
+            grpcServer.stop();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.owlike.genson.Genson;
+
+/**
+ * Account serialization: Genson, as used for transaction results and legacy values, against the binary world-state codec.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AccountCodecBenchmark {
+
+    private final Genson genson = new Genson();
+    private final AccountCodec codec = new BinaryAccountCodec();
+
+    private final Account account = new Account("1686816000000", "creativehill", 800_000_000_000L, AccountType.COMPANY);
+    private final byte[] json = genson.serialize(account).getBytes(StandardCharsets.UTF_8);
+    private final byte[] binary = codec.encode(account);
+
+    /**
+     * @return the account as Genson JSON
+     */
+    @Benchmark
+    public byte[] gensonEncode() {
+        return genson.serialize(account).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the account read back from Genson JSON
+     */
+    @Benchmark
+    public Account gensonDecode() {
+        return genson.deserialize(new String(json, StandardCharsets.UTF_8), Account.class);
+    }
+
+    /**
+     * @return the account in the binary layout
+     */
+    @Benchmark
+    public byte[] binaryEncode() {
+        return codec.encode(account);
+    }
+
+    /**
+     * @return the account read back from the binary layout
+     */
+    @Benchmark
+    public Account binaryDecode() {
+        return codec.decode(binary);
+    }
+}
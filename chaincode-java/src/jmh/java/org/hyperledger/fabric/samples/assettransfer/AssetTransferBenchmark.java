@@ -0,0 +1,107 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.contract.Context;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Endorsement cost of single-account transactions, one fresh transaction context per operation as on a peer.
+ * Nothing is committed, so every operation runs against the same world state.
+ * createContext is the baseline shared by all of them: the shim parses the creator certificate for each transaction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AssetTransferBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int accounts;
+
+    private final AssetTransfer contract = new AssetTransfer();
+    private InMemoryLedger ledger;
+    private long sequence;
+
+    /**
+     * Populates the ledger once per world-state size.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        ledger = LedgerFixture.populate(contract, accounts);
+    }
+
+    /**
+     * @return a context over a new transaction
+     */
+    @Benchmark
+    public Context createContext() {
+        return newContext();
+    }
+
+    /**
+     * @return a new USER account
+     */
+    @Benchmark
+    public Account createAsset() {
+        return contract.CreateAsset(newContext(), "new" + sequence, "owner", "100", AccountType.USER.name());
+    }
+
+    /**
+     * @return an existing USER account
+     */
+    @Benchmark
+    public Account readAsset() {
+        return contract.ReadAsset(newContext(), LedgerFixture.userId(nextUser()));
+    }
+
+    /**
+     * @return the result of a USER to USER transfer, which pays commission
+     */
+    @Benchmark
+    public String transferWithCommission() {
+        int sender = nextUser();
+        return contract.TransferAccount(newContext(), LedgerFixture.userId(sender), LedgerFixture.userId((sender + 1) % accounts), "1000");
+    }
+
+    /**
+     * @return the result of a COMPANY to USER transfer, which pays none
+     */
+    @Benchmark
+    public String transferWithoutCommission() {
+        return contract.TransferAccount(newContext(), LedgerFixture.COMPANY, LedgerFixture.userId(nextUser()), "1000");
+    }
+
+    /**
+     * @return the commission account found through the commission index
+     */
+    @Benchmark
+    public Account getCommissionAccount() {
+        return AssetTransfer.getCommissionAccount(newContext());
+    }
+
+    private Context newContext() {
+        return contract.createContext(ledger.newTransaction("bench" + sequence++));
+    }
+
+    private int nextUser() {
+        return (int) (sequence % accounts);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+/**
+ * Builds the world states the benchmarks run against: USER accounts user0..userN-1, one COMPANY and one COMMISSION account.
+ */
+final class LedgerFixture {
+
+    static final String COMPANY = "company";
+    static final String COMMISSION = "commission";
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int OWNERS = 100;
+
+    private LedgerFixture() {
+    }
+
+    static String userId(final int index) {
+        return "user" + index;
+    }
+
+    /**
+     * Creates the accounts through CreateAssetsBatch, one committed transaction per batch.
+     *
+     * @param contract the contract to create the accounts with
+     * @param users the number of USER accounts
+     * @return the populated ledger, without key history
+     */
+    static InMemoryLedger populate(final AssetTransfer contract, final int users) {
+        InMemoryLedger ledger = new InMemoryLedger("basic", false);
+
+        create(contract, ledger, "{\"accountId\": \"" + COMPANY + "\", \"owner\": \"creativehill\", \"amount\": " + Long.MAX_VALUE / 2
+                + ", \"type\": \"COMPANY\"}, {\"accountId\": \"" + COMMISSION + "\", \"owner\": \"creativehill\", \"amount\": 0, \"type\": \"COMMISSION\"}");
+
+        for (int start = 0; start < users; start += BATCH_SIZE) {
+            StringBuilder accounts = new StringBuilder();
+
+            for (int i = start; i < Math.min(start + BATCH_SIZE, users); i++) {
+                if (i > start) {
+                    accounts.append(',');
+                }
+
+                accounts.append("{\"accountId\": \"").append(userId(i)).append("\", \"owner\": \"owner").append(i % OWNERS)
+                        .append("\", \"amount\": 1000000000, \"type\": \"USER\"}");
+            }
+
+            create(contract, ledger, accounts.toString());
+        }
+
+        return ledger;
+    }
+
+    private static void create(final AssetTransfer contract, final InMemoryLedger ledger, final String accounts) {
+        InMemoryChaincodeStub stub = ledger.newTransaction("setup" + ledger.getHeight());
+        contract.CreateAssetsBatch(contract.createContext(stub), "[" + accounts + "]");
+
+        if (ledger.commit(stub) != InMemoryLedger.ValidationCode.VALID) {
+            throw new IllegalStateException("Fixture transaction " + stub.getTxId() + " did not commit");
+        }
+    }
+}
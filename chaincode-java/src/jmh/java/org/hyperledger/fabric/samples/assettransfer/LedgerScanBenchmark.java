@@ -0,0 +1,65 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the queries that walk the world state, which grows with the number of accounts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class LedgerScanBenchmark {
+
+    private static final String PAGE_SIZE = "100";
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int accounts;
+
+    private final AssetTransfer contract = new AssetTransfer();
+    private InMemoryLedger ledger;
+    private long sequence;
+
+    /**
+     * Populates the ledger once per world-state size.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        ledger = LedgerFixture.populate(contract, accounts);
+    }
+
+    /**
+     * @return every account in one response
+     */
+    @Benchmark
+    public String getAllAssets() {
+        return contract.GetAllAssets(contract.createContext(ledger.newTransaction("scan" + sequence++)));
+    }
+
+    /**
+     * @return the first page of accounts, which should not depend on the world-state size
+     */
+    @Benchmark
+    public String getAssetsPage() {
+        return contract.GetAssetsPage(contract.createContext(ledger.newTransaction("page" + sequence++)), PAGE_SIZE, "");
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+/**
+ * Converts an Account to and from its world-state value.
+ */
+public interface AccountCodec {
+
+    String BINARY = "binary";
+    String JSON = "json";
+
+    /**
+     * @param name the codec name recorded by AssetTransfer.SetAccountCodec, or null when none is
+     * @return CouchDbAccountCodec for JSON, BinaryAccountCodec otherwise
+     */
+    static AccountCodec named(final String name) {
+        return JSON.equals(name) ? new CouchDbAccountCodec() : new BinaryAccountCodec();
+    }
+
+    /**
+     * Encodes the account into the bytes stored under its key.
+     *
+     * @param account the account to encode
+     * @return the world-state value
+     */
+    byte[] encode(Account account);
+
+    /**
+     * Decodes a world-state value back into an account.
+     *
+     * @param value the world-state value
+     * @return the decoded account
+     */
+    Account decode(byte[] value);
+}
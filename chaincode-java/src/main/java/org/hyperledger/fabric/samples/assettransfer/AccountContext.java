@@ -0,0 +1,25 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * Transaction context created by AssetTransfer.createContext, carrying the per-transaction StateCache.
+ */
+public final class AccountContext extends Context {
+
+    private final StateCache stateCache;
+
+    public AccountContext(final ChaincodeStub stub, final AccountCodec codec) {
+        super(stub);
+        this.stateCache = new StateCache(stub, codec);
+    }
+
+    public StateCache getStateCache() {
+        return stateCache;
+    }
+}
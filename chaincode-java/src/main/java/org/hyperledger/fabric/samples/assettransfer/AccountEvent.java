@@ -0,0 +1,94 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.owlike.genson.Genson;
+
+/**
+ * Balance changes made by one transaction, emitted as its single chaincode event.
+ *
+ * Payload: {"tx", "fn", "seq", "commission", "changes": [{"id", "balance", "delta"}]} in minimal JSON.
+ * "balance" is the effective balance after the transaction and is left out when the transaction did not
+ * know it (sharded accounts updated shard by shard, the commission account receiving a delta); "delta" is
+ * always present. "seq" is the transaction timestamp in nanoseconds; together with the block number and
+ * transaction position delivered with the event it orders events without a ledger-wide counter key.
+ */
+final class AccountEvent {
+
+    static final String NAME = "AccountsChanged";
+
+    private static Genson genson = new Genson();
+
+    private final String function;
+    private final Map<String, Long> balances = new LinkedHashMap<>();
+    private final Map<String, Long> deltas = new LinkedHashMap<>();
+    private String commissionAccountId;
+    private long commission;
+
+    AccountEvent(final String function) {
+        this.function = function;
+    }
+
+    /**
+     * Records a balance change; repeated changes of one account are merged into one entry.
+     *
+     * @param accountId the ID of the account
+     * @param balance the balance after the change, or null when unknown
+     * @param delta the signed change
+     */
+    void change(final String accountId, final Long balance, final long delta) {
+        balances.put(accountId, balance);
+        deltas.merge(accountId, delta, Long::sum);
+    }
+
+    void addCommission(final String accountId, final long amount) {
+        if (amount == 0) {
+            return;
+        }
+
+        commissionAccountId = accountId;
+        commission += amount;
+        deltas.merge(accountId, amount, Long::sum);
+        balances.putIfAbsent(accountId, null);
+    }
+
+    boolean isEmpty() {
+        return deltas.isEmpty();
+    }
+
+    byte[] encode(final String txId, final Instant timestamp) {
+        List<Map<String, Object>> changes = new ArrayList<>();
+
+        for (Map.Entry<String, Long> delta : deltas.entrySet()) {
+            Map<String, Object> change = new LinkedHashMap<>();
+            Long balance = balances.get(delta.getKey());
+            change.put("id", delta.getKey());
+
+            // the commission account's stored balance excludes pending commission deltas, so it is never reported
+            if (balance != null && !delta.getKey().equals(commissionAccountId)) {
+                change.put("balance", balance);
+            }
+
+            change.put("delta", delta.getValue());
+            changes.add(change);
+        }
+
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("tx", txId);
+        event.put("fn", function);
+        event.put("seq", timestamp == null ? 0L : timestamp.getEpochSecond() * 1_000_000_000L + timestamp.getNano());
+        event.put("commission", commission);
+        event.put("changes", changes);
+
+        return genson.serialize(event).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.Objects;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+
+@DataType()
+public final class AccountHistoryEntry {
+
+    @Property()
+    private final String txId;
+
+    @Property()
+    private final String timestamp;
+
+    @Property()
+    private final boolean deleted;
+
+    @Property()
+    private final Account account;
+
+    public String getTxId() {
+        return txId;
+    }
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public Account getAccount() {
+        return account;
+    }
+
+    public AccountHistoryEntry(@JsonProperty("txId") final String txId, @JsonProperty("timestamp") final String timestamp,
+                               @JsonProperty("deleted") final boolean deleted, @JsonProperty("account") final Account account) {
+        this.txId = txId;
+        this.timestamp = timestamp;
+        this.deleted = deleted;
+        this.account = account;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        AccountHistoryEntry other = (AccountHistoryEntry) obj;
+
+        return Objects.equals(getTxId(), other.getTxId())
+                && Objects.equals(getTimestamp(), other.getTimestamp())
+                && isDeleted() == other.isDeleted()
+                && Objects.equals(getAccount(), other.getAccount());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getTxId(), getTimestamp(), isDeleted(), getAccount());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " [txId=" + txId + ", timestamp=" + timestamp + ", deleted=" + deleted
+                + ", account=" + account + "]";
+    }
+}
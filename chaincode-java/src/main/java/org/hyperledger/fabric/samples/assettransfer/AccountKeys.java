@@ -0,0 +1,138 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.time.Instant;
+
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+
+/**
+ * World-state key layout. Every record type has its own key range.
+ *
+ * Accounts are simple keys under ACCOUNT_PREFIX, so an account scan is the range [ACCOUNT_RANGE_START,
+ * ACCOUNT_RANGE_END) and can resume from any account, also in submit transactions where paginated queries are not allowed.
+ * Everything else is a composite key, which simple-key ranges never return.
+ *
+ * Ledgers written before this layout keep accounts under the bare account ID. StateCache still reads them there
+ * and moves each one on its next write; MigrateAccountKeys moves the rest in chunks.
+ */
+final class AccountKeys {
+
+    static final String ACCOUNT_PREFIX = "account:";
+    static final String ACCOUNT_RANGE_START = ACCOUNT_PREFIX;
+    // ':' + 1, so the range ends right after the last prefixed key
+    static final String ACCOUNT_RANGE_END = "account;";
+
+    // Holds the AccountCodec name accounts are written with, set by SetAccountCodec.
+    static final String ACCOUNT_CODEC = "accountCodec";
+
+    // Holds the ID of the COMMISSION account, written once per ledger.
+    static final String COMMISSION_INDEX = "commission";
+
+    // Fee-bearing transfers write their commission under commission~bucket~txId instead of read-modify-writing
+    // the commission account, so concurrent transfers in one block no longer collide on that key.
+    static final String COMMISSION_DELTA = "commission~bucket~txId";
+
+    // Count and balance aggregates per AccountType: a swept base plus one write-only delta per transaction,
+    // so transfers never read the aggregates and do not conflict on them.
+    static final String STATS = "stats";
+    static final String STATS_DELTA = "stats~bucket~txId";
+    // Account totals collected so far by a RebuildLedgerStats run that has not reached the last account yet.
+    static final String STATS_REBUILD = "stats~rebuild";
+
+    // Deltas are bucketed by the second of their transaction timestamp, zero-padded so buckets sort in time order.
+    // New deltas land after every older bucket, so a sweep that stops before the recent buckets never reads them.
+    private static final String DELTA_BUCKET_FORMAT = "%012d";
+
+    // Secondary indexes written by CreateAsset.
+    static final String OWNER_INDEX = "owner~accountId";
+    static final String TYPE_INDEX = "type~accountId";
+
+    static final String SHARD_COUNT = "shard~count";
+    static final String SHARD_BALANCE = "shard~balance";
+
+    private AccountKeys() {
+    }
+
+    static String account(final String accountId) {
+        return ACCOUNT_PREFIX + accountId;
+    }
+
+    static boolean isAccount(final String key) {
+        return key.startsWith(ACCOUNT_PREFIX);
+    }
+
+    static String accountIdOf(final String key) {
+        return key.substring(ACCOUNT_PREFIX.length());
+    }
+
+    static String accountCodec() {
+        return new CompositeKey(ACCOUNT_CODEC).toString();
+    }
+
+    static String commissionIndex() {
+        return new CompositeKey(COMMISSION_INDEX).toString();
+    }
+
+    static String commissionDelta(final Instant txTimestamp, final String txId) {
+        return new CompositeKey(COMMISSION_DELTA, deltaBucket(txTimestamp), txId).toString();
+    }
+
+    static String stats() {
+        return new CompositeKey(STATS).toString();
+    }
+
+    static String statsRebuild() {
+        return new CompositeKey(STATS_REBUILD).toString();
+    }
+
+    static String statsDelta(final Instant txTimestamp, final String txId) {
+        return new CompositeKey(STATS_DELTA, deltaBucket(txTimestamp), txId).toString();
+    }
+
+    /**
+     * @param key a commission or stats delta key
+     * @return the second of the transaction timestamp the delta was written with
+     */
+    static long deltaBucketOf(final String key) {
+        return Long.parseLong(CompositeKey.parseCompositeKey(key).getAttributes().get(0));
+    }
+
+    private static String deltaBucket(final Instant txTimestamp) {
+        return String.format(DELTA_BUCKET_FORMAT, txTimestamp.getEpochSecond());
+    }
+
+    static String ownerIndex(final String owner, final String accountId) {
+        return new CompositeKey(OWNER_INDEX, owner, accountId).toString();
+    }
+
+    static CompositeKey ownerIndexOf(final String owner) {
+        return new CompositeKey(OWNER_INDEX, owner);
+    }
+
+    static String typeIndex(final AccountType type, final String accountId) {
+        return new CompositeKey(TYPE_INDEX, type.name(), accountId).toString();
+    }
+
+    static CompositeKey typeIndexOf(final AccountType type) {
+        return new CompositeKey(TYPE_INDEX, type.name());
+    }
+
+    /**
+     * @param key an owner~accountId or type~accountId index key
+     * @return the account ID the index entry points to
+     */
+    static String indexedAccountIdOf(final String key) {
+        return CompositeKey.parseCompositeKey(key).getAttributes().get(1);
+    }
+
+    static String shardCount(final String accountId) {
+        return new CompositeKey(SHARD_COUNT, accountId).toString();
+    }
+
+    static String shardBalance(final String accountId, final int shard) {
+        return new CompositeKey(SHARD_BALANCE, accountId, String.valueOf(shard)).toString();
+    }
+}
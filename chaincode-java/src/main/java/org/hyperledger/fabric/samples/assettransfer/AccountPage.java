@@ -0,0 +1,74 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+
+@DataType()
+public final class AccountPage {
+
+    @Property()
+    private final Account[] records;
+
+    @Property()
+    private final String bookmark;
+
+    @Property()
+    private final int fetchedCount;
+
+    public Account[] getRecords() {
+        return records;
+    }
+
+    public String getBookmark() {
+        return bookmark;
+    }
+
+    public int getFetchedCount() {
+        return fetchedCount;
+    }
+
+    public AccountPage(@JsonProperty("records") final Account[] records, @JsonProperty("bookmark") final String bookmark, @JsonProperty("fetchedCount") final int fetchedCount
+    ) {
+        this.records = records;
+        this.bookmark = bookmark;
+        this.fetchedCount = fetchedCount;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        AccountPage other = (AccountPage) obj;
+
+        return Arrays.equals(getRecords(), other.getRecords())
+                && Objects.equals(getBookmark(), other.getBookmark())
+                && getFetchedCount() == other.getFetchedCount();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(Arrays.hashCode(getRecords()), getBookmark(), getFetchedCount());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " [records=" + Arrays.toString(records) + ", bookmark="
+                + bookmark + ", fetchedCount=" + fetchedCount + "]";
+    }
+}
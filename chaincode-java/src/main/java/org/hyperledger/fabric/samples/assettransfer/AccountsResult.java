@@ -0,0 +1,62 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.Arrays;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+
+@DataType()
+public final class AccountsResult {
+
+    @Property()
+    private final Account[] accounts;
+
+    @Property()
+    private final String[] missing;
+
+    public Account[] getAccounts() {
+        return accounts;
+    }
+
+    public String[] getMissing() {
+        return missing;
+    }
+
+    public AccountsResult(@JsonProperty("accounts") final Account[] accounts, @JsonProperty("missing") final String[] missing) {
+        this.accounts = accounts;
+        this.missing = missing;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        AccountsResult other = (AccountsResult) obj;
+
+        return Arrays.equals(getAccounts(), other.getAccounts())
+                && Arrays.equals(getMissing(), other.getMissing());
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(getAccounts()) + Arrays.hashCode(getMissing());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " [accounts=" + Arrays.toString(accounts) + ", missing=" + Arrays.toString(missing) + "]";
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the bare amounts stored under commission delta and balance shard keys as big-endian longs.
+ */
+final class AmountCodec {
+
+    private AmountCodec() {
+    }
+
+    static byte[] encode(final long amount) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(amount).array();
+    }
+
+    static long decode(final byte[] value) {
+        if (value == null || value.length == 0) {
+            return 0;
+        }
+
+        return ByteBuffer.wrap(value).getLong();
+    }
+}
@@ -5,7 +5,13 @@
 package org.hyperledger.fabric.samples.assettransfer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 
 import org.hyperledger.fabric.contract.Context;
@@ -18,8 +24,11 @@ import org.hyperledger.fabric.contract.annotation.License;
 import org.hyperledger.fabric.contract.annotation.Transaction;
 import org.hyperledger.fabric.shim.ChaincodeException;
 import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
 import org.hyperledger.fabric.shim.ledger.KeyValue;
 import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
 
 import com.owlike.genson.Genson;
 
@@ -41,11 +50,98 @@ public final class AssetTransfer implements ContractInterface {
 
     private static Genson genson = new Genson();
 
+    // Upper bound for the number of deltas folded by one SweepCommission or SweepLedgerStats call.
+    private static final int MAX_SWEEP_SIZE = 1000;
+
+    // Sweeps leave the delta buckets of the last minute alone, as transfers still being endorsed write into them.
+    // It covers the usual endorse-to-commit time and client clock skew, since the transaction timestamp is set by the client.
+    private static final long SWEEP_DELAY_SECONDS = 60;
+
+    // Value of the owner and type index entries, a single placeholder byte since an empty value deletes the key.
+    private static final byte[] INDEX_VALUE = new byte[] {0};
+
+    // Upper bound for a single page query, keeps each response well under the gRPC message limit.
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    // Upper bound for the number of entries in one TransferBatch or CreateAssetsBatch call.
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private static final float USER_COMMISSION_PERCENT = 0.001f;
+
+    // CouchDB indexes shipped in META-INF/statedb/couchdb/indexes, one per QueryAccounts shape.
+    private static final String[] TYPE_AMOUNT_INDEX = {"_design/indexTypeAmountDoc", "indexTypeAmount"};
+    private static final String[] AMOUNT_INDEX = {"_design/indexAmountDoc", "indexAmount"};
+
     private enum AssetTransferErrors {
         ASSET_NOT_FOUND,
-        ASSET_ALREADY_EXISTS
+        ASSET_ALREADY_EXISTS,
+        COMMISSION_ALREADY_EXISTS,
+        INVALID_PAGE_SIZE,
+        INVALID_TRANSFER,
+        INVALID_ACCOUNT,
+        INSUFFICIENT_FUNDS,
+        INVALID_SHARDING,
+        INVALID_QUERY,
+        INVALID_CODEC
+    }
+
+    private final AccountCodec accountCodec;
+
+    /**
+     * Writes accounts with the codec recorded on the ledger by SetAccountCodec, binary when none is.
+     */
+    public AssetTransfer() {
+        this(null);
+    }
+
+    /**
+     * @param accountCodec the codec of the StateCache given to each transaction, or null for the ledger setting
+     */
+    AssetTransfer(final AccountCodec accountCodec) {
+        this.accountCodec = accountCodec;
     }
 
+    /**
+     * Gives every transaction its own StateCache, so repeated reads of an account within one
+     * transaction reach the peer once and read back the transaction's own writes.
+     *
+     * @param stub the chaincode stub of the transaction
+     * @return the transaction context
+     */
+    @Override
+    public Context createContext(final ChaincodeStub stub) {
+        return new AccountContext(stub, accountCodec);
+    }
+
+    /**
+     * Starts collecting TransactionStats for the transaction when TransactionMetrics is enabled.
+     *
+     * @param ctx the transaction context
+     */
+    @Override
+    public void beforeTransaction(final Context ctx) {
+        if (ctx instanceof AccountContext && TransactionMetrics.isEnabled()) {
+            ChaincodeStub stub = ctx.getStub();
+            ((AccountContext) ctx).getStateCache().setStats(TransactionMetrics.begin(stub.getFunction(), stub.getTxId()));
+        }
+    }
+
+    /**
+     * Records the TransactionStats of a successful transaction. Failed transactions are recorded by fail.
+     *
+     * @param ctx the transaction context
+     * @param result the value returned by the transaction
+     */
+    @Override
+    public void afterTransaction(final Context ctx, final Object result) {
+        if (ctx instanceof AccountContext) {
+            TransactionStats stats = ((AccountContext) ctx).getStateCache().getStats();
+
+            if (stats != null) {
+                TransactionMetrics.end(stats, result);
+            }
+        }
+    }
 
     /**
      * Creates a new Account on the ledger.
@@ -59,25 +155,113 @@ public final class AssetTransfer implements ContractInterface {
      */
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public Account CreateAsset(final Context ctx, final String accountId, final String owner, final String originAmount, final String originType) {
-        ChaincodeStub stub = ctx.getStub();
+        StateCache state = stateOf(ctx);
 
         if (AssetExists(ctx, accountId)) {
             String errorMessage = String.format("Account %s already exists", accountId);
-            System.out.println(errorMessage);
-            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
+            throw fail(errorMessage, AssetTransferErrors.ASSET_ALREADY_EXISTS);
         }
 
         Long amount = Long.parseLong(originAmount);
         AccountType type = AccountType.valueOf(originType);
 
+        if (type == AccountType.COMMISSION) {
+            String indexedAccountId = state.getStringState(AccountKeys.commissionIndex());
+
+            if (indexedAccountId != null && !indexedAccountId.isEmpty()) {
+                String errorMessage = String.format("CommissionAccount %s already exists", indexedAccountId);
+                throw fail(errorMessage, AssetTransferErrors.COMMISSION_ALREADY_EXISTS);
+            }
+
+            state.putStringState(AccountKeys.commissionIndex(), accountId);
+        }
+
         Account account = new Account(accountId, owner, amount, type);
-        // Use Genson to convert the Asset into string, sort it alphabetically and serialize it into a json string
-        String sortedJson = genson.serialize(account);
-        stub.putStringState(accountId, sortedJson);
+        state.putAccount(account);
+        putAccountIndexes(state, account);
+
+        StatsDelta statsDelta = new StatsDelta();
+        statsDelta.addAccount(type, amount);
+        putStatsDelta(state, statsDelta);
+
+        AccountEvent event = new AccountEvent("CreateAsset");
+        event.change(accountId, amount, amount);
+        setEvent(state, event);
 
         return account;
     }
 
+    /**
+     * Creates many accounts in a single transaction.
+     * Accounts that already exist are left untouched and reported as EXISTS, so a partly applied upload can be resubmitted.
+     * Malformed entries, duplicate IDs within the batch or a second COMMISSION account fail the whole batch.
+     *
+     * @param ctx the transaction context
+     * @param accounts JSON array of {accountId, owner, amount, type} entries
+     * @return JSON array with the outcome of each entry, in input order
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String CreateAssetsBatch(final Context ctx, final String accounts) {
+        StateCache state = stateOf(ctx);
+
+        Account[] entries = genson.deserialize(accounts, Account[].class);
+
+        if (entries == null || entries.length == 0 || entries.length > MAX_BATCH_SIZE) {
+            String errorMessage = String.format("Account batch must contain between 1 and %d entries", MAX_BATCH_SIZE);
+            throw fail(errorMessage, AssetTransferErrors.INVALID_ACCOUNT);
+        }
+
+        Map<String, Account> newAccounts = new LinkedHashMap<>();
+        List<CreateResult> results = new ArrayList<>();
+        String commissionAccountId = state.getStringState(AccountKeys.commissionIndex());
+
+        for (int i = 0; i < entries.length; i++) {
+            Account entry = entries[i];
+
+            if (entry == null || entry.getAccountId() == null || entry.getAccountId().isEmpty() || entry.getAmount() == null
+                    || entry.getType() == null || newAccounts.containsKey(entry.getAccountId())) {
+                String errorMessage = String.format("Account %d is invalid: %s", i, entry);
+                throw fail(errorMessage, AssetTransferErrors.INVALID_ACCOUNT);
+            }
+
+            if (state.hasAccount(entry.getAccountId())) {
+                results.add(new CreateResult(i, entry.getAccountId(), CreateResult.EXISTS));
+                continue;
+            }
+
+            if (entry.getType() == AccountType.COMMISSION) {
+                if (commissionAccountId != null && !commissionAccountId.isEmpty()) {
+                    String errorMessage = String.format("Account %d: CommissionAccount %s already exists", i, commissionAccountId);
+                    throw fail(errorMessage, AssetTransferErrors.COMMISSION_ALREADY_EXISTS);
+                }
+
+                commissionAccountId = entry.getAccountId();
+            }
+
+            newAccounts.put(entry.getAccountId(), entry);
+            results.add(new CreateResult(i, entry.getAccountId(), CreateResult.CREATED));
+        }
+
+        StatsDelta statsDelta = new StatsDelta();
+        AccountEvent event = new AccountEvent("CreateAssetsBatch");
+
+        for (Account account : newAccounts.values()) {
+            if (account.getType() == AccountType.COMMISSION) {
+                state.putStringState(AccountKeys.commissionIndex(), account.getAccountId());
+            }
+
+            state.putAccount(account);
+            putAccountIndexes(state, account);
+            statsDelta.addAccount(account.getType(), account.getAmount());
+            event.change(account.getAccountId(), account.getAmount(), account.getAmount());
+        }
+
+        putStatsDelta(state, statsDelta);
+        setEvent(state, event);
+
+        return genson.serialize(results);
+    }
+
     /**
      * Retrieves an asset with the specified ID from the ledger.
      *
@@ -87,17 +271,55 @@ public final class AssetTransfer implements ContractInterface {
      */
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public Account ReadAsset(final Context ctx, final String accountId) {
-        ChaincodeStub stub = ctx.getStub();
-        String assetJSON = stub.getStringState(accountId);
+        StateCache state = stateOf(ctx);
+        Account account = state.getAccount(accountId);
 
-        if (assetJSON == null || assetJSON.isEmpty()) {
+        if (account == null) {
             String errorMessage = String.format("Account %s does not exist", accountId);
-            System.out.println(errorMessage);
-            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+            throw fail(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND);
         }
 
-        Account account = genson.deserialize(assetJSON, Account.class);
-        return account;
+        return withReadAmount(state, account);
+    }
+
+    /**
+     * Retrieves several accounts in one call, so a client needs one round trip instead of one ReadAsset per account.
+     *
+     * @param ctx the transaction context
+     * @param accountIds JSON array of account IDs, at most MAX_BATCH_SIZE
+     * @return JSON object with the accounts found, in request order, and the IDs that do not exist
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAccounts(final Context ctx, final String accountIds) {
+        StateCache state = stateOf(ctx);
+
+        String[] ids = genson.deserialize(accountIds, String[].class);
+
+        if (ids == null || ids.length == 0 || ids.length > MAX_BATCH_SIZE) {
+            String errorMessage = String.format("Account ID list must contain between 1 and %d IDs", MAX_BATCH_SIZE);
+            throw fail(errorMessage, AssetTransferErrors.INVALID_ACCOUNT);
+        }
+
+        Map<String, Account> found = new LinkedHashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+
+        for (String accountId : ids) {
+            if (accountId == null || found.containsKey(accountId) || missing.contains(accountId)) {
+                continue;
+            }
+
+            Account account = state.getAccount(accountId);
+
+            if (account == null) {
+                missing.add(accountId);
+            } else {
+                found.put(accountId, withReadAmount(state, account));
+            }
+        }
+
+        AccountsResult result = new AccountsResult(found.values().toArray(new Account[0]), missing.toArray(new String[0]));
+
+        return genson.serialize(result);
     }
 
     /**
@@ -109,14 +331,13 @@ public final class AssetTransfer implements ContractInterface {
      */
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public boolean AssetExists(final Context ctx, final String accountId) {
-        ChaincodeStub stub = ctx.getStub();
-        String assetJSON = stub.getStringState(accountId);
-
-        return (assetJSON != null && !assetJSON.isEmpty());
+        StateCache state = stateOf(ctx);
+        return state.hasAccount(accountId);
     }
 
     /**
      * Account transfer from ledger
+     * Sharded accounts are reported with a null amount, since only the shards the transfer touched were read.
      *
      * @param ctx the transaction context
      * @param sendingAccountId the sender's accountId
@@ -126,69 +347,140 @@ public final class AssetTransfer implements ContractInterface {
      */
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public String TransferAccount(final Context ctx, final String sendingAccountId, final String receivingAccountId, final String sendAmount) {
-        ChaincodeStub stub = ctx.getStub();
-        String sendAccountJSON = stub.getStringState(sendingAccountId);
-        String receivingAccountJSON = stub.getStringState(receivingAccountId);
+        StateCache state = stateOf(ctx);
+
+        long convertSendAmount = Long.parseLong(sendAmount);
+        requireValidTransfer("Transfer", sendingAccountId, receivingAccountId, convertSendAmount);
+
+        Account sendAccount = state.getAccount(sendingAccountId);
+        Account receivingAccount = state.getAccount(receivingAccountId);
 
 
-        if (sendAccountJSON == null || sendAccountJSON.isEmpty()) {
+        if (sendAccount == null) {
             String errorMessage = String.format("Account %s does not exist", sendingAccountId);
-            System.out.println(errorMessage);
-            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+            throw fail(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND);
         }
 
-        if (receivingAccountJSON == null || receivingAccountJSON.isEmpty()) {
+        if (receivingAccount == null) {
             String errorMessage = String.format("Account %s does not exist", receivingAccountId);
-            System.out.println(errorMessage);
-            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+            throw fail(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND);
         }
 
+        long commission = commissionOf(sendAccount, receivingAccount, convertSendAmount);
 
+        String commissionAccountId = commission > 0 ? requireCommissionAccountId(state) : null;
 
-        Account sendAccount = genson.deserialize(sendAccountJSON, Account.class);
-        Account receivingAccount = genson.deserialize(receivingAccountJSON, Account.class);
+        Account updatedSendAccount = debitAccount(state, sendAccount, convertSendAmount + commission);
+        Account updatedReceivingAccount = creditAccount(state, receivingAccount, convertSendAmount);
 
+        StatsDelta statsDelta = new StatsDelta();
+        statsDelta.addBalance(sendAccount.getType(), -(convertSendAmount + commission));
+        statsDelta.addBalance(receivingAccount.getType(), convertSendAmount);
+        statsDelta.addCommission(commission);
+        putStatsDelta(state, statsDelta);
 
-        float commissionPercent = 0.0f;
+        AccountEvent event = new AccountEvent("TransferAccount");
+        event.change(sendingAccountId, updatedSendAccount.getAmount(), -(convertSendAmount + commission));
+        event.change(receivingAccountId, updatedReceivingAccount.getAmount(), convertSendAmount);
+        event.addCommission(commissionAccountId, commission);
+        setEvent(state, event);
 
-        if (sendAccount.getType() == AccountType.USER && receivingAccount.getType() == AccountType.USER) {
-            commissionPercent = 0.001f;
+        if (commission > 0) {
+            putCommissionDelta(state, commission);
         }
 
-        long convertSendAmount = Long.parseLong(sendAmount);
-        long commission = (long) (convertSendAmount * commissionPercent);
-        long updatedSendAccountOfAmount = sendAccount.getAmount() - (convertSendAmount + commission);
-        long updatedReceivingAccountOfAmount = receivingAccount.getAmount() + convertSendAmount;
+        return transferMessageOf(updatedSendAccount, updatedReceivingAccount, commission);
+    }
+
+    /**
+     * Applies many transfers in a single transaction.
+     * Every touched account is read once and written once, and the whole batch fails if any entry fails.
+     *
+     * @param ctx the transaction context
+     * @param transfers JSON array of {sender, receiver, amount} entries
+     * @return JSON array with the outcome of each entry, in input order
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String TransferBatch(final Context ctx, final String transfers) {
+        StateCache state = stateOf(ctx);
 
+        TransferEntry[] entries = genson.deserialize(transfers, TransferEntry[].class);
 
-        Account updatedSendAccount = new Account(sendAccount.getAccountId(), sendAccount.getOwner(), updatedSendAccountOfAmount, sendAccount.getType());
-        Account updatedReceivingAccount = new Account(receivingAccount.getAccountId(), receivingAccount.getOwner(), updatedReceivingAccountOfAmount, receivingAccount.getType());
+        if (entries == null || entries.length == 0 || entries.length > MAX_BATCH_SIZE) {
+            String errorMessage = String.format("Transfer batch must contain between 1 and %d entries", MAX_BATCH_SIZE);
+            throw fail(errorMessage, AssetTransferErrors.INVALID_TRANSFER);
+        }
 
+        Map<String, Account> touchedAccounts = new LinkedHashMap<>();
+        Map<String, Account> shardedAccounts = new LinkedHashMap<>();
+        List<TransferResult> results = new ArrayList<>();
+        StatsDelta statsDelta = new StatsDelta();
+        AccountEvent event = new AccountEvent("TransferBatch");
+        long totalCommission = 0;
 
+        for (int i = 0; i < entries.length; i++) {
+            TransferEntry entry = entries[i];
 
-        if (commission > 0) {
-            Account commissionAccount = getCommissionAccount(ctx);
+            requireValidTransfer("Transfer " + i, entry.getSender(), entry.getReceiver(), entry.getAmount());
 
-            if (commissionAccount == null) {
-                String errorMessage = String.format("CommissionAccount does not exist");
-                System.out.println(errorMessage);
-                throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
-            }
+            Account sendAccount = getTouchedAccount(state, touchedAccounts, shardedAccounts, i, entry.getSender());
+            Account receivingAccount = getTouchedAccount(state, touchedAccounts, shardedAccounts, i, entry.getReceiver());
 
-            long updatedCommissionAccountOfAmount = commissionAccount.getAmount() + (long) commission;
-            Account updatedCommissionAccount = new Account(commissionAccount.getAccountId(), commissionAccount.getOwner(), updatedCommissionAccountOfAmount, commissionAccount.getType());
+            long convertSendAmount = entry.getAmount();
+            long commission = commissionOf(sendAccount, receivingAccount, convertSendAmount);
 
-            stub.putStringState(updatedSendAccount.getAccountId(), genson.serialize(updatedSendAccount));
-            stub.putStringState(updatedReceivingAccount.getAccountId(), genson.serialize(updatedReceivingAccount));
-            stub.putStringState(updatedCommissionAccount.getAccountId(), genson.serialize(updatedCommissionAccount));
+            requireFunds("Transfer " + i + ": ", sendAccount, convertSendAmount + commission);
 
-            return updatedSendAccount + " -> " + updatedReceivingAccount + " => " + updatedCommissionAccount;
-        } else {
-            stub.putStringState(updatedSendAccount.getAccountId(), genson.serialize(updatedSendAccount));
-            stub.putStringState(updatedReceivingAccount.getAccountId(), genson.serialize(updatedReceivingAccount));
+            Account updatedSendAccount = new Account(sendAccount.getAccountId(), sendAccount.getOwner(), sendAccount.getAmount() - (convertSendAmount + commission), sendAccount.getType());
+            Account updatedReceivingAccount = new Account(receivingAccount.getAccountId(), receivingAccount.getOwner(), receivingAccount.getAmount() + convertSendAmount, receivingAccount.getType());
+
+            touchedAccounts.put(updatedSendAccount.getAccountId(), updatedSendAccount);
+            touchedAccounts.put(updatedReceivingAccount.getAccountId(), updatedReceivingAccount);
+            totalCommission += commission;
+
+            statsDelta.addBalance(sendAccount.getType(), -(convertSendAmount + commission));
+            statsDelta.addBalance(receivingAccount.getType(), convertSendAmount);
+            statsDelta.addCommission(commission);
 
-            return updatedSendAccount + " -> " + updatedReceivingAccount;
+            event.change(updatedSendAccount.getAccountId(), updatedSendAccount.getAmount(), -(convertSendAmount + commission));
+            event.change(updatedReceivingAccount.getAccountId(), updatedReceivingAccount.getAmount(), convertSendAmount);
+
+            results.add(new TransferResult(i, updatedSendAccount.getAccountId(), updatedReceivingAccount.getAccountId(), convertSendAmount,
+                    commission, updatedSendAccount.getAmount(), updatedReceivingAccount.getAmount(),
+                    transferMessageOf(updatedSendAccount, updatedReceivingAccount, commission)));
+        }
+
+        if (totalCommission > 0) {
+            event.addCommission(requireCommissionAccountId(state), totalCommission);
+        }
+
+        for (Account account : touchedAccounts.values()) {
+            Account shardedAccount = shardedAccounts.get(account.getAccountId());
+
+            if (shardedAccount == null) {
+                state.putAccount(account);
+                continue;
+            }
+
+            // sharded accounts only get their net change, credited to or debited from as few shards as possible
+            long netAmount = account.getAmount() - shardedAccount.getAmount();
+            int shardCount = ShardedBalance.shardCount(state, shardedAccount);
+
+            if (netAmount > 0) {
+                ShardedBalance.credit(state, account.getAccountId(), shardCount, netAmount);
+            } else if (netAmount < 0) {
+                ShardedBalance.debit(state, account.getAccountId(), shardCount, -netAmount);
+            }
+        }
+
+        if (totalCommission > 0) {
+            putCommissionDelta(state, totalCommission);
         }
+
+        putStatsDelta(state, statsDelta);
+        setEvent(state, event);
+
+        return genson.serialize(results);
     }
 
     /**
@@ -199,19 +491,16 @@ public final class AssetTransfer implements ContractInterface {
      */
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public String GetAllAssets(final Context ctx) {
-        ChaincodeStub stub = ctx.getStub();
+        StateCache state = stateOf(ctx);
 
         List<Account> queryResults = new ArrayList<Account>();
 
-        // To retrieve all assets from the ledger use getStateByRange with empty startKey & endKey.
-        // Giving empty startKey & endKey is interpreted as all the keys from beginning to end.
-        // As another example, if you use startKey = 'asset0', endKey = 'asset9' ,
-        // then getStateByRange will retrieve asset with keys between asset0 (inclusive) and asset9 (exclusive) in lexical order.
-        QueryResultsIterator<KeyValue> results = stub.getStateByRange("", "");
+        // Accounts are the keys between ACCOUNT_RANGE_START (inclusive) and ACCOUNT_RANGE_END (exclusive) in lexical order.
+        QueryResultsIterator<KeyValue> results = state.getStateByRange(AccountKeys.ACCOUNT_RANGE_START, AccountKeys.ACCOUNT_RANGE_END);
 
         for (KeyValue result: results) {
-            Account account = genson.deserialize(result.getStringValue(), Account.class);
-            queryResults.add(account);
+            Account account = state.decode(result.getValue());
+            queryResults.add(withReadAmount(state, account));
         }
 
         final String response = genson.serialize(queryResults);
@@ -219,23 +508,874 @@ public final class AssetTransfer implements ContractInterface {
         return response;
     }
 
-    public static Account getCommissionAccount(final Context ctx) {
+    /**
+     * Retrieves one page of assets from the ledger.
+     *
+     * @param ctx the transaction context
+     * @param pageSize the maximum number of assets to return, capped at MAX_PAGE_SIZE
+     * @param bookmark the bookmark returned by the previous page, empty for the first page
+     * @return the page of assets with the bookmark for the next page
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAssetsPage(final Context ctx, final String pageSize, final String bookmark) {
+        StateCache state = stateOf(ctx);
 
-        ChaincodeStub stub = ctx.getStub();
-        QueryResultsIterator<KeyValue> results = stub.getStateByRange("", "");
+        List<Account> queryResults = new ArrayList<Account>();
 
-        if (results == null) {
-            return null;
+        QueryResultsIteratorWithMetadata<KeyValue> results = state.getStateByRangeWithPagination(AccountKeys.ACCOUNT_RANGE_START,
+                AccountKeys.ACCOUNT_RANGE_END, pageSizeOf(pageSize), bookmark == null ? "" : bookmark);
+
+        for (KeyValue result: results) {
+            Account account = state.decode(result.getValue());
+            queryResults.add(withReadAmount(state, account));
+        }
+
+        AccountPage page = new AccountPage(queryResults.toArray(new Account[0]),
+                results.getMetadata().getBookmark(), results.getMetadata().getFetchedRecordsCount());
+
+        return genson.serialize(page);
+    }
+
+    /**
+     * Retrieves one page of the modification history of an account, newest first. The history iterator is
+     * read only up to the end of the page, so long histories are never materialized in one call.
+     * Sharded COMPANY accounts show the stored base amount, not the effective balance, and an unknown
+     * bookmark yields an empty page.
+     *
+     * @param ctx the transaction context
+     * @param accountId the ID of the account
+     * @param pageSize the maximum number of entries to return, capped at MAX_PAGE_SIZE
+     * @param bookmark the bookmark returned by the previous page, empty for the first page
+     * @return the page of history entries with the bookmark for the next page, empty when there is none
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAccountHistory(final Context ctx, final String accountId, final String pageSize, final String bookmark) {
+        StateCache state = stateOf(ctx);
+        int convertPageSize = pageSizeOf(pageSize);
+
+        List<AccountHistoryEntry> queryResults = new ArrayList<AccountHistoryEntry>();
+        // the bookmark is the ID of the last transaction returned; entries up to and including it are skipped
+        boolean started = bookmark == null || bookmark.isEmpty();
+        String nextBookmark = "";
+
+        // changes made before the account moved to its namespaced key stay in the history of the bare account ID
+        for (String key : new String[] {AccountKeys.account(accountId), accountId}) {
+            if (!nextBookmark.isEmpty()) {
+                break;
+            }
+
+            boolean legacy = !AccountKeys.isAccount(key);
+            QueryResultsIterator<KeyModification> results = state.getHistoryForKey(key);
+
+            for (KeyModification result: results) {
+                // no transaction deletes accounts, so a deleted bare key is the move to the namespaced key
+                if (legacy && result.isDeleted()) {
+                    continue;
+                }
+
+                if (!started) {
+                    started = result.getTxId().equals(bookmark);
+                    continue;
+                }
+
+                if (queryResults.size() == convertPageSize) {
+                    nextBookmark = queryResults.get(convertPageSize - 1).getTxId();
+                    break;
+                }
+
+                Account account = result.isDeleted() ? null : state.decode(result.getValue());
+                String timestamp = result.getTimestamp() == null ? null : result.getTimestamp().toString();
+                queryResults.add(new AccountHistoryEntry(result.getTxId(), timestamp, result.isDeleted(), account));
+            }
+        }
+
+        AccountHistoryPage page = new AccountHistoryPage(queryResults.toArray(new AccountHistoryEntry[0]),
+                nextBookmark, queryResults.size());
+
+        return genson.serialize(page);
+    }
+
+    /**
+     * Spreads the balance of a COMPANY account over shardCount sub-balance keys so that concurrent
+     * transfers touching it stop serializing on one key. A shardCount of 0 folds the shards back into the account.
+     *
+     * @param ctx the transaction context
+     * @param accountId the ID of the account
+     * @param shardCount the number of shards, at most ShardedBalance.MAX_SHARDS
+     * @return the account with its total balance
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Account ShardAccount(final Context ctx, final String accountId, final String shardCount) {
+        StateCache state = stateOf(ctx);
+
+        Account account = ReadAsset(ctx, accountId);
+        int convertShardCount = Integer.parseInt(shardCount);
+
+        if (account.getType() != AccountType.COMPANY || convertShardCount < 0 || convertShardCount > ShardedBalance.MAX_SHARDS) {
+            String errorMessage = String.format("Account %s cannot be split into %s shards", accountId, shardCount);
+            throw fail(errorMessage, AssetTransferErrors.INVALID_SHARDING);
+        }
+
+        int currentShardCount = ShardedBalance.shardCount(state, account);
+        ShardedBalance.distribute(state, accountId, currentShardCount, convertShardCount, account.getAmount());
+
+        if (convertShardCount == 0) {
+            state.putAccount(account);
+        } else if (currentShardCount == 0) {
+            state.putAccount(new Account(accountId, account.getOwner(), 0L, account.getType()));
+        }
+
+        return account;
+    }
+
+    /**
+     * Evens out the shards of a sharded account after transfers have skewed them.
+     *
+     * @param ctx the transaction context
+     * @param accountId the ID of the account
+     * @return the account with its total balance
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Account RebalanceShards(final Context ctx, final String accountId) {
+        StateCache state = stateOf(ctx);
+
+        Account account = ReadAsset(ctx, accountId);
+        int shardCount = ShardedBalance.shardCount(state, account);
+
+        if (shardCount == 0) {
+            String errorMessage = String.format("Account %s is not sharded", accountId);
+            throw fail(errorMessage, AssetTransferErrors.INVALID_SHARDING);
         }
 
+        ShardedBalance.distribute(state, accountId, shardCount, shardCount, account.getAmount());
+
+        return account;
+    }
+
+    /**
+     * Folds pending commission deltas into the commission account balance.
+     * Run it periodically (the Spring client schedules it) so the reads of the commission account stay short.
+     * Only buckets older than SWEEP_DELAY_SECONDS are folded and the scan stops at the first recent delta, so transfers
+     * committed while the sweep is in flight write after the range it read and do not invalidate it. Only when no
+     * delta is recent does the scan reach the end of the range; a transfer committed alongside can then still
+     * invalidate the sweep, which the next run repeats.
+     *
+     * @param ctx the transaction context
+     * @param maxDeltas the maximum number of deltas to fold, capped at MAX_SWEEP_SIZE
+     * @return the commission account with its updated base balance
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Account SweepCommission(final Context ctx, final String maxDeltas) {
+        StateCache state = stateOf(ctx);
+
+        int convertMaxDeltas = Math.max(1, Math.min(Integer.parseInt(maxDeltas), MAX_SWEEP_SIZE));
+        String commissionAccountId = requireCommissionAccountId(state);
+        Account commissionAccount = state.getAccount(commissionAccountId);
+
+        // Paginated queries are not allowed in submit transactions, so the chunk is bounded by stopping the iterator early.
+        QueryResultsIterator<KeyValue> results = state.getStateByPartialCompositeKey(AccountKeys.COMMISSION_DELTA);
+        long cutoff = sweepCutoffOf(state);
+        long sweptCommission = 0;
+        int sweptDeltas = 0;
+
         for (KeyValue result: results) {
-            Account account = genson.deserialize(result.getStringValue(), Account.class);
+            if (AccountKeys.deltaBucketOf(result.getKey()) >= cutoff) {
+                break;
+            }
 
-            if (account.getType() == AccountType.COMMISSION) {
-                return account;
+            sweptCommission += AmountCodec.decode(result.getValue());
+            state.delState(result.getKey());
+            sweptDeltas++;
+
+            if (sweptDeltas >= convertMaxDeltas) {
+                break;
             }
         }
 
-        return null;
+        Account updatedCommissionAccount = new Account(commissionAccount.getAccountId(), commissionAccount.getOwner(),
+                commissionAccount.getAmount() + sweptCommission, commissionAccount.getType());
+
+        if (sweptDeltas > 0) {
+            state.putAccount(updatedCommissionAccount);
+        }
+
+        return updatedCommissionAccount;
+    }
+
+    /**
+     * Retrieves the commission account with its effective balance, the swept base plus all pending deltas.
+     * ReadAsset and GetAccounts return the same balance for the commission account.
+     *
+     * @param ctx the transaction context
+     * @return the commission account
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public Account GetCommissionAccount(final Context ctx) {
+        StateCache state = stateOf(ctx);
+
+        return withPendingCommission(state, state.getAccount(requireCommissionAccountId(state)));
+    }
+
+    /**
+     * Retrieves one page of the accounts of an owner through the owner~accountId index.
+     *
+     * @param ctx the transaction context
+     * @param owner the owner of the accounts
+     * @param pageSize the maximum number of accounts to return, capped at MAX_PAGE_SIZE
+     * @param bookmark the bookmark returned by the previous page, empty for the first page
+     * @return the page of accounts with the bookmark for the next page
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String QueryAccountsByOwner(final Context ctx, final String owner, final String pageSize, final String bookmark) {
+        return getIndexedPage(stateOf(ctx), AccountKeys.ownerIndexOf(owner), pageSize, bookmark);
+    }
+
+    /**
+     * Retrieves one page of the accounts of a type through the type~accountId index.
+     *
+     * @param ctx the transaction context
+     * @param type the AccountType name
+     * @param pageSize the maximum number of accounts to return, capped at MAX_PAGE_SIZE
+     * @param bookmark the bookmark returned by the previous page, empty for the first page
+     * @return the page of accounts with the bookmark for the next page
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String QueryAccountsByType(final Context ctx, final String type, final String pageSize, final String bookmark) {
+        return getIndexedPage(stateOf(ctx), AccountKeys.typeIndexOf(AccountType.valueOf(type)), pageSize, bookmark);
+    }
+
+    /**
+     * Retrieves one page of accounts with a stored amount in [minAmount, maxAmount] through a CouchDB rich query,
+     * ordered by amount. Needs CouchDB state and accounts written as JSON (SetAccountCodec "json"); accounts
+     * still stored in binary are not matched until their next write. Sharded COMPANY accounts are selected on their
+     * stored base amount but returned with their effective balance.
+     *
+     * @param ctx the transaction context
+     * @param minAmount the lowest amount, inclusive; empty for no lower bound
+     * @param maxAmount the highest amount, inclusive; empty for no upper bound
+     * @param type the AccountType name; empty for every type
+     * @param sort asc or desc
+     * @param pageSize the maximum number of accounts to return, capped at MAX_PAGE_SIZE
+     * @param bookmark the bookmark returned by the previous page, empty for the first page
+     * @return the page of accounts with the bookmark for the next page
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String QueryAccounts(final Context ctx, final String minAmount, final String maxAmount, final String type,
+                                final String sort, final String pageSize, final String bookmark) {
+        StateCache state = stateOf(ctx);
+
+        if (!"asc".equals(sort) && !"desc".equals(sort)) {
+            String errorMessage = String.format("Sort order %s must be asc or desc", sort);
+            throw fail(errorMessage, AssetTransferErrors.INVALID_QUERY);
+        }
+
+        String query = accountQueryOf(minAmount, maxAmount, type, sort);
+        List<Account> queryResults = new ArrayList<Account>();
+
+        QueryResultsIteratorWithMetadata<KeyValue> results = state.getQueryResultWithPagination(query,
+                pageSizeOf(pageSize), bookmark == null ? "" : bookmark);
+
+        for (KeyValue result: results) {
+            Account account = state.decode(result.getValue());
+            queryResults.add(withReadAmount(state, account));
+        }
+
+        AccountPage page = new AccountPage(queryResults.toArray(new Account[0]),
+                results.getMetadata().getBookmark(), results.getMetadata().getFetchedRecordsCount());
+
+        return genson.serialize(page);
+    }
+
+    /**
+     * Writes the owner and type index entries for accounts created before CreateAsset maintained them.
+     * Processes at most maxAccounts accounts starting at startKey, so large ledgers are migrated over several calls.
+     * Accounts still stored under their bare account ID are indexed too, so it does not depend on MigrateAccountKeys.
+     *
+     * @param ctx the transaction context
+     * @param startKey the key to resume from, empty for the first call
+     * @param maxAccounts the maximum number of accounts to index, capped at MAX_PAGE_SIZE
+     * @return the key to pass as startKey to the next call, empty when every account is indexed
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String IndexAccounts(final Context ctx, final String startKey, final String maxAccounts) {
+        StateCache state = stateOf(ctx);
+
+        int convertMaxAccounts = pageSizeOf(maxAccounts);
+        int indexedAccounts = 0;
+
+        // Paginated queries are not allowed in submit transactions, so the chunk is bounded by stopping the iterator early.
+        QueryResultsIterator<KeyValue> results = getAccountStates(state, startKey);
+
+        for (KeyValue result: results) {
+            if (indexedAccounts == convertMaxAccounts) {
+                return result.getKey();
+            }
+
+            putAccountIndexes(state, state.decode(result.getValue()));
+            indexedAccounts++;
+        }
+
+        return "";
+    }
+
+    /**
+     * Moves accounts still stored under their bare account ID to their AccountKeys.account key, for ledgers written
+     * before the account namespace. Values are moved as stored, without decoding. Processes at most maxAccounts
+     * accounts starting at startKey, so large ledgers are migrated over several calls.
+     *
+     * @param ctx the transaction context
+     * @param startKey the key to resume from, empty for the first call
+     * @param maxAccounts the maximum number of accounts to move, capped at MAX_PAGE_SIZE
+     * @return the key to pass as startKey to the next call, empty when every account is moved
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String MigrateAccountKeys(final Context ctx, final String startKey, final String maxAccounts) {
+        StateCache state = stateOf(ctx);
+
+        int convertMaxAccounts = pageSizeOf(maxAccounts);
+        int migratedAccounts = 0;
+        String from = startKey == null ? "" : startKey;
+
+        // bare account IDs sort on both sides of the account namespace, which itself is skipped
+        List<String[]> ranges = new ArrayList<>();
+
+        if (from.compareTo(AccountKeys.ACCOUNT_RANGE_START) < 0) {
+            ranges.add(new String[] {from, AccountKeys.ACCOUNT_RANGE_START});
+        }
+
+        ranges.add(new String[] {from.compareTo(AccountKeys.ACCOUNT_RANGE_END) < 0 ? AccountKeys.ACCOUNT_RANGE_END : from, ""});
+
+        for (String[] range : ranges) {
+            QueryResultsIterator<KeyValue> results = state.getStateByRange(range[0], range[1]);
+
+            for (KeyValue result: results) {
+                if (migratedAccounts == convertMaxAccounts) {
+                    return result.getKey();
+                }
+
+                state.putState(AccountKeys.account(result.getKey()), result.getValue());
+                state.delState(result.getKey());
+                migratedAccounts++;
+            }
+        }
+
+        return "";
+    }
+
+    /**
+     * Retrieves the account count and balance per AccountType, the collected commission and the total supply.
+     * Reads the swept base plus all pending deltas instead of scanning the accounts.
+     *
+     * @param ctx the transaction context
+     * @return the ledger aggregates
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public LedgerStats GetLedgerStats(final Context ctx) {
+        StateCache state = stateOf(ctx);
+
+        StatsDelta stats = StatsDelta.decode(state.getState(AccountKeys.stats()));
+        stats.add(getPendingStats(state));
+
+        return stats.toLedgerStats();
+    }
+
+    /**
+     * Folds pending aggregate deltas into the aggregate base, keeping GetLedgerStats cheap (the Spring client schedules it).
+     * Like SweepCommission it folds only buckets older than SWEEP_DELAY_SECONDS.
+     *
+     * @param ctx the transaction context
+     * @param maxDeltas the maximum number of deltas to fold, capped at MAX_SWEEP_SIZE
+     * @return the ledger aggregates held by the base after the sweep
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public LedgerStats SweepLedgerStats(final Context ctx, final String maxDeltas) {
+        StateCache state = stateOf(ctx);
+
+        int convertMaxDeltas = Math.max(1, Math.min(Integer.parseInt(maxDeltas), MAX_SWEEP_SIZE));
+        StatsDelta stats = StatsDelta.decode(state.getState(AccountKeys.stats()));
+
+        QueryResultsIterator<KeyValue> results = state.getStateByPartialCompositeKey(AccountKeys.STATS_DELTA);
+        long cutoff = sweepCutoffOf(state);
+        int sweptDeltas = 0;
+
+        for (KeyValue result: results) {
+            if (AccountKeys.deltaBucketOf(result.getKey()) >= cutoff) {
+                break;
+            }
+
+            stats.add(StatsDelta.decode(result.getValue()));
+            state.delState(result.getKey());
+            sweptDeltas++;
+
+            if (sweptDeltas >= convertMaxDeltas) {
+                break;
+            }
+        }
+
+        if (sweptDeltas > 0) {
+            state.putState(AccountKeys.stats(), stats.encode());
+        }
+
+        return stats.toLedgerStats();
+    }
+
+    /**
+     * Recomputes the account counts and balances from the accounts themselves, for ledgers with accounts created
+     * before CreateAsset recorded aggregate deltas. Processes at most maxAccounts accounts starting at startKey and
+     * keeps the running totals on the ledger, so large ledgers are rebuilt over several calls; the call that reaches
+     * the last account replaces the aggregate base. The collected commission line is kept.
+     * Run it after MigrateAccountKeys and while no transfers are submitted: a transfer between two chunks can be
+     * counted both in a scanned balance and in its delta.
+     *
+     * @param ctx the transaction context
+     * @param startKey the key to resume from, empty to start a new rebuild
+     * @param maxAccounts the maximum number of accounts to count, capped at MAX_PAGE_SIZE
+     * @return the key to pass as startKey to the next call, empty when the aggregate base has been replaced
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String RebuildLedgerStats(final Context ctx, final String startKey, final String maxAccounts) {
+        StateCache state = stateOf(ctx);
+
+        int convertMaxAccounts = pageSizeOf(maxAccounts);
+        boolean resumed = startKey != null && !startKey.isEmpty();
+        byte[] rebuilt = state.getState(AccountKeys.statsRebuild());
+
+        if (resumed && rebuilt == null) {
+            String errorMessage = String.format("No ledger stats rebuild to resume at %s, start again with an empty startKey", startKey);
+            throw fail(errorMessage, AssetTransferErrors.INVALID_QUERY);
+        }
+
+        StatsDelta scanned = resumed ? StatsDelta.decode(rebuilt) : new StatsDelta();
+        int scannedAccounts = 0;
+
+        // Paginated queries are not allowed in submit transactions, so the chunk is bounded by stopping the iterator early.
+        QueryResultsIterator<KeyValue> results = getAccountStates(state, startKey);
+
+        for (KeyValue result: results) {
+            if (scannedAccounts == convertMaxAccounts) {
+                state.putState(AccountKeys.statsRebuild(), scanned.encode());
+                return result.getKey();
+            }
+
+            Account account = withReadAmount(state, state.decode(result.getValue()));
+            scanned.addAccount(account.getType(), account.getAmount());
+            scannedAccounts++;
+        }
+
+        StatsDelta oldBase = StatsDelta.decode(state.getState(AccountKeys.stats()));
+        state.putState(AccountKeys.stats(), StatsDelta.rebase(scanned, getPendingStats(state), oldBase).encode());
+
+        if (rebuilt != null) {
+            state.delState(AccountKeys.statsRebuild());
+        }
+
+        return "";
+    }
+
+    /**
+     * Counts the commission and aggregate deltas SweepCommission and SweepLedgerStats would fold now, so a scheduler
+     * can skip the ordered sweep transactions when there is nothing to fold.
+     *
+     * @param ctx the transaction context
+     * @return the number of sweepable deltas of each kind
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public PendingDeltas GetPendingDeltas(final Context ctx) {
+        StateCache state = stateOf(ctx);
+
+        return new PendingDeltas(countSweepableDeltas(state, AccountKeys.COMMISSION_DELTA), countSweepableDeltas(state, AccountKeys.STATS_DELTA));
+    }
+
+    /**
+     * Chooses how accounts are written on this channel: "binary", the default, or "json" for CouchDB state, where
+     * QueryAccounts can only select JSON documents. The choice is kept on the ledger so every peer endorses the same
+     * bytes. Both formats stay readable; accounts already written change format on their next write.
+     *
+     * @param ctx the transaction context
+     * @param name the codec name, "binary" or "json"
+     * @return the codec name now in effect
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String SetAccountCodec(final Context ctx, final String name) {
+        StateCache state = stateOf(ctx);
+
+        if (!AccountCodec.BINARY.equals(name) && !AccountCodec.JSON.equals(name)) {
+            String errorMessage = String.format("Account codec %s must be %s or %s", name, AccountCodec.BINARY, AccountCodec.JSON);
+            throw fail(errorMessage, AssetTransferErrors.INVALID_CODEC);
+        }
+
+        state.putStringState(AccountKeys.accountCodec(), name);
+
+        return name;
+    }
+
+    /**
+     * Builds the commission index for ledgers created before CreateAsset maintained it.
+     * Scans the accounts once, namespaced or still under their bare ID, and registers the COMMISSION account under the index key.
+     *
+     * @param ctx the transaction context
+     * @return the indexed commission account
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Account IndexCommissionAccount(final Context ctx) {
+        StateCache state = stateOf(ctx);
+
+        Account indexedAccount = getCommissionAccount(ctx);
+        if (indexedAccount != null) {
+            return indexedAccount;
+        }
+
+        QueryResultsIterator<KeyValue> results = getAccountStates(state, "");
+
+        for (KeyValue result: results) {
+            Account account = state.decode(result.getValue());
+
+            if (account.getType() == AccountType.COMMISSION) {
+                state.putStringState(AccountKeys.commissionIndex(), account.getAccountId());
+                return account;
+            }
+        }
+
+        String errorMessage = String.format("CommissionAccount does not exist");
+        throw fail(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND);
+    }
+
+    /**
+     * Looks up the commission account through the commission index.
+     * The returned balance does not include pending commission deltas, see GetCommissionAccount.
+     *
+     * @param ctx the transaction context
+     * @return the commission account, or null when none is registered
+     */
+    public static Account getCommissionAccount(final Context ctx) {
+
+        StateCache state = stateOf(ctx);
+        String commissionAccountId = state.getStringState(AccountKeys.commissionIndex());
+
+        if (commissionAccountId == null || commissionAccountId.isEmpty()) {
+            return null;
+        }
+
+        return state.getAccount(commissionAccountId);
+    }
+
+    // Every simple key holds an account: under AccountKeys.account, or under its bare ID on ledgers that predate the
+    // namespace. In key order the bare IDs sort on both sides of the namespace, so one open range covers all of them.
+    private static QueryResultsIterator<KeyValue> getAccountStates(final StateCache state, final String startKey) {
+        return state.getStateByRange(startKey == null ? "" : startKey, "");
+    }
+
+    private static StateCache stateOf(final Context ctx) {
+        if (ctx instanceof AccountContext) {
+            return ((AccountContext) ctx).getStateCache();
+        }
+
+        return new StateCache(ctx.getStub());
+    }
+
+    private static ChaincodeException fail(final String errorMessage, final AssetTransferErrors error) {
+        System.out.println(errorMessage);
+        TransactionMetrics.fail(error.toString());
+
+        return new ChaincodeException(errorMessage, error.toString());
+    }
+
+    private static String accountQueryOf(final String minAmount, final String maxAmount, final String type, final String sort) {
+        Map<String, Object> amountRange = new LinkedHashMap<>();
+
+        try {
+            // without a bound the index is still used, and non-numeric amounts are excluded
+            amountRange.put("$gte", minAmount == null || minAmount.isEmpty() ? Long.MIN_VALUE : Long.parseLong(minAmount));
+
+            if (maxAmount != null && !maxAmount.isEmpty()) {
+                amountRange.put("$lte", Long.parseLong(maxAmount));
+            }
+        } catch (NumberFormatException e) {
+            String errorMessage = String.format("Amount range [%s, %s] must be whole numbers", minAmount, maxAmount);
+            throw fail(errorMessage, AssetTransferErrors.INVALID_QUERY);
+        }
+
+        Map<String, Object> selector = new LinkedHashMap<>();
+        Map<String, Object> query = new LinkedHashMap<>();
+        query.put("selector", selector);
+
+        if (type == null || type.isEmpty()) {
+            // the type condition keeps other JSON values with an amount field out of the results
+            List<String> types = new ArrayList<>();
+
+            for (AccountType accountType : AccountType.values()) {
+                types.add(accountType.name());
+            }
+
+            selector.put("amount", amountRange);
+            selector.put("type", Collections.singletonMap("$in", types));
+            query.put("sort", Collections.singletonList(Collections.singletonMap("amount", sort)));
+            query.put("use_index", AMOUNT_INDEX);
+        } else {
+            // type is fixed, so sorting on the whole index orders by amount
+            selector.put("type", AccountType.valueOf(type).name());
+            selector.put("amount", amountRange);
+            query.put("sort", Arrays.asList(Collections.singletonMap("type", sort), Collections.singletonMap("amount", sort)));
+            query.put("use_index", TYPE_AMOUNT_INDEX);
+        }
+
+        return genson.serialize(query);
+    }
+
+    private static int pageSizeOf(final String pageSize) {
+        int convertPageSize = Integer.parseInt(pageSize);
+
+        if (convertPageSize <= 0) {
+            String errorMessage = String.format("Page size %s must be positive", pageSize);
+            throw fail(errorMessage, AssetTransferErrors.INVALID_PAGE_SIZE);
+        }
+
+        return Math.min(convertPageSize, MAX_PAGE_SIZE);
+    }
+
+    private static String getIndexedPage(final StateCache state, final CompositeKey partialKey, final String pageSize, final String bookmark) {
+        List<Account> queryResults = new ArrayList<Account>();
+
+        QueryResultsIteratorWithMetadata<KeyValue> results = state.getStateByPartialCompositeKeyWithPagination(partialKey,
+                pageSizeOf(pageSize), bookmark == null ? "" : bookmark);
+
+        for (KeyValue result: results) {
+            // index keys are objectType~value~accountId
+            String accountId = AccountKeys.indexedAccountIdOf(result.getKey());
+            Account account = state.getAccount(accountId);
+
+            if (account != null) {
+                queryResults.add(withReadAmount(state, account));
+            }
+        }
+
+        AccountPage page = new AccountPage(queryResults.toArray(new Account[0]),
+                results.getMetadata().getBookmark(), results.getMetadata().getFetchedRecordsCount());
+
+        return genson.serialize(page);
+    }
+
+    private static void putAccountIndexes(final StateCache state, final Account account) {
+        state.putState(AccountKeys.ownerIndex(account.getOwner(), account.getAccountId()), INDEX_VALUE);
+        state.putState(AccountKeys.typeIndex(account.getType(), account.getAccountId()), INDEX_VALUE);
+    }
+
+    // What TransferAccount returns, and each TransferBatch entry carries as its message, so clients see one format.
+    private static String transferMessageOf(final Account sendAccount, final Account receivingAccount, final long commission) {
+        if (commission > 0) {
+            return sendAccount + " -> " + receivingAccount + " => commission " + commission;
+        }
+
+        return sendAccount + " -> " + receivingAccount;
+    }
+
+    private static long commissionOf(final Account sendAccount, final Account receivingAccount, final long sendAmount) {
+        if (sendAccount.getType() == AccountType.USER && receivingAccount.getType() == AccountType.USER) {
+            return (long) (sendAmount * USER_COMMISSION_PERCENT);
+        }
+
+        return 0;
+    }
+
+    private static Account getTouchedAccount(final StateCache state, final Map<String, Account> touchedAccounts,
+                                             final Map<String, Account> shardedAccounts, final int index, final String accountId) {
+        Account account = touchedAccounts.get(accountId);
+
+        if (account != null) {
+            return account;
+        }
+
+        account = state.getAccount(accountId);
+
+        if (account == null) {
+            String errorMessage = String.format("Transfer %d: Account %s does not exist", index, accountId);
+            throw fail(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND);
+        }
+
+        // a batch needs the full balance of a sharded account to check every entry, so it reads all of its shards
+        Account effectiveAccount = withEffectiveAmount(state, account);
+
+        if (effectiveAccount != account) {
+            shardedAccounts.put(accountId, effectiveAccount);
+        }
+
+        // a fold reads the committed deltas, so repeating it for a later entry would count them twice; fold them all once
+        effectiveAccount = withFoldedCommission(state, effectiveAccount, Long.MAX_VALUE);
+
+        touchedAccounts.put(accountId, effectiveAccount);
+        return effectiveAccount;
+    }
+
+    /**
+     * Rules every transfer follows, whether it is submitted alone or as a TransferBatch entry.
+     *
+     * @param label names the transfer in the error message
+     */
+    private static void requireValidTransfer(final String label, final String senderId, final String receiverId, final Long amount) {
+        if (senderId == null || receiverId == null || amount == null || amount <= 0 || senderId.equals(receiverId)) {
+            String errorMessage = String.format("%s is invalid: sender=%s, receiver=%s, amount=%s", label, senderId, receiverId, amount);
+            throw fail(errorMessage, AssetTransferErrors.INVALID_TRANSFER);
+        }
+    }
+
+    private static void requireFunds(final String prefix, final Account sendAccount, final long amount) {
+        if (sendAccount.getAmount() < amount) {
+            String errorMessage = String.format("%sAccount %s has insufficient funds", prefix, sendAccount.getAccountId());
+            throw fail(errorMessage, AssetTransferErrors.INSUFFICIENT_FUNDS);
+        }
+    }
+
+    private static Account debitAccount(final StateCache state, final Account account, final long amount) {
+        int shardCount = ShardedBalance.shardCount(state, account);
+
+        if (shardCount == 0) {
+            Account fundedAccount = withFoldedCommission(state, account, amount);
+            requireFunds("", fundedAccount, amount);
+
+            Account updatedAccount = new Account(account.getAccountId(), account.getOwner(), fundedAccount.getAmount() - amount, account.getType());
+            state.putAccount(updatedAccount);
+            return updatedAccount;
+        }
+
+        if (!ShardedBalance.debit(state, account.getAccountId(), shardCount, amount)) {
+            String errorMessage = String.format("Account %s has insufficient funds", account.getAccountId());
+            throw fail(errorMessage, AssetTransferErrors.INSUFFICIENT_FUNDS);
+        }
+
+        return new Account(account.getAccountId(), account.getOwner(), null, account.getType());
+    }
+
+    private static Account creditAccount(final StateCache state, final Account account, final long amount) {
+        int shardCount = ShardedBalance.shardCount(state, account);
+
+        if (shardCount == 0) {
+            Account updatedAccount = new Account(account.getAccountId(), account.getOwner(), account.getAmount() + amount, account.getType());
+            state.putAccount(updatedAccount);
+            return updatedAccount;
+        }
+
+        ShardedBalance.credit(state, account.getAccountId(), shardCount, amount);
+
+        return new Account(account.getAccountId(), account.getOwner(), null, account.getType());
+    }
+
+    private static Account withEffectiveAmount(final StateCache state, final Account account) {
+        int shardCount = ShardedBalance.shardCount(state, account);
+
+        if (shardCount == 0) {
+            return account;
+        }
+
+        return new Account(account.getAccountId(), account.getOwner(), ShardedBalance.total(state, account.getAccountId(), shardCount), account.getType());
+    }
+
+    // The balance reads return: the effective amount, plus the pending deltas for the commission account.
+    // Only the read transactions use it, so transfers never take the commission deltas into their read set.
+    private static Account withReadAmount(final StateCache state, final Account account) {
+        Account effectiveAccount = withEffectiveAmount(state, account);
+
+        if (effectiveAccount.getType() != AccountType.COMMISSION) {
+            return effectiveAccount;
+        }
+
+        return withPendingCommission(state, effectiveAccount);
+    }
+
+    // The COMMISSION account owns its base balance plus the pending deltas. When the base cannot cover a debit, the oldest
+    // deltas are folded into it until it can, so a debit reads only as much of the delta range as it needs.
+    private static Account withFoldedCommission(final StateCache state, final Account account, final long amount) {
+        if (account.getType() != AccountType.COMMISSION || account.getAmount() >= amount) {
+            return account;
+        }
+
+        QueryResultsIterator<KeyValue> results = state.getStateByPartialCompositeKey(AccountKeys.COMMISSION_DELTA);
+        long foldedAmount = account.getAmount();
+
+        for (KeyValue result: results) {
+            foldedAmount += AmountCodec.decode(result.getValue());
+            state.delState(result.getKey());
+
+            if (foldedAmount >= amount) {
+                break;
+            }
+        }
+
+        return new Account(account.getAccountId(), account.getOwner(), foldedAmount, account.getType());
+    }
+
+    private static Account withPendingCommission(final StateCache state, final Account commissionAccount) {
+        QueryResultsIterator<KeyValue> results = state.getStateByPartialCompositeKey(AccountKeys.COMMISSION_DELTA);
+        long pendingCommission = 0;
+
+        for (KeyValue result: results) {
+            pendingCommission += AmountCodec.decode(result.getValue());
+        }
+
+        return new Account(commissionAccount.getAccountId(), commissionAccount.getOwner(),
+                commissionAccount.getAmount() + pendingCommission, commissionAccount.getType());
+    }
+
+
+
+    // Reads only the index key, which changes once per ledger, so transfers never take the commission balance into their read set.
+    private static String requireCommissionAccountId(final StateCache state) {
+        String commissionAccountId = state.getStringState(AccountKeys.commissionIndex());
+
+        if (commissionAccountId == null || commissionAccountId.isEmpty()) {
+            String errorMessage = String.format("CommissionAccount does not exist");
+            throw fail(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND);
+        }
+
+        return commissionAccountId;
+    }
+
+    private static void putStatsDelta(final StateCache state, final StatsDelta statsDelta) {
+        if (!statsDelta.isEmpty()) {
+            state.putState(AccountKeys.statsDelta(state.getTxTimestamp(), state.getTxId()), statsDelta.encode());
+        }
+    }
+
+    // Fabric keeps only the last setEvent of a transaction, so each transaction collects its changes into one event.
+    private static void setEvent(final StateCache state, final AccountEvent event) {
+        if (!event.isEmpty()) {
+            ChaincodeStub stub = state.getStub();
+            stub.setEvent(AccountEvent.NAME, event.encode(stub.getTxId(), stub.getTxTimestamp()));
+        }
+    }
+
+    private static void putCommissionDelta(final StateCache state, final long commission) {
+        state.putState(AccountKeys.commissionDelta(state.getTxTimestamp(), state.getTxId()), AmountCodec.encode(commission));
+    }
+
+    private static StatsDelta getPendingStats(final StateCache state) {
+        QueryResultsIterator<KeyValue> results = state.getStateByPartialCompositeKey(AccountKeys.STATS_DELTA);
+        StatsDelta pending = new StatsDelta();
+
+        for (KeyValue result: results) {
+            pending.add(StatsDelta.decode(result.getValue()));
+        }
+
+        return pending;
+    }
+
+    private static long countSweepableDeltas(final StateCache state, final String objectType) {
+        QueryResultsIterator<KeyValue> results = state.getStateByPartialCompositeKey(objectType);
+        long cutoff = sweepCutoffOf(state);
+        long count = 0;
+
+        for (KeyValue result: results) {
+            if (AccountKeys.deltaBucketOf(result.getKey()) >= cutoff) {
+                break;
+            }
+
+            count++;
+        }
+
+        return count;
+    }
+
+    // The first delta bucket a sweep leaves in place.
+    private static long sweepCutoffOf(final StateCache state) {
+        return state.getTxTimestamp().getEpochSecond() - SWEEP_DELAY_SECONDS;
     }
 }
@@ -0,0 +1,173 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.hyperledger.fabric.contract.ContractRouter;
+import org.hyperledger.fabric.shim.ChaincodeServer;
+import org.hyperledger.fabric.shim.ChaincodeServerProperties;
+import org.hyperledger.fabric.shim.GrpcServer;
+import org.hyperledger.fabric.shim.NettyGrpcServer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs the contract as an external chaincode server (chaincode as a service) instead of letting the peer launch it.
+ *
+ * The server is configured from the environment:
+ * <ul>
+ * <li>CHAINCODE_ID (or CORE_CHAINCODE_ID_NAME): the package ID the peer was given for this chaincode</li>
+ * <li>CHAINCODE_SERVER_ADDRESS: the gRPC address to listen on, default 0.0.0.0:9999</li>
+ * <li>CHAINCODE_TLS_ENABLED, CHAINCODE_TLS_CERT, CHAINCODE_TLS_KEY, CHAINCODE_TLS_KEY_PASSWORD: server TLS</li>
+ * <li>CHAINCODE_CLIENT_CA_CERT: when set with TLS, peers must present a client certificate signed by this CA</li>
+ * <li>CHAINCODE_HEALTH_PORT: the HTTP port serving /healthz and /readyz, default 9998, 0 to disable</li>
+ * <li>CHAINCODE_TX_METRICS_ENABLED: also serve per-transaction metrics (see TransactionMetrics) on /metrics</li>
+ * </ul>
+ * The invocation thread pool (TP_CORE_POOL_SIZE, TP_MAX_POOL_SIZE, TP_QUEUE_SIZE, TP_KEEP_ALIVE_MS) is read by the shim
+ * from config.props on the classpath; the Docker entrypoint puts CHAINCODE_CONFIG_DIR ahead of the jar so it can be overridden.
+ */
+public final class AssetTransferServer {
+
+    private static final String DEFAULT_SERVER_ADDRESS = "0.0.0.0:9999";
+    private static final int DEFAULT_HEALTH_PORT = 9998;
+
+    private AssetTransferServer() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        String chaincodeId = env("CHAINCODE_ID", env("CORE_CHAINCODE_ID_NAME", ""));
+
+        if (chaincodeId.isEmpty()) {
+            throw new IllegalArgumentException("CHAINCODE_ID must be set to the chaincode package ID");
+        }
+
+        ContractRouter router = new ContractRouter(new String[] {"--id", chaincodeId});
+        ChaincodeServerProperties properties = serverProperties();
+
+        boolean exportMetrics = Boolean.parseBoolean(env("CHAINCODE_TX_METRICS_ENABLED", "false"));
+
+        if (exportMetrics) {
+            TransactionMetrics.enableExport();
+        }
+
+        AtomicBoolean ready = new AtomicBoolean(false);
+        HttpServer healthServer = startHealthServer(Integer.parseInt(env("CHAINCODE_HEALTH_PORT", String.valueOf(DEFAULT_HEALTH_PORT))),
+                ready, exportMetrics);
+
+        try {
+            router.startRouterWithChaincodeServer(new ReadinessTrackingServer(new NettyGrpcServer(router, properties), ready));
+        } finally {
+            if (healthServer != null) {
+                healthServer.stop(0);
+            }
+        }
+    }
+
+    static ChaincodeServerProperties serverProperties() {
+        ChaincodeServerProperties properties = new ChaincodeServerProperties();
+        properties.setServerAddress(parseAddress(env("CHAINCODE_SERVER_ADDRESS", DEFAULT_SERVER_ADDRESS)));
+
+        if (Boolean.parseBoolean(env("CHAINCODE_TLS_ENABLED", "false"))) {
+            properties.setTlsEnabled(true);
+            properties.setKeyCertChainFile(env("CHAINCODE_TLS_CERT", ""));
+            properties.setKeyFile(env("CHAINCODE_TLS_KEY", ""));
+            properties.setKeyPassword(env("CHAINCODE_TLS_KEY_PASSWORD", null));
+            properties.setTrustCertCollectionFile(env("CHAINCODE_CLIENT_CA_CERT", null));
+        }
+
+        properties.validate();
+        return properties;
+    }
+
+    static InetSocketAddress parseAddress(final String address) {
+        int separator = address.lastIndexOf(':');
+
+        if (separator <= 0 || separator == address.length() - 1) {
+            throw new IllegalArgumentException(String.format("Chaincode server address %s must be in host:port format", address));
+        }
+
+        return new InetSocketAddress(address.substring(0, separator), Integer.parseInt(address.substring(separator + 1)));
+    }
+
+    private static String env(final String name, final String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    private static HttpServer startHealthServer(final int port, final AtomicBoolean ready, final boolean exportMetrics) throws IOException {
+        if (port == 0) {
+            return null;
+        }
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        // liveness only says the JVM is up; readiness waits until the gRPC port accepts peer connections
+        server.createContext("/healthz", exchange -> respond(exchange, true));
+        server.createContext("/readyz", exchange -> respond(exchange, ready.get()));
+
+        if (exportMetrics) {
+            server.createContext("/metrics", exchange -> {
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+                send(exchange, 200, TransactionMetrics.render());
+            });
+        }
+
+        server.start();
+
+        System.out.println(String.format("Health endpoint listening on port %d", port));
+        return server;
+    }
+
+    private static void respond(final HttpExchange exchange, final boolean ok) throws IOException {
+        send(exchange, ok ? 200 : 503, ok ? "ok" : "not ready");
+    }
+
+    private static void send(final HttpExchange exchange, final int status, final String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Same as the shim's NettyChaincodeServer, except that it flags readiness between binding the port and blocking.
+     */
+    private static final class ReadinessTrackingServer implements ChaincodeServer {
+
+        private final GrpcServer grpcServer;
+        private final AtomicBoolean ready;
+
+        ReadinessTrackingServer(final GrpcServer grpcServer, final AtomicBoolean ready) {
+            this.grpcServer = grpcServer;
+            this.ready = ready;
+        }
+
+        @Override
+        public void start() throws IOException, InterruptedException {
+            grpcServer.start();
+            ready.set(true);
+            System.out.println("Chaincode server started");
+
+            try {
+                grpcServer.blockUntilShutdown();
+            } finally {
+                ready.set(false);
+            }
+        }
+
+        @Override
+        public void stop() {
+            ready.set(false);
+            grpcServer.stop();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-layout binary codec for Account values.
+ *
+ * <pre>
+ * version:u8 | type:u8 | amount:i64 | accountId:(len:u16, utf8) | owner:(len:u16, utf8)
+ * </pre>
+ *
+ * The type is stored by ordinal, so new AccountType constants must only be appended.
+ * Values that do not start with a known version byte are legacy Genson JSON and are
+ * decoded through JsonAccountCodec; they are rewritten in binary the next time they change.
+ */
+public final class BinaryAccountCodec implements AccountCodec {
+
+    static final byte VERSION_1 = 1;
+
+    private static final int NULL_LENGTH = 0xFFFF;
+    private static final int MAX_LENGTH = NULL_LENGTH - 1;
+    private static final int HEADER_BYTES = 1 + 1 + Long.BYTES;
+
+    private static final AccountType[] TYPES = AccountType.values();
+
+    private final AccountCodec legacyCodec = new JsonAccountCodec();
+
+    @Override
+    public byte[] encode(final Account account) {
+        byte[] accountId = toBytes(account.getAccountId());
+        byte[] owner = toBytes(account.getOwner());
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + lengthOf(accountId) + lengthOf(owner));
+        buffer.put(VERSION_1);
+        buffer.put((byte) account.getType().ordinal());
+        buffer.putLong(account.getAmount());
+        putString(buffer, accountId);
+        putString(buffer, owner);
+
+        return buffer.array();
+    }
+
+    @Override
+    public Account decode(final byte[] value) {
+        if (value.length == 0 || value[0] != VERSION_1) {
+            return legacyCodec.decode(value);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(value, 1, value.length - 1);
+        int typeOrdinal = buffer.get() & 0xFF;
+
+        if (typeOrdinal >= TYPES.length) {
+            throw new IllegalArgumentException("Unknown account type ordinal " + typeOrdinal);
+        }
+
+        long amount = buffer.getLong();
+        String accountId = getString(buffer);
+        String owner = getString(buffer);
+
+        return new Account(accountId, owner, amount, TYPES[typeOrdinal]);
+    }
+
+    private static byte[] toBytes(final String value) {
+        if (value == null) {
+            return null;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        if (bytes.length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Account field longer than " + MAX_LENGTH + " bytes");
+        }
+
+        return bytes;
+    }
+
+    private static int lengthOf(final byte[] bytes) {
+        return Short.BYTES + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static void putString(final ByteBuffer buffer, final byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) NULL_LENGTH);
+            return;
+        }
+
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(final ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+
+        return value;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.Iterator;
+
+import org.hyperledger.fabric.protos.peer.ChaincodeShim.QueryResponseMetadata;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+/**
+ * Query results that record rows, value bytes and time spent fetching from the peer into a TransactionStats.
+ * StateCache only wraps results in it while TransactionMetrics is enabled.
+ */
+final class CountingResults<T> implements QueryResultsIterator<T>, QueryResultsIteratorWithMetadata<T> {
+
+    private final Iterable<T> delegate;
+    private final AutoCloseable closeable;
+    private final QueryResultsIteratorWithMetadata<T> withMetadata;
+    private final TransactionStats stats;
+
+    CountingResults(final QueryResultsIterator<T> delegate, final TransactionStats stats) {
+        this.delegate = delegate;
+        this.closeable = delegate;
+        this.withMetadata = null;
+        this.stats = stats;
+    }
+
+    CountingResults(final QueryResultsIteratorWithMetadata<T> delegate, final TransactionStats stats) {
+        this.delegate = delegate;
+        this.closeable = delegate;
+        this.withMetadata = delegate;
+        this.stats = stats;
+    }
+
+    @Override
+    public QueryResponseMetadata getMetadata() {
+        return withMetadata == null ? null : withMetadata.getMetadata();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        Iterator<T> results = delegate.iterator();
+
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                long start = System.nanoTime();
+                boolean hasNext = results.hasNext();
+                stats.recordScan(System.nanoTime() - start);
+
+                return hasNext;
+            }
+
+            @Override
+            public T next() {
+                long start = System.nanoTime();
+                T result = results.next();
+                stats.recordScan(System.nanoTime() - start);
+
+                if (result instanceof KeyValue) {
+                    stats.recordRangeRow(((KeyValue) result).getValue());
+                } else if (result instanceof KeyModification) {
+                    stats.recordRangeRow(((KeyModification) result).getValue());
+                }
+
+                return result;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws Exception {
+        closeable.close();
+    }
+}
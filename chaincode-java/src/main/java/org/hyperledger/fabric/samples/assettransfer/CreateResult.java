@@ -0,0 +1,75 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.Objects;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+
+@DataType()
+public final class CreateResult {
+
+    public static final String CREATED = "CREATED";
+    public static final String EXISTS = "EXISTS";
+
+    @Property()
+    private final int index;
+
+    @Property()
+    private final String accountId;
+
+    @Property()
+    private final String status;
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public CreateResult(@JsonProperty("index") final int index, @JsonProperty("accountId") final String accountId,
+                        @JsonProperty("status") final String status) {
+        this.index = index;
+        this.accountId = accountId;
+        this.status = status;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        CreateResult other = (CreateResult) obj;
+
+        return getIndex() == other.getIndex()
+                && Objects.equals(getAccountId(), other.getAccountId())
+                && Objects.equals(getStatus(), other.getStatus());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getIndex(), getAccountId(), getStatus());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " [index=" + index + ", accountId=" + accountId + ", status=" + status + "]";
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.charset.StandardCharsets;
+
+import com.owlike.genson.Genson;
+
+/**
+ * Genson JSON codec, the format every account was written in before BinaryAccountCodec.
+ */
+public final class JsonAccountCodec implements AccountCodec {
+
+    private static Genson genson = new Genson();
+
+    @Override
+    public byte[] encode(final Account account) {
+        return genson.serialize(account).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Account decode(final byte[] value) {
+        return genson.deserialize(new String(value, StandardCharsets.UTF_8), Account.class);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+
+@DataType()
+public final class LedgerStats {
+
+    @Property()
+    private final TypeStats[] types;
+
+    @Property()
+    private final long commission;
+
+    @Property()
+    private final long totalSupply;
+
+    public TypeStats[] getTypes() {
+        return types;
+    }
+
+    public long getCommission() {
+        return commission;
+    }
+
+    public long getTotalSupply() {
+        return totalSupply;
+    }
+
+    public LedgerStats(@JsonProperty("types") final TypeStats[] types, @JsonProperty("commission") final long commission, @JsonProperty("totalSupply") final long totalSupply
+    ) {
+        this.types = types;
+        this.commission = commission;
+        this.totalSupply = totalSupply;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        LedgerStats other = (LedgerStats) obj;
+
+        return Arrays.equals(getTypes(), other.getTypes())
+                && getCommission() == other.getCommission()
+                && getTotalSupply() == other.getTotalSupply();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(Arrays.hashCode(getTypes()), getCommission(), getTotalSupply());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " [types=" + Arrays.toString(types) + ", commission="
+                + commission + ", totalSupply=" + totalSupply + "]";
+    }
+}
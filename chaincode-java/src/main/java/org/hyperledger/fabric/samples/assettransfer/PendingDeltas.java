@@ -0,0 +1,61 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.Objects;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+
+@DataType()
+public final class PendingDeltas {
+
+    @Property()
+    private final long commission;
+
+    @Property()
+    private final long stats;
+
+    public long getCommission() {
+        return commission;
+    }
+
+    public long getStats() {
+        return stats;
+    }
+
+    public PendingDeltas(@JsonProperty("commission") final long commission, @JsonProperty("stats") final long stats) {
+        this.commission = commission;
+        this.stats = stats;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        PendingDeltas other = (PendingDeltas) obj;
+
+        return getCommission() == other.getCommission() && getStats() == other.getStats();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getCommission(), getStats());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " [commission=" + commission + ", stats=" + stats + "]";
+    }
+}
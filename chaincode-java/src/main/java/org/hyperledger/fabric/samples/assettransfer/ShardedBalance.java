@@ -0,0 +1,108 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+/**
+ * Balance of a hot account spread over N sub-balance keys.
+ *
+ * Only COMPANY accounts can be sharded, so USER transfers never pay for the shard count lookup.
+ * While an account is sharded its own record keeps amount 0 and is no longer written by transfers;
+ * the balance is the sum of shard~balance(accountId, i) for i in [0, N).
+ * A transfer picks its starting shard from the transaction ID, so concurrent transfers touching the
+ * same account only collide when they land on the same shard.
+ */
+final class ShardedBalance {
+
+    static final int MAX_SHARDS = 64;
+
+    private ShardedBalance() {
+    }
+
+    /**
+     * @return the number of shards of the account, or 0 when its balance lives in the account record
+     */
+    static int shardCount(final StateCache state, final Account account) {
+        if (account.getType() != AccountType.COMPANY) {
+            return 0;
+        }
+
+        return (int) AmountCodec.decode(state.getState(AccountKeys.shardCount(account.getAccountId())));
+    }
+
+    static long total(final StateCache state, final String accountId, final int shardCount) {
+        long total = 0;
+
+        for (int i = 0; i < shardCount; i++) {
+            total += AmountCodec.decode(state.getState(AccountKeys.shardBalance(accountId, i)));
+        }
+
+        return total;
+    }
+
+    static void credit(final StateCache state, final String accountId, final int shardCount, final long amount) {
+        String key = AccountKeys.shardBalance(accountId, startShard(state, shardCount));
+        state.putState(key, AmountCodec.encode(AmountCodec.decode(state.getState(key)) + amount));
+    }
+
+    /**
+     * Debits the starting shard and falls back to the following shards until the amount is covered.
+     * Nothing is written when the shards together cannot cover the amount.
+     *
+     * @return false when the account has insufficient funds
+     */
+    static boolean debit(final StateCache state, final String accountId, final int shardCount, final long amount) {
+        int start = startShard(state, shardCount);
+        long[] balances = new long[shardCount];
+        long remaining = amount;
+        int read = 0;
+
+        while (remaining > 0 && read < shardCount) {
+            int shard = (start + read) % shardCount;
+            balances[shard] = AmountCodec.decode(state.getState(AccountKeys.shardBalance(accountId, shard)));
+            remaining -= Math.min(balances[shard], remaining);
+            read++;
+        }
+
+        if (remaining > 0) {
+            return false;
+        }
+
+        remaining = amount;
+
+        for (int i = 0; i < read; i++) {
+            int shard = (start + i) % shardCount;
+            long taken = Math.min(balances[shard], remaining);
+            state.putState(AccountKeys.shardBalance(accountId, shard), AmountCodec.encode(balances[shard] - taken));
+            remaining -= taken;
+        }
+
+        return true;
+    }
+
+    /**
+     * Spreads the total evenly over newCount shards and removes shards beyond newCount.
+     * A newCount of 0 removes the sharding; the caller then writes the total back to the account record.
+     */
+    static void distribute(final StateCache state, final String accountId, final int oldCount, final int newCount, final long total) {
+        for (int i = 0; i < newCount; i++) {
+            long share = total / newCount + (i < total % newCount ? 1 : 0);
+            state.putState(AccountKeys.shardBalance(accountId, i), AmountCodec.encode(share));
+        }
+
+        for (int i = newCount; i < oldCount; i++) {
+            state.delState(AccountKeys.shardBalance(accountId, i));
+        }
+
+        if (newCount == 0) {
+            state.delState(AccountKeys.shardCount(accountId));
+        } else {
+            state.putState(AccountKeys.shardCount(accountId), AmountCodec.encode(newCount));
+        }
+    }
+
+    private static int startShard(final StateCache state, final int shardCount) {
+        return Math.floorMod(state.getTxId().hashCode(), shardCount);
+    }
+}
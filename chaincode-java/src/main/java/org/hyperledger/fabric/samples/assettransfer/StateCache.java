@@ -0,0 +1,290 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+/**
+ * World-state view for the life of one transaction.
+ *
+ * Point reads go to the peer once per key, and decoded accounts are memoized. Keys written or deleted
+ * earlier in the same transaction read back their new value (the shim alone would return the committed one).
+ * Range, composite-key and rich queries are passed through unchanged and do not see pending writes.
+ *
+ * Accounts are addressed by account ID and stored under AccountKeys.account. An account not found there is looked
+ * up under its bare ID, where ledgers written before the account namespace keep it, and moved on its next write.
+ * Unless a codec is given, accounts are written with the codec recorded under AccountKeys.accountCodec, read on the
+ * first account write, so every peer endorses the same bytes; both formats are always readable.
+ *
+ * While a TransactionStats is attached, peer reads, writes, scans and account encoding are counted and timed.
+ */
+public final class StateCache {
+
+    private static final byte[] ABSENT = new byte[0];
+
+    // BinaryAccountCodec falls back to JSON, so it decodes values written by either codec
+    private static final AccountCodec DECODER = new BinaryAccountCodec();
+
+    private final ChaincodeStub stub;
+    // null until the first account write when the codec comes from the ledger
+    private AccountCodec codec;
+
+    private final Map<String, byte[]> states = new HashMap<>();
+    private final Map<String, Account> accounts = new HashMap<>();
+    private final Set<String> legacyAccountIds = new HashSet<>();
+
+    private TransactionStats stats;
+
+    public StateCache(final ChaincodeStub stub) {
+        this(stub, null);
+    }
+
+    /**
+     * @param stub the chaincode stub of the transaction
+     * @param codec the codec for account values, or null to use the one recorded on the ledger
+     */
+    public StateCache(final ChaincodeStub stub, final AccountCodec codec) {
+        this.stub = stub;
+        this.codec = codec;
+    }
+
+    public ChaincodeStub getStub() {
+        return stub;
+    }
+
+    public String getTxId() {
+        return stub.getTxId();
+    }
+
+    public Instant getTxTimestamp() {
+        return stub.getTxTimestamp();
+    }
+
+    TransactionStats getStats() {
+        return stats;
+    }
+
+    void setStats(final TransactionStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * @param key the world-state key
+     * @return the value, or null when the key does not exist
+     */
+    public byte[] getState(final String key) {
+        byte[] value = states.get(key);
+
+        if (value == null) {
+            long start = stats == null ? 0L : System.nanoTime();
+            value = stub.getState(key);
+
+            if (stats != null) {
+                stats.recordRead(value, System.nanoTime() - start);
+            }
+
+            value = value == null || value.length == 0 ? ABSENT : value;
+            states.put(key, value);
+        }
+
+        return value == ABSENT ? null : value;
+    }
+
+    public void putState(final String key, final byte[] value) {
+        write(key, value);
+        states.put(key, value);
+        accounts.remove(key);
+    }
+
+    public void delState(final String key) {
+        long start = stats == null ? 0L : System.nanoTime();
+        stub.delState(key);
+
+        if (stats != null) {
+            stats.recordWrite(null, System.nanoTime() - start);
+        }
+
+        states.put(key, ABSENT);
+        accounts.remove(key);
+    }
+
+    /**
+     * @param key the world-state key
+     * @return the UTF-8 value, or null when the key does not exist
+     */
+    public String getStringState(final String key) {
+        byte[] value = states.get(key);
+
+        if (value == null) {
+            long start = stats == null ? 0L : System.nanoTime();
+            String stringValue = stub.getStringState(key);
+            value = stringValue == null || stringValue.isEmpty() ? ABSENT : stringValue.getBytes(StandardCharsets.UTF_8);
+
+            if (stats != null) {
+                stats.recordRead(value, System.nanoTime() - start);
+            }
+
+            states.put(key, value);
+        }
+
+        return value == ABSENT ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    public void putStringState(final String key, final String value) {
+        long start = stats == null ? 0L : System.nanoTime();
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        stub.putStringState(key, value);
+
+        if (stats != null) {
+            stats.recordWrite(bytes, System.nanoTime() - start);
+        }
+
+        states.put(key, bytes);
+        accounts.remove(key);
+    }
+
+    /**
+     * @param accountId the ID of the account
+     * @return the decoded account, or null when it does not exist
+     */
+    public Account getAccount(final String accountId) {
+        String key = AccountKeys.account(accountId);
+        Account account = accounts.get(key);
+
+        if (account != null) {
+            return account;
+        }
+
+        byte[] value = getAccountValue(accountId);
+
+        if (value == null) {
+            return null;
+        }
+
+        account = decode(value);
+        accounts.put(key, account);
+
+        return account;
+    }
+
+    /**
+     * @param accountId the ID of the account
+     * @return whether the account exists, without decoding it
+     */
+    public boolean hasAccount(final String accountId) {
+        return accounts.containsKey(AccountKeys.account(accountId)) || getAccountValue(accountId) != null;
+    }
+
+    public void putAccount(final Account account) {
+        long start = stats == null ? 0L : System.nanoTime();
+        byte[] value = encoder().encode(account);
+
+        if (stats != null) {
+            stats.recordCodec(System.nanoTime() - start);
+        }
+
+        String key = AccountKeys.account(account.getAccountId());
+        write(key, value);
+        states.put(key, value);
+        accounts.put(key, account);
+
+        if (legacyAccountIds.remove(account.getAccountId())) {
+            delState(account.getAccountId());
+        }
+    }
+
+    public Account decode(final byte[] value) {
+        AccountCodec decoder = codec == null ? DECODER : codec;
+
+        if (stats == null) {
+            return decoder.decode(value);
+        }
+
+        long start = System.nanoTime();
+        Account account = decoder.decode(value);
+        stats.recordCodec(System.nanoTime() - start);
+
+        return account;
+    }
+
+    public QueryResultsIterator<KeyValue> getStateByRange(final String startKey, final String endKey) {
+        return counted(stub.getStateByRange(startKey, endKey));
+    }
+
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(final String startKey, final String endKey,
+                                                                                    final int pageSize, final String bookmark) {
+        return counted(stub.getStateByRangeWithPagination(startKey, endKey, pageSize, bookmark));
+    }
+
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String objectType) {
+        return counted(stub.getStateByPartialCompositeKey(objectType));
+    }
+
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(final CompositeKey partialKey,
+                                                                                                 final int pageSize, final String bookmark) {
+        return counted(stub.getStateByPartialCompositeKeyWithPagination(partialKey, pageSize, bookmark));
+    }
+
+    public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(final String query, final int pageSize,
+                                                                                   final String bookmark) {
+        return counted(stub.getQueryResultWithPagination(query, pageSize, bookmark));
+    }
+
+    public QueryResultsIterator<KeyModification> getHistoryForKey(final String key) {
+        return counted(stub.getHistoryForKey(key));
+    }
+
+    private AccountCodec encoder() {
+        if (codec == null) {
+            codec = AccountCodec.named(getStringState(AccountKeys.accountCodec()));
+        }
+
+        return codec;
+    }
+
+    private byte[] getAccountValue(final String accountId) {
+        byte[] value = getState(AccountKeys.account(accountId));
+
+        // an ID inside the namespace would alias another account's key
+        if (value == null && !AccountKeys.isAccount(accountId)) {
+            value = getState(accountId);
+
+            if (value != null) {
+                legacyAccountIds.add(accountId);
+            }
+        }
+
+        return value;
+    }
+
+    private void write(final String key, final byte[] value) {
+        long start = stats == null ? 0L : System.nanoTime();
+        stub.putState(key, value);
+
+        if (stats != null) {
+            stats.recordWrite(value, System.nanoTime() - start);
+        }
+    }
+
+    private <T> QueryResultsIterator<T> counted(final QueryResultsIterator<T> results) {
+        return stats == null ? results : new CountingResults<>(results, stats);
+    }
+
+    private <T> QueryResultsIteratorWithMetadata<T> counted(final QueryResultsIteratorWithMetadata<T> results) {
+        return stats == null ? results : new CountingResults<>(results, stats);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Change of the per-type account count and balance aggregates made by one transaction.
+ *
+ * Layout: types:u8 | (count:i64, balance:i64) per AccountType ordinal | commission:i64.
+ * Values written before a new AccountType was appended decode with zeros for it.
+ * Collected commission is counted on the COMMISSION balance and also kept as its own line.
+ */
+final class StatsDelta {
+
+    private static final AccountType[] TYPES = AccountType.values();
+
+    private final long[] counts = new long[TYPES.length];
+    private final long[] balances = new long[TYPES.length];
+    private long commission;
+
+    void addAccount(final AccountType type, final long amount) {
+        counts[type.ordinal()]++;
+        balances[type.ordinal()] += amount;
+    }
+
+    void addBalance(final AccountType type, final long amount) {
+        balances[type.ordinal()] += amount;
+    }
+
+    void addCommission(final long amount) {
+        balances[AccountType.COMMISSION.ordinal()] += amount;
+        commission += amount;
+    }
+
+    void add(final StatsDelta other) {
+        for (int i = 0; i < TYPES.length; i++) {
+            counts[i] += other.counts[i];
+            balances[i] += other.balances[i];
+        }
+
+        commission += other.commission;
+    }
+
+    boolean isEmpty() {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (counts[i] != 0 || balances[i] != 0) {
+                return false;
+            }
+        }
+
+        return commission == 0;
+    }
+
+    byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + (TYPES.length * 2 + 1) * Long.BYTES);
+        buffer.put((byte) TYPES.length);
+
+        for (int i = 0; i < TYPES.length; i++) {
+            buffer.putLong(counts[i]);
+            buffer.putLong(balances[i]);
+        }
+
+        buffer.putLong(commission);
+
+        return buffer.array();
+    }
+
+    static StatsDelta decode(final byte[] value) {
+        StatsDelta delta = new StatsDelta();
+
+        if (value == null || value.length == 0) {
+            return delta;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(value);
+        int types = buffer.get() & 0xFF;
+
+        for (int i = 0; i < types; i++) {
+            long count = buffer.getLong();
+            long balance = buffer.getLong();
+
+            if (i < TYPES.length) {
+                delta.counts[i] = count;
+                delta.balances[i] = balance;
+            }
+        }
+
+        delta.commission = buffer.getLong();
+
+        return delta;
+    }
+
+    /**
+     * Builds the aggregate base that, together with the pending deltas, adds up to the counts and balances scanned
+     * from the accounts. The collected commission is not recorded on any account, so it is kept from the old base.
+     *
+     * @param scanned the counts and balances of all accounts
+     * @param pending the sum of the pending deltas
+     * @param oldBase the aggregate base being replaced
+     * @return the new aggregate base
+     */
+    static StatsDelta rebase(final StatsDelta scanned, final StatsDelta pending, final StatsDelta oldBase) {
+        StatsDelta base = new StatsDelta();
+
+        for (int i = 0; i < TYPES.length; i++) {
+            base.counts[i] = scanned.counts[i] - pending.counts[i];
+            base.balances[i] = scanned.balances[i] - pending.balances[i];
+        }
+
+        base.commission = oldBase.commission;
+
+        return base;
+    }
+
+    LedgerStats toLedgerStats() {
+        TypeStats[] types = new TypeStats[TYPES.length];
+        long totalSupply = 0;
+
+        for (int i = 0; i < TYPES.length; i++) {
+            types[i] = new TypeStats(TYPES[i], counts[i], balances[i]);
+            totalSupply += balances[i];
+        }
+
+        return new LedgerStats(types, commission, totalSupply);
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Per-transaction instrumentation driven by AssetTransfer.beforeTransaction and afterTransaction.
+ *
+ * It is enabled when this class logs at FINE (CORE_CHAINCODE_LOGGING_LEVEL=DEBUG), which writes one key=value line per
+ * transaction, or when AssetTransferServer turns on the /metrics endpoint, which aggregates per transaction name.
+ * While disabled, transactions create no TransactionStats and StateCache skips all timing.
+ *
+ * The shim does not call afterTransaction for a transaction that throws. Contract errors are reported through
+ * {@link #fail(String)}. Any other exception is noticed when the next transaction starts on the same thread, and
+ * that transaction is counted with outcome ERROR and no timings.
+ */
+final class TransactionMetrics {
+
+    static final String OK = "OK";
+    static final String ERROR = "ERROR";
+
+    private static final Logger LOGGER = Logger.getLogger(TransactionMetrics.class.getName());
+
+    private static final ThreadLocal<TransactionStats> CURRENT = new ThreadLocal<>();
+    private static final ConcurrentMap<String, Aggregate> AGGREGATES = new ConcurrentHashMap<>();
+
+    private static volatile boolean exportEnabled;
+
+    private TransactionMetrics() {
+    }
+
+    static void enableExport() {
+        exportEnabled = true;
+    }
+
+    static boolean isEnabled() {
+        return exportEnabled || LOGGER.isLoggable(Level.FINE);
+    }
+
+    /**
+     * @param function the function name from the stub, with or without the contract name prefix
+     * @param txId the transaction ID
+     * @return the stats to hand to the transaction's StateCache
+     */
+    static TransactionStats begin(final String function, final String txId) {
+        TransactionStats unfinished = CURRENT.get();
+
+        if (unfinished != null) {
+            record(unfinished, ERROR, -1L, 0);
+        }
+
+        String name = function == null ? "unknown" : function.substring(function.indexOf(':') + 1);
+        TransactionStats stats = new TransactionStats(name, txId);
+        CURRENT.set(stats);
+
+        return stats;
+    }
+
+    static void end(final TransactionStats stats, final Object result) {
+        CURRENT.remove();
+
+        int responseBytes = 0;
+
+        if (result instanceof String) {
+            responseBytes = ((String) result).length();
+        } else if (result instanceof byte[]) {
+            responseBytes = ((byte[]) result).length;
+        }
+
+        record(stats, OK, System.nanoTime() - stats.getStartNanos(), responseBytes);
+    }
+
+    /**
+     * Ends the current transaction of this thread, if instrumented, with the given error code as outcome.
+     *
+     * @param errorCode the error code sent back to the client
+     */
+    static void fail(final String errorCode) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        TransactionStats stats = CURRENT.get();
+
+        if (stats != null) {
+            CURRENT.remove();
+            record(stats, errorCode, System.nanoTime() - stats.getStartNanos(), 0);
+        }
+    }
+
+    private static void record(final TransactionStats stats, final String outcome, final long elapsedNanos, final int responseBytes) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(String.format("tx=%s txId=%s outcome=%s elapsedUs=%d readUs=%d writeUs=%d scanUs=%d codecUs=%d"
+                    + " keysRead=%d keysWritten=%d rangeRows=%d bytesRead=%d bytesWritten=%d responseBytes=%d",
+                    stats.getName(), stats.getTxId(), outcome, elapsedNanos / 1000, stats.getReadNanos() / 1000,
+                    stats.getWriteNanos() / 1000, stats.getScanNanos() / 1000, stats.getCodecNanos() / 1000,
+                    stats.getKeysRead(), stats.getKeysWritten(), stats.getRangeRows(), stats.getBytesRead(),
+                    stats.getBytesWritten(), responseBytes));
+        }
+
+        if (exportEnabled) {
+            AGGREGATES.computeIfAbsent(stats.getName(), name -> new Aggregate()).add(stats, outcome, elapsedNanos, responseBytes);
+        }
+    }
+
+    /**
+     * @return the aggregated metrics in the Prometheus text exposition format
+     */
+    static String render() {
+        Map<String, Aggregate> aggregates = new TreeMap<>(AGGREGATES);
+        StringBuilder out = new StringBuilder();
+
+        out.append("# TYPE chaincode_tx_total counter\n");
+        aggregates.forEach((name, aggregate) -> new TreeMap<>(aggregate.outcomes).forEach((outcome, count) ->
+                out.append("chaincode_tx_total{tx=\"").append(name).append("\",outcome=\"").append(outcome).append("\"} ")
+                        .append(count.sum()).append('\n')));
+
+        out.append("# TYPE chaincode_tx_seconds summary\n");
+        aggregates.forEach((name, aggregate) -> {
+            out.append("chaincode_tx_seconds_sum{tx=\"").append(name).append("\"} ").append(aggregate.elapsedNanos.sum() / 1e9).append('\n');
+            out.append("chaincode_tx_seconds_count{tx=\"").append(name).append("\"} ").append(aggregate.timed.sum()).append('\n');
+        });
+
+        out.append("# TYPE chaincode_tx_phase_seconds_total counter\n");
+        aggregates.forEach((name, aggregate) -> {
+            appendPhase(out, name, "read", aggregate.readNanos);
+            appendPhase(out, name, "write", aggregate.writeNanos);
+            appendPhase(out, name, "scan", aggregate.scanNanos);
+            appendPhase(out, name, "codec", aggregate.codecNanos);
+        });
+
+        appendCounter(out, aggregates, "chaincode_tx_keys_read_total", aggregate -> aggregate.keysRead);
+        appendCounter(out, aggregates, "chaincode_tx_keys_written_total", aggregate -> aggregate.keysWritten);
+        appendCounter(out, aggregates, "chaincode_tx_range_rows_total", aggregate -> aggregate.rangeRows);
+        appendCounter(out, aggregates, "chaincode_tx_bytes_read_total", aggregate -> aggregate.bytesRead);
+        appendCounter(out, aggregates, "chaincode_tx_bytes_written_total", aggregate -> aggregate.bytesWritten);
+        appendCounter(out, aggregates, "chaincode_tx_response_bytes_total", aggregate -> aggregate.responseBytes);
+
+        return out.toString();
+    }
+
+    private static void appendPhase(final StringBuilder out, final String name, final String phase, final LongAdder nanos) {
+        out.append("chaincode_tx_phase_seconds_total{tx=\"").append(name).append("\",phase=\"").append(phase).append("\"} ")
+                .append(nanos.sum() / 1e9).append('\n');
+    }
+
+    private static void appendCounter(final StringBuilder out, final Map<String, Aggregate> aggregates, final String metric,
+                                      final Function<Aggregate, LongAdder> counter) {
+        out.append("# TYPE ").append(metric).append(" counter\n");
+        aggregates.forEach((name, aggregate) -> out.append(metric).append("{tx=\"").append(name).append("\"} ")
+                .append(counter.apply(aggregate).sum()).append('\n'));
+    }
+
+    /**
+     * Turns export off and forgets everything recorded so far, for tests.
+     */
+    static void reset() {
+        exportEnabled = false;
+        AGGREGATES.clear();
+        CURRENT.remove();
+    }
+
+    private static final class Aggregate {
+
+        private final ConcurrentMap<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        private final LongAdder timed = new LongAdder();
+        private final LongAdder elapsedNanos = new LongAdder();
+        private final LongAdder readNanos = new LongAdder();
+        private final LongAdder writeNanos = new LongAdder();
+        private final LongAdder scanNanos = new LongAdder();
+        private final LongAdder codecNanos = new LongAdder();
+        private final LongAdder keysRead = new LongAdder();
+        private final LongAdder keysWritten = new LongAdder();
+        private final LongAdder rangeRows = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+
+        void add(final TransactionStats stats, final String outcome, final long elapsed, final int response) {
+            outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+
+            if (elapsed >= 0) {
+                timed.increment();
+                elapsedNanos.add(elapsed);
+                readNanos.add(stats.getReadNanos());
+                writeNanos.add(stats.getWriteNanos());
+                scanNanos.add(stats.getScanNanos());
+                codecNanos.add(stats.getCodecNanos());
+            }
+
+            keysRead.add(stats.getKeysRead());
+            keysWritten.add(stats.getKeysWritten());
+            rangeRows.add(stats.getRangeRows());
+            bytesRead.add(stats.getBytesRead());
+            bytesWritten.add(stats.getBytesWritten());
+            responseBytes.add(response);
+        }
+    }
+}
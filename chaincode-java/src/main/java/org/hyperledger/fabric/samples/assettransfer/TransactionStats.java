@@ -0,0 +1,106 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+/**
+ * Counters of one transaction, filled in by StateCache while TransactionMetrics is enabled.
+ *
+ * Times are in nanoseconds. Reads count only the keys that reached the peer, not the ones served from the cache.
+ */
+final class TransactionStats {
+
+    private final String name;
+    private final String txId;
+    private final long startNanos;
+
+    private int keysRead;
+    private int keysWritten;
+    private int rangeRows;
+    private long bytesRead;
+    private long bytesWritten;
+    private long readNanos;
+    private long writeNanos;
+    private long scanNanos;
+    private long codecNanos;
+
+    TransactionStats(final String name, final String txId) {
+        this.name = name;
+        this.txId = txId;
+        this.startNanos = System.nanoTime();
+    }
+
+    void recordRead(final byte[] value, final long nanos) {
+        keysRead++;
+        bytesRead += value == null ? 0 : value.length;
+        readNanos += nanos;
+    }
+
+    void recordWrite(final byte[] value, final long nanos) {
+        keysWritten++;
+        bytesWritten += value == null ? 0 : value.length;
+        writeNanos += nanos;
+    }
+
+    void recordRangeRow(final byte[] value) {
+        rangeRows++;
+        bytesRead += value == null ? 0 : value.length;
+    }
+
+    void recordScan(final long nanos) {
+        scanNanos += nanos;
+    }
+
+    void recordCodec(final long nanos) {
+        codecNanos += nanos;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getTxId() {
+        return txId;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    int getKeysRead() {
+        return keysRead;
+    }
+
+    int getKeysWritten() {
+        return keysWritten;
+    }
+
+    int getRangeRows() {
+        return rangeRows;
+    }
+
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    long getReadNanos() {
+        return readNanos;
+    }
+
+    long getWriteNanos() {
+        return writeNanos;
+    }
+
+    long getScanNanos() {
+        return scanNanos;
+    }
+
+    long getCodecNanos() {
+        return codecNanos;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.Objects;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+
+@DataType()
+public final class TransferEntry {
+
+    @Property()
+    private final String sender;
+
+    @Property()
+    private final String receiver;
+
+    @Property()
+    private final Long amount;
+
+    public String getSender() {
+        return sender;
+    }
+
+    public String getReceiver() {
+        return receiver;
+    }
+
+    public Long getAmount() {
+        return amount;
+    }
+
+    public TransferEntry(@JsonProperty("sender") final String sender, @JsonProperty("receiver") final String receiver, @JsonProperty("amount") final Long amount
+    ) {
+        this.sender = sender;
+        this.receiver = receiver;
+        this.amount = amount;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        TransferEntry other = (TransferEntry) obj;
+
+        return Objects.equals(getSender(), other.getSender())
+                && Objects.equals(getReceiver(), other.getReceiver())
+                && Objects.equals(getAmount(), other.getAmount());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getSender(), getReceiver(), getAmount());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " [sender=" + sender + ", receiver="
+                + receiver + ", amount=" + amount + "]";
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.Objects;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+
+@DataType()
+public final class TransferResult {
+
+    @Property()
+    private final int index;
+
+    @Property()
+    private final String sender;
+
+    @Property()
+    private final String receiver;
+
+    @Property()
+    private final long amount;
+
+    @Property()
+    private final long commission;
+
+    @Property()
+    private final long senderAmount;
+
+    @Property()
+    private final long receiverAmount;
+
+    @Property()
+    private final String message;
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public String getReceiver() {
+        return receiver;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public long getCommission() {
+        return commission;
+    }
+
+    public long getSenderAmount() {
+        return senderAmount;
+    }
+
+    public long getReceiverAmount() {
+        return receiverAmount;
+    }
+
+    /**
+     * @return the same text TransferAccount returns for this transfer
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    public TransferResult(@JsonProperty("index") final int index, @JsonProperty("sender") final String sender, @JsonProperty("receiver") final String receiver,
+                          @JsonProperty("amount") final long amount, @JsonProperty("commission") final long commission,
+                          @JsonProperty("senderAmount") final long senderAmount, @JsonProperty("receiverAmount") final long receiverAmount,
+                          @JsonProperty("message") final String message
+    ) {
+        this.index = index;
+        this.sender = sender;
+        this.receiver = receiver;
+        this.amount = amount;
+        this.commission = commission;
+        this.senderAmount = senderAmount;
+        this.receiverAmount = receiverAmount;
+        this.message = message;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        TransferResult other = (TransferResult) obj;
+
+        return getIndex() == other.getIndex()
+                && Objects.equals(getSender(), other.getSender())
+                && Objects.equals(getReceiver(), other.getReceiver())
+                && getAmount() == other.getAmount()
+                && getCommission() == other.getCommission()
+                && getSenderAmount() == other.getSenderAmount()
+                && getReceiverAmount() == other.getReceiverAmount()
+                && Objects.equals(getMessage(), other.getMessage());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getIndex(), getSender(), getReceiver(), getAmount(), getCommission(), getSenderAmount(), getReceiverAmount(), getMessage());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " [index=" + index + ", sender=" + sender + ", receiver=" + receiver
+                + ", amount=" + amount + ", commission=" + commission + ", senderAmount=" + senderAmount
+                + ", receiverAmount=" + receiverAmount + ", message=" + message + "]";
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.Objects;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+
+@DataType()
+public final class TypeStats {
+
+    @Property()
+    private final AccountType type;
+
+    @Property()
+    private final long count;
+
+    @Property()
+    private final long balance;
+
+    public AccountType getType() {
+        return type;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getBalance() {
+        return balance;
+    }
+
+    public TypeStats(@JsonProperty("type") final AccountType type, @JsonProperty("count") final long count, @JsonProperty("balance") final long balance
+    ) {
+        this.type = type;
+        this.count = count;
+        this.balance = balance;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        TypeStats other = (TypeStats) obj;
+
+        return getType() == other.getType() && getCount() == other.getCount() && getBalance() == other.getBalance();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getType(), getCount(), getBalance());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " [type=" + type + ", count=" + count + ", balance=" + balance + "]";
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public final class AccountCodecTest {
+
+    private final AccountCodec codec = new BinaryAccountCodec();
+
+    @Nested
+    class Binary {
+
+        @Test
+        public void roundTrips() {
+            Account account = new Account("asset1", "Blue", 800_000_000_000L, AccountType.COMPANY);
+
+            assertThat(codec.decode(codec.encode(account))).isEqualTo(account);
+        }
+
+        @Test
+        public void roundTripsNullAndMultiByteOwner() {
+            Account nullOwner = new Account("asset1", null, 0L, AccountType.COMMISSION);
+            Account koreanOwner = new Account("asset2", "크리에이티브힐", -5L, AccountType.USER);
+
+            assertThat(codec.decode(codec.encode(nullOwner))).isEqualTo(nullOwner);
+            assertThat(codec.decode(codec.encode(koreanOwner))).isEqualTo(koreanOwner);
+        }
+
+        @Test
+        public void startsWithVersionHeader() {
+            byte[] value = codec.encode(new Account("asset1", "Blue", 100L, AccountType.USER));
+
+            assertThat(value[0]).isEqualTo(BinaryAccountCodec.VERSION_1);
+        }
+
+        @Test
+        public void isSmallerThanJson() {
+            Account account = new Account("1690000000000", "creativehill", 2000L, AccountType.USER);
+
+            assertThat(codec.encode(account).length).isLessThan(new JsonAccountCodec().encode(account).length);
+        }
+
+        @Test
+        public void rejectsUnknownType() {
+            byte[] value = codec.encode(new Account("asset1", "Blue", 100L, AccountType.USER));
+            value[1] = (byte) 0x7F;
+
+            Throwable thrown = catchThrowable(() -> {
+                codec.decode(value);
+            });
+
+            assertThat(thrown).isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Unknown account type ordinal 127");
+        }
+    }
+
+    @Nested
+    class Legacy {
+
+        @Test
+        public void decodesGensonJson() {
+            byte[] value = "{ \"accountId\": \"asset1\", \"owner\": \"blue\", \"amount\": 5, \"type\": \"USER\" }"
+                    .getBytes(StandardCharsets.UTF_8);
+
+            assertThat(codec.decode(value)).isEqualTo(new Account("asset1", "blue", 5L, AccountType.USER));
+        }
+
+        @Test
+        public void decodesJsonCodecOutput() {
+            Account account = new Account("asset1", "Blue", 100L, AccountType.USER);
+
+            assertThat(codec.decode(new JsonAccountCodec().encode(account))).isEqualTo(account);
+        }
+    }
+}
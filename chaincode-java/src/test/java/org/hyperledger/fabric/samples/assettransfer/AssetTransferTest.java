@@ -6,31 +6,57 @@ package org.hyperledger.fabric.samples.assettransfer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
 import com.owlike.genson.Genson;
 import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.protos.peer.ChaincodeShim.QueryResponseMetadata;
 import org.hyperledger.fabric.shim.ChaincodeException;
 import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
 import org.hyperledger.fabric.shim.ledger.KeyValue;
 import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
 public final class AssetTransferTest {
 
+    private static final AccountCodec CODEC = new BinaryAccountCodec();
+
+    private static final String COMMISSION_INDEX_KEY = new CompositeKey("commission").toString();
+
+    private static final Instant TX_TIMESTAMP = Instant.parse("2023-01-01T00:00:00Z");
+
+    // Two minutes after TX_TIMESTAMP, so a sweep at this time folds the deltas written at TX_TIMESTAMP.
+    private static final Instant SWEEP_TIMESTAMP = TX_TIMESTAMP.plusSeconds(120);
+
     private final class MockKeyValue implements KeyValue {
 
         private final String key;
-        private final String value;
+        private final byte[] value;
 
         MockKeyValue(final String key, final String value) {
+            this(key, value.getBytes());
+        }
+
+        MockKeyValue(final String key, final byte[] value) {
             super();
             this.key = key;
             this.value = value;
@@ -43,16 +69,119 @@ public final class AssetTransferTest {
 
         @Override
         public String getStringValue() {
-            return this.value;
+            return new String(this.value);
         }
 
         @Override
         public byte[] getValue() {
-            return this.value.getBytes();
+            return this.value;
+        }
+
+    }
+
+    private final class MockCommissionDeltaIterator implements QueryResultsIterator<KeyValue> {
+
+        private final List<KeyValue> deltaList = new ArrayList<KeyValue>();
+
+        MockCommissionDeltaIterator(final long... commissions) {
+            super();
+
+            for (int i = 0; i < commissions.length; i++) {
+                deltaList.add(new MockKeyValue(commissionDeltaKey("tx" + i), ByteBuffer.allocate(Long.BYTES).putLong(commissions[i]).array()));
+            }
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            return deltaList.iterator();
+        }
+
+        @Override
+        public void close() throws Exception {
+            // do nothing
+        }
+
+    }
+
+    private final class MockIndexResultsIterator implements QueryResultsIteratorWithMetadata<KeyValue> {
+
+        private final List<KeyValue> indexList = new ArrayList<KeyValue>();
+
+        MockIndexResultsIterator(final String objectType, final String value, final String... accountIds) {
+            super();
+
+            for (String accountId : accountIds) {
+                indexList.add(new MockKeyValue(new CompositeKey(objectType, value, accountId).toString(), new byte[] {0}));
+            }
+        }
+
+        @Override
+        public QueryResponseMetadata getMetadata() {
+            return QueryResponseMetadata.newBuilder().setBookmark("").setFetchedRecordsCount(indexList.size()).build();
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            return indexList.iterator();
+        }
+
+        @Override
+        public void close() throws Exception {
+            // do nothing
+        }
+
+    }
+
+    private final class MockKeyValueIterator implements QueryResultsIterator<KeyValue> {
+
+        private final List<KeyValue> keyValueList;
+
+        MockKeyValueIterator(final KeyValue... keyValues) {
+            super();
+
+            keyValueList = Arrays.asList(keyValues);
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            return keyValueList.iterator();
+        }
+
+        @Override
+        public void close() throws Exception {
+            // do nothing
         }
 
     }
 
+    private static String accountKey(final String accountId) {
+        return "account:" + accountId;
+    }
+
+    private static String statsDeltaKey(final String txId) {
+        return new CompositeKey("stats~bucket~txId", String.format("%012d", TX_TIMESTAMP.getEpochSecond()), txId).toString();
+    }
+
+    private static String commissionDeltaKey(final String txId) {
+        return commissionDeltaKey(TX_TIMESTAMP, txId);
+    }
+
+    private static String commissionDeltaKey(final Instant txTimestamp, final String txId) {
+        return new CompositeKey("commission~bucket~txId", String.format("%012d", txTimestamp.getEpochSecond()), txId).toString();
+    }
+
+    private static String shardCountKey(final String accountId) {
+        return new CompositeKey("shard~count", accountId).toString();
+    }
+
+    private static String shardKey(final String accountId, final int shard) {
+        return new CompositeKey("shard~balance", accountId, String.valueOf(shard)).toString();
+    }
+
+    private static byte[] amountOf(final long amount) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(amount).array();
+    }
+
     private final class MockAssetResultsIterator implements QueryResultsIterator<KeyValue> {
 
         private final List<KeyValue> assetList;
@@ -68,9 +197,9 @@ public final class AssetTransferTest {
             Account receivingUserAccount = new Account("asset2", "B", 0L, AccountType.USER);
             Account commissionAccount = new Account("asset3", "creativehill", 0L, AccountType.COMMISSION);
 
-            assetList.add(new MockKeyValue("asset1", genson.serialize(sendUserAccount)));
-            assetList.add(new MockKeyValue("asset2", genson.serialize(receivingUserAccount)));
-            assetList.add(new MockKeyValue("asset3", genson.serialize(commissionAccount)));
+            assetList.add(new MockKeyValue(accountKey("asset1"), genson.serialize(sendUserAccount)));
+            assetList.add(new MockKeyValue(accountKey("asset2"), genson.serialize(receivingUserAccount)));
+            assetList.add(new MockKeyValue(accountKey("asset3"), genson.serialize(commissionAccount)));
 
         }
 
@@ -86,6 +215,27 @@ public final class AssetTransferTest {
 
     }
 
+    private final class MockAssetResultsIteratorWithMetadata implements QueryResultsIteratorWithMetadata<KeyValue> {
+
+        private final MockAssetResultsIterator delegate = new MockAssetResultsIterator();
+
+        @Override
+        public QueryResponseMetadata getMetadata() {
+            return QueryResponseMetadata.newBuilder().setBookmark("asset3").setFetchedRecordsCount(3).build();
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            return delegate.iterator();
+        }
+
+        @Override
+        public void close() throws Exception {
+            // do nothing
+        }
+
+    }
+
     @Test
     public void invokeUnknownTransaction() {
         AssetTransfer contract = new AssetTransfer();
@@ -116,8 +266,8 @@ public final class AssetTransferTest {
             Account expectingAccount = new Account("asset1", "blue", 5L, AccountType.USER);
 
             when(ctx.getStub()).thenReturn(stub);
-            when(stub.getStringState("asset1"))
-                    .thenReturn("{ \"accountId\": \"asset1\", \"owner\": \"blue\", \"amount\": 5, \"type\": \"USER\" }");
+            when(stub.getState(accountKey("asset1")))
+                    .thenReturn("{ \"accountId\": \"asset1\", \"owner\": \"blue\", \"amount\": 5, \"type\": \"USER\" }".getBytes());
 
             Account account = contract.ReadAsset(ctx, "asset1");
 
@@ -130,7 +280,7 @@ public final class AssetTransferTest {
             Context ctx = mock(Context.class);
             ChaincodeStub stub = mock(ChaincodeStub.class);
             when(ctx.getStub()).thenReturn(stub);
-            when(stub.getStringState("asset1")).thenReturn("");
+            when(stub.getState(accountKey("asset1"))).thenReturn(new byte[0]);
 
             Throwable thrown = catchThrowable(() -> {
                 contract.ReadAsset(ctx, "asset1");
@@ -151,8 +301,8 @@ public final class AssetTransferTest {
             Context ctx = mock(Context.class);
             ChaincodeStub stub = mock(ChaincodeStub.class);
             when(ctx.getStub()).thenReturn(stub);
-            when(stub.getStringState("asset1"))
-                    .thenReturn("{ \"accountId\": \"asset1\", \"owner\": \"blue\", \"amount\": 5, \"type\": \"USER\" }");
+            when(stub.getState(accountKey("asset1")))
+                    .thenReturn("{ \"accountId\": \"asset1\", \"owner\": \"blue\", \"amount\": 5, \"type\": \"USER\" }".getBytes());
 
             Throwable thrown = catchThrowable(() -> {
                 contract.CreateAsset(ctx, "asset1", "blue", "45", AccountType.USER.name());
@@ -169,120 +319,1116 @@ public final class AssetTransferTest {
             Context ctx = mock(Context.class);
             ChaincodeStub stub = mock(ChaincodeStub.class);
             when(ctx.getStub()).thenReturn(stub);
-            when(stub.getStringState("asset1")).thenReturn("");
+            when(stub.getTxId()).thenReturn("tx1");
+            when(stub.getTxTimestamp()).thenReturn(TX_TIMESTAMP);
+            when(stub.getState(accountKey("asset1"))).thenReturn(new byte[0]);
 
             Account account = contract.CreateAsset(ctx, "asset1", "blue", "45", AccountType.USER.name());
 
             assertThat(account).isEqualTo(new Account("asset1", "blue", 45L, AccountType.USER));
+            verify(stub).putState(new CompositeKey("owner~accountId", "blue", "asset1").toString(), new byte[] {0});
+            verify(stub).putState(new CompositeKey("type~accountId", "USER", "asset1").toString(), new byte[] {0});
+        }
+
+        @Test
+        public void whenCommissionAssetIsIndexed() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getTxId()).thenReturn("tx1");
+            when(stub.getTxTimestamp()).thenReturn(TX_TIMESTAMP);
+            when(stub.getState(accountKey("asset3"))).thenReturn(new byte[0]);
+
+            contract.CreateAsset(ctx, "asset3", "creativehill", "0", AccountType.COMMISSION.name());
+
+            verify(stub).putStringState(COMMISSION_INDEX_KEY, "asset3");
+        }
+
+        @Test
+        public void whenCommissionAssetAlreadyExists() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getState(accountKey("asset4"))).thenReturn(new byte[0]);
+            when(stub.getStringState(COMMISSION_INDEX_KEY)).thenReturn("asset3");
+
+            Throwable thrown = catchThrowable(() -> {
+                contract.CreateAsset(ctx, "asset4", "creativehill", "0", AccountType.COMMISSION.name());
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasNoCause()
+                    .hasMessage("CommissionAccount asset3 already exists");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("COMMISSION_ALREADY_EXISTS".getBytes());
         }
     }
 
     @Nested
-    class QueryTransaction {
+    class InvokeCreateAssetsBatchTransaction {
 
         private final Genson genson = new Genson();
 
         @Test
-        public void whenAccountGetAll() {
+        public void whenSomeAssetsExist() {
             AssetTransfer contract = new AssetTransfer();
             Context ctx = mock(Context.class);
             ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getTxId()).thenReturn("tx1");
+            when(stub.getTxTimestamp()).thenReturn(TX_TIMESTAMP);
+            when(stub.getState(accountKey("asset1"))).thenReturn(CODEC.encode(new Account("asset1", "A", 5L, AccountType.USER)));
+            when(stub.getState(accountKey("asset2"))).thenReturn(new byte[0]);
+            when(stub.getState(accountKey("asset3"))).thenReturn(new byte[0]);
+
+            String result = contract.CreateAssetsBatch(ctx, "[{\"accountId\": \"asset1\", \"owner\": \"A\", \"amount\": 10, \"type\": \"USER\"},"
+                    + " {\"accountId\": \"asset2\", \"owner\": \"B\", \"amount\": 20, \"type\": \"USER\"},"
+                    + " {\"accountId\": \"asset3\", \"owner\": \"creativehill\", \"amount\": 0, \"type\": \"COMMISSION\"}]");
+
+            assertThat(genson.deserialize(result, CreateResult[].class)).containsExactly(
+                    new CreateResult(0, "asset1", CreateResult.EXISTS),
+                    new CreateResult(1, "asset2", CreateResult.CREATED),
+                    new CreateResult(2, "asset3", CreateResult.CREATED));
+
+            verify(stub, never()).putState(eq(accountKey("asset1")), any());
+            verify(stub).putState(accountKey("asset2"), CODEC.encode(new Account("asset2", "B", 20L, AccountType.USER)));
+            verify(stub).putState(new CompositeKey("owner~accountId", "B", "asset2").toString(), new byte[] {0});
+            verify(stub).putState(new CompositeKey("type~accountId", "COMMISSION", "asset3").toString(), new byte[] {0});
+            verify(stub).putStringState(COMMISSION_INDEX_KEY, "asset3");
+            verify(stub, times(1)).setEvent(anyString(), any());
+        }
 
-            Account sendUserAccount = new Account("asset1", "A", 2000L, AccountType.USER);
-            Account receivingUserAccount = new Account("asset2", "B", 0L, AccountType.USER);
-            Account commissionAccount = new Account("asset3", "creativehill", 0L, AccountType.COMMISSION);
+        @Test
+        public void whenBatchHasTwoCommissionAssets() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getState(anyString())).thenReturn(new byte[0]);
 
-            List<Account> accounts = new ArrayList<>();
-            accounts.add(sendUserAccount);
-            accounts.add(receivingUserAccount);
-            accounts.add(commissionAccount);
+            Throwable thrown = catchThrowable(() -> {
+                contract.CreateAssetsBatch(ctx, "[{\"accountId\": \"asset3\", \"owner\": \"C\", \"amount\": 0, \"type\": \"COMMISSION\"},"
+                        + " {\"accountId\": \"asset4\", \"owner\": \"C\", \"amount\": 0, \"type\": \"COMMISSION\"}]");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasNoCause()
+                    .hasMessage("Account 1: CommissionAccount asset3 already exists");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("COMMISSION_ALREADY_EXISTS".getBytes());
+            verify(stub, never()).putState(anyString(), any());
+            verify(stub, never()).putStringState(anyString(), anyString());
+        }
+
+        @Test
+        public void whenBatchRepeatsAnAccountId() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getState(anyString())).thenReturn(new byte[0]);
+
+            Throwable thrown = catchThrowable(() -> {
+                contract.CreateAssetsBatch(ctx, "[{\"accountId\": \"asset1\", \"owner\": \"A\", \"amount\": 0, \"type\": \"USER\"},"
+                        + " {\"accountId\": \"asset1\", \"owner\": \"B\", \"amount\": 0, \"type\": \"USER\"}]");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasNoCause();
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INVALID_ACCOUNT".getBytes());
+            verify(stub, never()).putState(anyString(), any());
+        }
+    }
+
+    @Nested
+    class InvokeSetAccountCodecTransaction {
+
+        @Test
+        public void whenCodecIsSet() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+
+            String name = contract.SetAccountCodec(ctx, "json");
+
+            assertThat(name).isEqualTo("json");
+            verify(stub).putStringState(new CompositeKey("accountCodec").toString(), "json");
+        }
+
+        @Test
+        public void whenCodecIsUnknown() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+
+            Throwable thrown = catchThrowable(() -> {
+                contract.SetAccountCodec(ctx, "xml");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasNoCause()
+                    .hasMessage("Account codec xml must be binary or json");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INVALID_CODEC".getBytes());
+            verify(stub, never()).putStringState(anyString(), anyString());
+        }
+    }
 
+    @Nested
+    class InvokeIndexCommissionAccountTransaction {
 
+        @Test
+        public void whenIndexIsMissing() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
             when(ctx.getStub()).thenReturn(stub);
             when(stub.getStateByRange("", "")).thenReturn(new MockAssetResultsIterator());
 
+            Account account = contract.IndexCommissionAccount(ctx);
 
-            String result = contract.GetAllAssets(ctx);
-            System.out.println(result);
+            assertThat(account).isEqualTo(new Account("asset3", "creativehill", 0L, AccountType.COMMISSION));
+            verify(stub).putStringState(COMMISSION_INDEX_KEY, "asset3");
+        }
 
-            assertThat(result).isEqualTo(genson.serialize(accounts));
+        @Test
+        public void whenAccountsPredateTheKeyNamespace() {
+            AssetTransfer contract = new AssetTransfer();
+            InMemoryLedger ledger = new InMemoryLedger();
+
+            InMemoryChaincodeStub legacy = ledger.newTransaction("legacy");
+            legacy.putState("asset1", CODEC.encode(new Account("asset1", "A", 100L, AccountType.USER)));
+            legacy.putState("asset3", CODEC.encode(new Account("asset3", "creativehill", 0L, AccountType.COMMISSION)));
+            legacy.putState("zeta", CODEC.encode(new Account("zeta", "A", 50L, AccountType.USER)));
+            ledger.commit(legacy);
+
+            InMemoryChaincodeStub commission = ledger.newTransaction("commission");
+            Account account = contract.IndexCommissionAccount(contract.createContext(commission));
+            ledger.commit(commission);
+            InMemoryChaincodeStub first = ledger.newTransaction("index1");
+            String next = contract.IndexAccounts(contract.createContext(first), "", "2");
+            ledger.commit(first);
+            InMemoryChaincodeStub second = ledger.newTransaction("index2");
+            String last = contract.IndexAccounts(contract.createContext(second), next, "2");
+            ledger.commit(second);
+
+            Context ctx = contract.createContext(ledger.newTransaction("query"));
+
+            assertThat(account.getAccountId()).isEqualTo("asset3");
+            assertThat(next).isEqualTo("zeta");
+            assertThat(last).isEmpty();
+            assertThat(contract.QueryAccountsByOwner(ctx, "A", "10", ""))
+                    .contains("\"accountId\":\"asset1\"", "\"accountId\":\"zeta\"");
         }
     }
 
     @Nested
-    class InvokeTransferAccountTransaction {
+    class InvokeMigrateAccountKeysTransaction {
 
         private final Genson genson = new Genson();
 
         @Test
-        public void whenTransferBetweenUsers() {
+        public void whenLegacyKeysAreMovedInChunks() {
+            AssetTransfer contract = new AssetTransfer();
+            InMemoryLedger ledger = new InMemoryLedger();
+
+            // bare account IDs on both sides of the account namespace
+            InMemoryChaincodeStub legacy = ledger.newTransaction("legacy");
+
+            for (String accountId : new String[] {"asset1", "asset2", "zeta"}) {
+                legacy.putState(accountId, CODEC.encode(new Account(accountId, "A", 100L, AccountType.USER)));
+            }
+
+            ledger.commit(legacy);
+
+            InMemoryChaincodeStub first = ledger.newTransaction("migrate1");
+            String next = contract.MigrateAccountKeys(contract.createContext(first), "", "2");
+            ledger.commit(first);
+            InMemoryChaincodeStub second = ledger.newTransaction("migrate2");
+            String last = contract.MigrateAccountKeys(contract.createContext(second), next, "2");
+            ledger.commit(second);
+
+            Context ctx = contract.createContext(ledger.newTransaction("query"));
+            AccountHistoryPage history = genson.deserialize(contract.GetAccountHistory(ctx, "asset1", "10", ""), AccountHistoryPage.class);
+
+            assertThat(next).isEqualTo("zeta");
+            assertThat(last).isEmpty();
+            assertThat(ledger.snapshot()).containsOnlyKeys(accountKey("asset1"), accountKey("asset2"), accountKey("zeta"));
+            assertThat(contract.GetAllAssets(ctx)).contains("\"accountId\":\"zeta\"");
+            assertThat(history.getRecords()).extracting(AccountHistoryEntry::getTxId).containsExactly("migrate1", "legacy");
+        }
+    }
+
+    @Nested
+    class QueryTransaction {
+
+        private final Genson genson = new Genson();
+
+        @Test
+        public void whenAccountGetAll() {
             AssetTransfer contract = new AssetTransfer();
             Context ctx = mock(Context.class);
             ChaincodeStub stub = mock(ChaincodeStub.class);
 
             Account sendUserAccount = new Account("asset1", "A", 2000L, AccountType.USER);
             Account receivingUserAccount = new Account("asset2", "B", 0L, AccountType.USER);
+            Account commissionAccount = new Account("asset3", "creativehill", 0L, AccountType.COMMISSION);
 
-            when(ctx.getStub()).thenReturn(stub);
-            when(stub.getStringState("asset1")).thenReturn(genson.serialize(sendUserAccount));
-            when(stub.getStringState("asset2")).thenReturn(genson.serialize(receivingUserAccount));
-            when(stub.getStateByRange("", "")).thenReturn(new MockAssetResultsIterator());
+            List<Account> accounts = new ArrayList<>();
+            accounts.add(sendUserAccount);
+            accounts.add(receivingUserAccount);
+            accounts.add(commissionAccount);
 
 
-            String result = contract.TransferAccount(ctx, "asset1", "asset2", "1000");
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getStateByRange("account:", "account;")).thenReturn(new MockAssetResultsIterator());
+            when(stub.getStateByPartialCompositeKey("commission~bucket~txId")).thenReturn(new MockCommissionDeltaIterator());
 
-            Account expectedSendUserAccount = new Account("asset1", "A", 999L, AccountType.USER);
-            Account expectedReceivingUserAccount = new Account("asset2", "B", 1000L, AccountType.USER);
-            Account expectedCommissionAccount = new Account("asset3", "creativehill", 1L, AccountType.COMMISSION);
 
-            assertThat(result).isEqualTo(expectedSendUserAccount + " -> " + expectedReceivingUserAccount + " => " + expectedCommissionAccount);
+            String result = contract.GetAllAssets(ctx);
+            System.out.println(result);
+
+            assertThat(result).isEqualTo(genson.serialize(accounts));
         }
 
         @Test
-        public void whenTransferNotBetweenUsers() {
+        public void whenAccountGetPage() {
             AssetTransfer contract = new AssetTransfer();
             Context ctx = mock(Context.class);
             ChaincodeStub stub = mock(ChaincodeStub.class);
 
-            Account sendUserAccount = new Account("asset1", "A", 2000L, AccountType.COMPANY);
-            Account receivingUserAccount = new Account("asset2", "B", 0L, AccountType.USER);
-
             when(ctx.getStub()).thenReturn(stub);
-            when(stub.getStringState("asset1")).thenReturn(genson.serialize(sendUserAccount));
-            when(stub.getStringState("asset2")).thenReturn(genson.serialize(receivingUserAccount));
-//            when(stub.getStateByRange("", "")).thenReturn(new MockAssetResultsIterator());
+            when(stub.getStateByRangeWithPagination("account:", "account;", 1000, "")).thenReturn(new MockAssetResultsIteratorWithMetadata());
+            when(stub.getStateByPartialCompositeKey("commission~bucket~txId")).thenReturn(new MockCommissionDeltaIterator());
 
+            AccountPage page = genson.deserialize(contract.GetAssetsPage(ctx, "5000", ""), AccountPage.class);
 
-            String result = contract.TransferAccount(ctx, "asset1", "asset2", "1000");
+            assertThat(page.getRecords()).containsExactly(
+                    new Account("asset1", "A", 2000L, AccountType.USER),
+                    new Account("asset2", "B", 0L, AccountType.USER),
+                    new Account("asset3", "creativehill", 0L, AccountType.COMMISSION));
+            assertThat(page.getBookmark()).isEqualTo("asset3");
+            assertThat(page.getFetchedCount()).isEqualTo(3);
+        }
 
-            Account expectedSendUserAccount = new Account("asset1", "A", 1000L, AccountType.COMPANY);
-            Account expectedReceivingUserAccount = new Account("asset2", "B", 1000L, AccountType.USER);
+        @Test
+        public void whenPageSizeIsNotPositive() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
 
-            assertThat(result).isEqualTo(expectedSendUserAccount + " -> " + expectedReceivingUserAccount);
+            Throwable thrown = catchThrowable(() -> {
+                contract.GetAssetsPage(ctx, "0", "");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasNoCause()
+                    .hasMessage("Page size 0 must be positive");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INVALID_PAGE_SIZE".getBytes());
         }
 
         @Test
-        public void whenTransferNotBetweenUsersAndBigAmount() {
+        public void whenAccountsReadTogether() {
             AssetTransfer contract = new AssetTransfer();
             Context ctx = mock(Context.class);
             ChaincodeStub stub = mock(ChaincodeStub.class);
 
-            Account sendUserAccount = new Account("asset1", "A", 800_000_000_000L, AccountType.COMPANY);
-            Account receivingUserAccount = new Account("asset2", "B", 100_000_000_000L, AccountType.USER);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getState(accountKey("asset1"))).thenReturn(CODEC.encode(new Account("asset1", "A", 2000L, AccountType.USER)));
+            when(stub.getState(accountKey("asset2"))).thenReturn(CODEC.encode(new Account("asset2", "B", 0L, AccountType.USER)));
+            when(stub.getState(accountKey("asset9"))).thenReturn(new byte[0]);
+
+            AccountsResult result = genson.deserialize(contract.GetAccounts(ctx, "[\"asset2\", \"asset9\", \"asset1\", \"asset2\"]"),
+                    AccountsResult.class);
+
+            assertThat(result.getAccounts()).containsExactly(
+                    new Account("asset2", "B", 0L, AccountType.USER),
+                    new Account("asset1", "A", 2000L, AccountType.USER));
+            assertThat(result.getMissing()).containsExactly("asset9");
+            verify(stub, times(1)).getState(accountKey("asset2"));
+        }
 
+        @Test
+        public void whenAccountIdListIsEmpty() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
             when(ctx.getStub()).thenReturn(stub);
-            when(stub.getStringState("asset1")).thenReturn(genson.serialize(sendUserAccount));
-            when(stub.getStringState("asset2")).thenReturn(genson.serialize(receivingUserAccount));
-//            when(stub.getStateByRange("", "")).thenReturn(new MockAssetResultsIterator());
 
+            Throwable thrown = catchThrowable(() -> {
+                contract.GetAccounts(ctx, "[]");
+            });
 
-            String result = contract.TransferAccount(ctx, "asset1", "asset2", "1");
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasNoCause()
+                    .hasMessage("Account ID list must contain between 1 and 1000 IDs");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INVALID_ACCOUNT".getBytes());
+        }
 
-            Account expectedSendUserAccount = new Account("asset1", "A", 799_999_999_999L, AccountType.COMPANY);
-            Account expectedReceivingUserAccount = new Account("asset2", "B", 100_000_000_001L, AccountType.USER);
+        @Test
+        public void whenAccountHistoryIsPaged() {
+            AssetTransfer contract = new AssetTransfer();
+            InMemoryLedger ledger = new InMemoryLedger();
+
+            InMemoryChaincodeStub create = ledger.newTransaction("create");
+            contract.CreateAssetsBatch(contract.createContext(create), "[{\"accountId\": \"asset1\", \"owner\": \"A\", \"amount\": 2000, \"type\": \"USER\"},"
+                    + " {\"accountId\": \"asset2\", \"owner\": \"B\", \"amount\": 0, \"type\": \"USER\"},"
+                    + " {\"accountId\": \"asset3\", \"owner\": \"creativehill\", \"amount\": 0, \"type\": \"COMMISSION\"}]");
+            ledger.commit(create);
+
+            for (int i = 1; i <= 4; i++) {
+                InMemoryChaincodeStub transfer = ledger.newTransaction("transfer" + i);
+                contract.TransferAccount(contract.createContext(transfer), "asset1", "asset2", "100");
+                ledger.commit(transfer);
+            }
+
+            Context ctx = contract.createContext(ledger.newTransaction("query"));
+            AccountHistoryPage first = genson.deserialize(contract.GetAccountHistory(ctx, "asset1", "2", ""), AccountHistoryPage.class);
+            AccountHistoryPage second = genson.deserialize(contract.GetAccountHistory(ctx, "asset1", "2", first.getBookmark()),
+                    AccountHistoryPage.class);
+            AccountHistoryPage last = genson.deserialize(contract.GetAccountHistory(ctx, "asset1", "2", second.getBookmark()),
+                    AccountHistoryPage.class);
+
+            assertThat(first.getRecords()).extracting(AccountHistoryEntry::getTxId).containsExactly("transfer4", "transfer3");
+            assertThat(first.getRecords()[0].getAccount()).isEqualTo(new Account("asset1", "A", 1600L, AccountType.USER));
+            assertThat(first.getRecords()[0].isDeleted()).isFalse();
+            assertThat(first.getBookmark()).isEqualTo("transfer3");
+            assertThat(second.getRecords()).extracting(AccountHistoryEntry::getTxId).containsExactly("transfer2", "transfer1");
+            assertThat(last.getRecords()).extracting(AccountHistoryEntry::getTxId).containsExactly("create");
+            assertThat(last.getRecords()[0].getAccount().getAmount()).isEqualTo(2000L);
+            assertThat(last.getBookmark()).isEmpty();
+        }
 
-            assertThat(result).isEqualTo(expectedSendUserAccount + " -> " + expectedReceivingUserAccount);
+        @Test
+        public void whenAccountsQueriedByBalance() {
+            AssetTransfer contract = new AssetTransfer();
+            InMemoryLedger ledger = new InMemoryLedger();
+
+            InMemoryChaincodeStub setCodec = ledger.newTransaction("setCodec");
+            contract.SetAccountCodec(contract.createContext(setCodec), "json");
+            ledger.commit(setCodec);
+
+            InMemoryChaincodeStub create = ledger.newTransaction("create");
+            contract.CreateAssetsBatch(contract.createContext(create), "[{\"accountId\": \"asset1\", \"owner\": \"A\", \"amount\": 2000, \"type\": \"USER\"},"
+                    + " {\"accountId\": \"asset2\", \"owner\": \"B\", \"amount\": 50, \"type\": \"USER\"},"
+                    + " {\"accountId\": \"asset3\", \"owner\": \"C\", \"amount\": 700, \"type\": \"USER\"},"
+                    + " {\"accountId\": \"asset4\", \"owner\": \"creativehill\", \"amount\": 5000, \"type\": \"COMPANY\"}]");
+            ledger.commit(create);
+
+            // written in binary, so CouchDB would keep it as an attachment that no selector matches
+            AssetTransfer binaryContract = new AssetTransfer(CODEC);
+            InMemoryChaincodeStub binary = ledger.newTransaction("binary");
+            binaryContract.CreateAsset(binaryContract.createContext(binary), "asset5", "D", "900", "USER");
+            ledger.commit(binary);
+
+            Context ctx = contract.createContext(ledger.newTransaction("query"));
+            AccountPage first = genson.deserialize(contract.QueryAccounts(ctx, "100", "", "USER", "desc", "1", ""), AccountPage.class);
+            AccountPage second = genson.deserialize(contract.QueryAccounts(ctx, "100", "", "USER", "desc", "1", first.getBookmark()),
+                    AccountPage.class);
+            AccountPage all = genson.deserialize(contract.QueryAccounts(ctx, "600", "5000", "", "asc", "10", ""), AccountPage.class);
+
+            assertThat(first.getRecords()).containsExactly(new Account("asset1", "A", 2000L, AccountType.USER));
+            assertThat(second.getRecords()).extracting(Account::getAccountId).containsExactly("asset3");
+            assertThat(second.getBookmark()).isEmpty();
+            assertThat(all.getRecords()).extracting(Account::getAccountId).containsExactly("asset3", "asset1", "asset4");
         }
 
+        @Test
+        public void whenAccountQuerySortIsInvalid() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+
+            Throwable thrown = catchThrowable(() -> {
+                contract.QueryAccounts(ctx, "0", "", "USER", "amount", "10", "");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasNoCause()
+                    .hasMessage("Sort order amount must be asc or desc");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INVALID_QUERY".getBytes());
+        }
+
+        @Test
+        public void whenAccountsQueriedByOwner() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getStateByPartialCompositeKeyWithPagination(any(CompositeKey.class), eq(10), eq("")))
+                    .thenReturn(new MockIndexResultsIterator("owner~accountId", "A", "asset1", "asset4"));
+            when(stub.getState(accountKey("asset1"))).thenReturn(CODEC.encode(new Account("asset1", "A", 2000L, AccountType.USER)));
+            when(stub.getState(accountKey("asset4"))).thenReturn(CODEC.encode(new Account("asset4", "A", 10L, AccountType.USER)));
+
+            AccountPage page = genson.deserialize(contract.QueryAccountsByOwner(ctx, "A", "10", ""), AccountPage.class);
+
+            assertThat(page.getRecords()).containsExactly(
+                    new Account("asset1", "A", 2000L, AccountType.USER),
+                    new Account("asset4", "A", 10L, AccountType.USER));
+            assertThat(page.getFetchedCount()).isEqualTo(2);
+            verify(stub, never()).getStateByRange(anyString(), anyString());
+        }
+
+        @Test
+        public void whenAccountsQueriedByType() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getStateByPartialCompositeKeyWithPagination(any(CompositeKey.class), eq(10), eq("")))
+                    .thenReturn(new MockIndexResultsIterator("type~accountId", "COMMISSION", "asset3"));
+            when(stub.getState(accountKey("asset3"))).thenReturn(CODEC.encode(new Account("asset3", "creativehill", 0L, AccountType.COMMISSION)));
+            when(stub.getStateByPartialCompositeKey("commission~bucket~txId")).thenReturn(new MockCommissionDeltaIterator(3L));
+
+            AccountPage page = genson.deserialize(contract.QueryAccountsByType(ctx, "COMMISSION", "10", ""), AccountPage.class);
+
+            assertThat(page.getRecords()).containsExactly(new Account("asset3", "creativehill", 3L, AccountType.COMMISSION));
+        }
+    }
+
+    @Nested
+    class InvokeTransferAccountTransaction {
+
+        private final Genson genson = new Genson();
+
+        @Test
+        public void whenTransferBetweenUsers() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            Account sendUserAccount = new Account("asset1", "A", 2000L, AccountType.USER);
+            Account receivingUserAccount = new Account("asset2", "B", 0L, AccountType.USER);
+
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getState(accountKey("asset1"))).thenReturn(CODEC.encode(sendUserAccount));
+            // legacy JSON values are still readable next to binary ones
+            when(stub.getState(accountKey("asset2"))).thenReturn(genson.serialize(receivingUserAccount).getBytes());
+            when(stub.getStringState(COMMISSION_INDEX_KEY)).thenReturn("asset3");
+            when(stub.getTxId()).thenReturn("tx1");
+            when(stub.getTxTimestamp()).thenReturn(TX_TIMESTAMP);
+
+
+            String result = contract.TransferAccount(ctx, "asset1", "asset2", "1000");
+
+            Account expectedSendUserAccount = new Account("asset1", "A", 999L, AccountType.USER);
+            Account expectedReceivingUserAccount = new Account("asset2", "B", 1000L, AccountType.USER);
+
+            assertThat(result).isEqualTo(expectedSendUserAccount + " -> " + expectedReceivingUserAccount + " => commission 1");
+            verify(stub).putState(commissionDeltaKey("tx1"), amountOf(1L));
+            verify(stub).setEvent("AccountsChanged", ("{\"tx\":\"tx1\",\"fn\":\"TransferAccount\",\"seq\":0,\"commission\":1,\"changes\":["
+                    + "{\"id\":\"asset1\",\"balance\":999,\"delta\":-1001},{\"id\":\"asset2\",\"balance\":1000,\"delta\":1000},"
+                    + "{\"id\":\"asset3\",\"delta\":1}]}").getBytes());
+            verify(stub, never()).getState(accountKey("asset3"));
+            verify(stub, never()).putState(eq(accountKey("asset3")), any());
+        }
+
+        @Test
+        public void whenCommissionAccountDoesNotExist() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getState(accountKey("asset1"))).thenReturn(CODEC.encode(new Account("asset1", "A", 2000L, AccountType.USER)));
+            when(stub.getState(accountKey("asset2"))).thenReturn(CODEC.encode(new Account("asset2", "B", 0L, AccountType.USER)));
+
+            Throwable thrown = catchThrowable(() -> {
+                contract.TransferAccount(ctx, "asset1", "asset2", "1000");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasNoCause()
+                    .hasMessage("CommissionAccount does not exist");
+            verify(stub, never()).putState(anyString(), any());
+        }
+
+        @Test
+        public void whenTransferNotBetweenUsers() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            Account sendUserAccount = new Account("asset1", "A", 2000L, AccountType.COMPANY);
+            Account receivingUserAccount = new Account("asset2", "B", 0L, AccountType.USER);
+
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getTxId()).thenReturn("tx1");
+            when(stub.getTxTimestamp()).thenReturn(TX_TIMESTAMP);
+            when(stub.getState(accountKey("asset1"))).thenReturn(CODEC.encode(sendUserAccount));
+            when(stub.getState(accountKey("asset2"))).thenReturn(CODEC.encode(receivingUserAccount));
+//            when(stub.getStateByRange("account:", "account;")).thenReturn(new MockAssetResultsIterator());
+
+
+            String result = contract.TransferAccount(ctx, "asset1", "asset2", "1000");
+
+            Account expectedSendUserAccount = new Account("asset1", "A", 1000L, AccountType.COMPANY);
+            Account expectedReceivingUserAccount = new Account("asset2", "B", 1000L, AccountType.USER);
+
+            assertThat(result).isEqualTo(expectedSendUserAccount + " -> " + expectedReceivingUserAccount);
+        }
+
+        @Test
+        public void whenTransferNotBetweenUsersAndBigAmount() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            Account sendUserAccount = new Account("asset1", "A", 800_000_000_000L, AccountType.COMPANY);
+            Account receivingUserAccount = new Account("asset2", "B", 100_000_000_000L, AccountType.USER);
+
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getTxId()).thenReturn("tx1");
+            when(stub.getTxTimestamp()).thenReturn(TX_TIMESTAMP);
+            when(stub.getState(accountKey("asset1"))).thenReturn(CODEC.encode(sendUserAccount));
+            when(stub.getState(accountKey("asset2"))).thenReturn(CODEC.encode(receivingUserAccount));
+//            when(stub.getStateByRange("account:", "account;")).thenReturn(new MockAssetResultsIterator());
+
+
+            String result = contract.TransferAccount(ctx, "asset1", "asset2", "1");
+
+            Account expectedSendUserAccount = new Account("asset1", "A", 799_999_999_999L, AccountType.COMPANY);
+            Account expectedReceivingUserAccount = new Account("asset2", "B", 100_000_000_001L, AccountType.USER);
+
+            assertThat(result).isEqualTo(expectedSendUserAccount + " -> " + expectedReceivingUserAccount);
+        }
+
+        @Test
+        public void whenAmountIsNotPositive() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            when(ctx.getStub()).thenReturn(stub);
+
+            Throwable thrown = catchThrowable(() -> {
+                contract.TransferAccount(ctx, "asset1", "asset2", "-1000");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasNoCause()
+                    .hasMessage("Transfer is invalid: sender=asset1, receiver=asset2, amount=-1000");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INVALID_TRANSFER".getBytes());
+            verify(stub, never()).getState(anyString());
+            verify(stub, never()).putState(anyString(), any());
+        }
+
+        @Test
+        public void whenSenderHasInsufficientFunds() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getState(accountKey("asset1"))).thenReturn(CODEC.encode(new Account("asset1", "A", 500L, AccountType.COMPANY)));
+            when(stub.getState(accountKey("asset2"))).thenReturn(CODEC.encode(new Account("asset2", "B", 0L, AccountType.USER)));
+
+            Throwable thrown = catchThrowable(() -> {
+                contract.TransferAccount(ctx, "asset1", "asset2", "1000");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasNoCause()
+                    .hasMessage("Account asset1 has insufficient funds");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INSUFFICIENT_FUNDS".getBytes());
+            verify(stub, never()).putState(anyString(), any());
+        }
+
+    }
+
+    @Nested
+    class InvokeTransferBatchTransaction {
+
+        private final Genson genson = new Genson();
+
+        @Test
+        public void whenBatchTransfersBetweenAccounts() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getState(accountKey("asset1"))).thenReturn(CODEC.encode(new Account("asset1", "A", 2000L, AccountType.USER)));
+            when(stub.getState(accountKey("asset2"))).thenReturn(CODEC.encode(new Account("asset2", "B", 0L, AccountType.USER)));
+            when(stub.getState(accountKey("asset5"))).thenReturn(CODEC.encode(new Account("asset5", "C", 1000L, AccountType.COMPANY)));
+            when(stub.getStringState(COMMISSION_INDEX_KEY)).thenReturn("asset3");
+            when(stub.getTxId()).thenReturn("tx1");
+            when(stub.getTxTimestamp()).thenReturn(TX_TIMESTAMP);
+
+            String result = contract.TransferBatch(ctx, "[{\"sender\": \"asset1\", \"receiver\": \"asset2\", \"amount\": 1000},"
+                    + " {\"sender\": \"asset2\", \"receiver\": \"asset5\", \"amount\": 500}]");
+
+            assertThat(genson.deserialize(result, TransferResult[].class)).containsExactly(
+                    new TransferResult(0, "asset1", "asset2", 1000L, 1L, 999L, 1000L,
+                            new Account("asset1", "A", 999L, AccountType.USER) + " -> " + new Account("asset2", "B", 1000L, AccountType.USER)
+                            + " => commission 1"),
+                    new TransferResult(1, "asset2", "asset5", 500L, 0L, 500L, 1500L,
+                            new Account("asset2", "B", 500L, AccountType.USER) + " -> " + new Account("asset5", "C", 1500L, AccountType.COMPANY)));
+
+            verify(stub, times(1)).getState(accountKey("asset2"));
+            verify(stub, times(1)).putState(eq(accountKey("asset2")), any());
+            verify(stub).putState(accountKey("asset1"), CODEC.encode(new Account("asset1", "A", 999L, AccountType.USER)));
+            verify(stub).putState(accountKey("asset2"), CODEC.encode(new Account("asset2", "B", 500L, AccountType.USER)));
+            verify(stub).putState(accountKey("asset5"), CODEC.encode(new Account("asset5", "C", 1500L, AccountType.COMPANY)));
+            verify(stub).putState(commissionDeltaKey("tx1"), amountOf(1L));
+            // one event for the whole batch, with the changes of asset2 merged
+            verify(stub, times(1)).setEvent(anyString(), any());
+            verify(stub).setEvent("AccountsChanged", ("{\"tx\":\"tx1\",\"fn\":\"TransferBatch\",\"seq\":0,\"commission\":1,\"changes\":["
+                    + "{\"id\":\"asset1\",\"balance\":999,\"delta\":-1001},{\"id\":\"asset2\",\"balance\":500,\"delta\":500},"
+                    + "{\"id\":\"asset5\",\"balance\":1500,\"delta\":500},{\"id\":\"asset3\",\"delta\":1}]}").getBytes());
+        }
+
+        @Test
+        public void whenBatchHasInsufficientFunds() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getState(accountKey("asset1"))).thenReturn(CODEC.encode(new Account("asset1", "A", 1000L, AccountType.COMPANY)));
+            when(stub.getState(accountKey("asset2"))).thenReturn(CODEC.encode(new Account("asset2", "B", 0L, AccountType.USER)));
+
+            Throwable thrown = catchThrowable(() -> {
+                contract.TransferBatch(ctx, "[{\"sender\": \"asset1\", \"receiver\": \"asset2\", \"amount\": 600},"
+                        + " {\"sender\": \"asset1\", \"receiver\": \"asset2\", \"amount\": 600}]");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasNoCause()
+                    .hasMessage("Transfer 1: Account asset1 has insufficient funds");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INSUFFICIENT_FUNDS".getBytes());
+            verify(stub, never()).putState(anyString(), any());
+            verify(stub, never()).setEvent(anyString(), any());
+        }
+
+        @Test
+        public void whenBatchEntryHasNoReceiver() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            when(ctx.getStub()).thenReturn(stub);
+
+            Throwable thrown = catchThrowable(() -> {
+                contract.TransferBatch(ctx, "[{\"sender\": \"asset1\", \"amount\": 600}]");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasNoCause()
+                    .hasMessage("Transfer 0 is invalid: sender=asset1, receiver=null, amount=600");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INVALID_TRANSFER".getBytes());
+            verify(stub, never()).getState(anyString());
+        }
+    }
+
+    @Nested
+    class InvokeCommissionDeltaTransactions {
+
+        @Test
+        public void whenSweepFoldsBoundedChunk() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getStringState(COMMISSION_INDEX_KEY)).thenReturn("asset3");
+            when(stub.getState(accountKey("asset3"))).thenReturn(CODEC.encode(new Account("asset3", "creativehill", 10L, AccountType.COMMISSION)));
+            when(stub.getStateByPartialCompositeKey("commission~bucket~txId")).thenReturn(new MockCommissionDeltaIterator(1L, 2L, 4L));
+            when(stub.getTxTimestamp()).thenReturn(SWEEP_TIMESTAMP);
+
+            Account account = contract.SweepCommission(ctx, "2");
+
+            assertThat(account).isEqualTo(new Account("asset3", "creativehill", 13L, AccountType.COMMISSION));
+            verify(stub).delState(commissionDeltaKey("tx0"));
+            verify(stub).delState(commissionDeltaKey("tx1"));
+            verify(stub, never()).delState(commissionDeltaKey("tx2"));
+            verify(stub).putState(accountKey("asset3"), CODEC.encode(account));
+        }
+
+        @Test
+        public void whenSweepLeavesRecentBuckets() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getStringState(COMMISSION_INDEX_KEY)).thenReturn("asset3");
+            when(stub.getState(accountKey("asset3"))).thenReturn(CODEC.encode(new Account("asset3", "creativehill", 10L, AccountType.COMMISSION)));
+            when(stub.getStateByPartialCompositeKey("commission~bucket~txId")).thenReturn(new MockKeyValueIterator(
+                    new MockKeyValue(commissionDeltaKey("tx0"), amountOf(1L)),
+                    new MockKeyValue(commissionDeltaKey(SWEEP_TIMESTAMP.minusSeconds(30), "tx1"), amountOf(2L))));
+            when(stub.getTxTimestamp()).thenReturn(SWEEP_TIMESTAMP);
+
+            Account account = contract.SweepCommission(ctx, "10");
+
+            assertThat(account).isEqualTo(new Account("asset3", "creativehill", 11L, AccountType.COMMISSION));
+            verify(stub).delState(commissionDeltaKey("tx0"));
+            verify(stub, never()).delState(commissionDeltaKey(SWEEP_TIMESTAMP.minusSeconds(30), "tx1"));
+        }
+
+        @Test
+        public void whenCountingSweepableDeltas() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getStateByPartialCompositeKey("commission~bucket~txId")).thenReturn(new MockKeyValueIterator(
+                    new MockKeyValue(commissionDeltaKey("tx0"), amountOf(1L)),
+                    new MockKeyValue(commissionDeltaKey(SWEEP_TIMESTAMP.minusSeconds(30), "tx1"), amountOf(2L))));
+            when(stub.getStateByPartialCompositeKey("stats~bucket~txId")).thenReturn(new MockKeyValueIterator());
+            when(stub.getTxTimestamp()).thenReturn(SWEEP_TIMESTAMP);
+
+            PendingDeltas pending = contract.GetPendingDeltas(ctx);
+
+            assertThat(pending).isEqualTo(new PendingDeltas(1L, 0L));
+        }
+
+        @Test
+        public void whenTransfersCommitDuringSweep() {
+            AssetTransfer contract = new AssetTransfer();
+            InMemoryLedger ledger = new InMemoryLedger();
+
+            InMemoryChaincodeStub create = ledger.newTransaction("create");
+            contract.CreateAssetsBatch(contract.createContext(create), "[{\"accountId\": \"asset1\", \"owner\": \"A\", \"amount\": 5000, \"type\": \"USER\"},"
+                    + " {\"accountId\": \"asset2\", \"owner\": \"B\", \"amount\": 0, \"type\": \"USER\"},"
+                    + " {\"accountId\": \"asset3\", \"owner\": \"creativehill\", \"amount\": 0, \"type\": \"COMMISSION\"}]");
+            ledger.commit(create);
+            InMemoryChaincodeStub transfer1 = ledger.newTransaction("transfer1");
+            contract.TransferAccount(contract.createContext(transfer1), "asset1", "asset2", "1000");
+            ledger.commit(transfer1);
+
+            ledger.advanceClock(Duration.ofMinutes(2));
+            InMemoryChaincodeStub transfer2 = ledger.newTransaction("transfer2");
+            contract.TransferAccount(contract.createContext(transfer2), "asset1", "asset2", "1000");
+            ledger.commit(transfer2);
+
+            // the sweep stops at transfer2's recent delta, so transfer3's delta lands outside the range it read
+            InMemoryChaincodeStub sweep = ledger.newTransaction("sweep");
+            Account swept = contract.SweepCommission(contract.createContext(sweep), "10");
+            InMemoryChaincodeStub transfer3 = ledger.newTransaction("transfer3");
+            contract.TransferAccount(contract.createContext(transfer3), "asset1", "asset2", "1000");
+
+            InMemoryLedger.BlockResult block = ledger.commit(Arrays.asList(transfer3, sweep));
+            Account commission = contract.GetCommissionAccount(contract.createContext(ledger.newTransaction("query")));
+
+            assertThat(block.getValidCount()).isEqualTo(2);
+            assertThat(swept.getAmount()).isEqualTo(1L);
+            assertThat(commission.getAmount()).isEqualTo(3L);
+        }
+
+        @Test
+        public void whenCommissionAccountSpendsPendingCommission() {
+            AssetTransfer contract = new AssetTransfer();
+            InMemoryLedger ledger = new InMemoryLedger();
+
+            InMemoryChaincodeStub create = ledger.newTransaction("create");
+            contract.CreateAssetsBatch(contract.createContext(create), "[{\"accountId\": \"asset1\", \"owner\": \"A\", \"amount\": 5000, \"type\": \"USER\"},"
+                    + " {\"accountId\": \"asset2\", \"owner\": \"B\", \"amount\": 0, \"type\": \"USER\"},"
+                    + " {\"accountId\": \"asset3\", \"owner\": \"creativehill\", \"amount\": 1, \"type\": \"COMMISSION\"}]");
+            ledger.commit(create);
+
+            for (int i = 1; i <= 3; i++) {
+                InMemoryChaincodeStub transfer = ledger.newTransaction("transfer" + i);
+                contract.TransferAccount(contract.createContext(transfer), "asset1", "asset2", "1000");
+                ledger.commit(transfer);
+            }
+
+            // base 1 plus three pending deltas of 1
+            InMemoryChaincodeStub payout = ledger.newTransaction("payout");
+            contract.TransferAccount(contract.createContext(payout), "asset3", "asset2", "3");
+            ledger.commit(payout);
+            InMemoryChaincodeStub batch = ledger.newTransaction("batch");
+            contract.TransferBatch(contract.createContext(batch), "[{\"sender\": \"asset3\", \"receiver\": \"asset2\", \"amount\": 1}]");
+            ledger.commit(batch);
+
+            Context ctx = contract.createContext(ledger.newTransaction("query"));
+            Throwable thrown = catchThrowable(() -> {
+                contract.TransferAccount(ctx, "asset3", "asset2", "1");
+            });
+
+            assertThat(contract.GetCommissionAccount(ctx).getAmount()).isEqualTo(0L);
+            assertThat(contract.ReadAsset(ctx, "asset2").getAmount()).isEqualTo(3004L);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INSUFFICIENT_FUNDS".getBytes());
+        }
+
+        @Test
+        public void whenReadingEffectiveBalance() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getStringState(COMMISSION_INDEX_KEY)).thenReturn("asset3");
+            when(stub.getState(accountKey("asset3"))).thenReturn(CODEC.encode(new Account("asset3", "creativehill", 10L, AccountType.COMMISSION)));
+            when(stub.getStateByPartialCompositeKey("commission~bucket~txId")).thenReturn(new MockCommissionDeltaIterator(1L, 2L, 4L));
+
+            Account account = contract.GetCommissionAccount(ctx);
+
+            assertThat(account).isEqualTo(new Account("asset3", "creativehill", 17L, AccountType.COMMISSION));
+            verify(stub, never()).putState(anyString(), any());
+        }
+
+        @Test
+        public void whenReadAssetOnCommissionAccount() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getState(accountKey("asset3"))).thenReturn(CODEC.encode(new Account("asset3", "creativehill", 10L, AccountType.COMMISSION)));
+            when(stub.getStateByPartialCompositeKey("commission~bucket~txId")).thenReturn(new MockCommissionDeltaIterator(1L, 2L, 4L));
+
+            Account account = contract.ReadAsset(ctx, "asset3");
+
+            assertThat(account).isEqualTo(new Account("asset3", "creativehill", 17L, AccountType.COMMISSION));
+        }
+    }
+
+    @Nested
+    class InvokeShardedAccountTransactions {
+
+        private ChaincodeStub shardedStub() {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            when(stub.getState(accountKey("asset1"))).thenReturn(CODEC.encode(new Account("asset1", "A", 0L, AccountType.COMPANY)));
+            when(stub.getState(shardCountKey("asset1"))).thenReturn(amountOf(2L));
+            when(stub.getState(shardKey("asset1", 0))).thenReturn(amountOf(100L));
+            when(stub.getState(shardKey("asset1", 1))).thenReturn(amountOf(1000L));
+            when(stub.getState(accountKey("asset2"))).thenReturn(CODEC.encode(new Account("asset2", "B", 0L, AccountType.USER)));
+            // "tx0".hashCode() is even, so transfers start on shard 0
+            when(stub.getTxId()).thenReturn("tx0");
+            when(stub.getTxTimestamp()).thenReturn(TX_TIMESTAMP);
+
+            return stub;
+        }
+
+        @Test
+        public void whenReadingShardedAccount() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = shardedStub();
+            when(ctx.getStub()).thenReturn(stub);
+
+            Account account = contract.ReadAsset(ctx, "asset1");
+
+            assertThat(account).isEqualTo(new Account("asset1", "A", 1100L, AccountType.COMPANY));
+        }
+
+        @Test
+        public void whenDebitFallsBackToNextShard() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = shardedStub();
+            when(ctx.getStub()).thenReturn(stub);
+
+            String result = contract.TransferAccount(ctx, "asset1", "asset2", "500");
+
+            assertThat(result).isEqualTo(new Account("asset1", "A", null, AccountType.COMPANY) + " -> " + new Account("asset2", "B", 500L, AccountType.USER));
+            verify(stub).putState(shardKey("asset1", 0), amountOf(0L));
+            verify(stub).putState(shardKey("asset1", 1), amountOf(600L));
+            verify(stub, never()).putState(eq(accountKey("asset1")), any());
+        }
+
+        @Test
+        public void whenCreditTouchesOneShard() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = shardedStub();
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getState(accountKey("asset2"))).thenReturn(CODEC.encode(new Account("asset2", "B", 300L, AccountType.USER)));
+
+            contract.TransferAccount(ctx, "asset2", "asset1", "300");
+
+            verify(stub).putState(shardKey("asset1", 0), amountOf(400L));
+            verify(stub, never()).getState(shardKey("asset1", 1));
+        }
+
+        @Test
+        public void whenShardsHaveInsufficientFunds() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = shardedStub();
+            when(ctx.getStub()).thenReturn(stub);
+
+            Throwable thrown = catchThrowable(() -> {
+                contract.TransferAccount(ctx, "asset1", "asset2", "2000");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasNoCause()
+                    .hasMessage("Account asset1 has insufficient funds");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INSUFFICIENT_FUNDS".getBytes());
+            verify(stub, never()).putState(anyString(), any());
+        }
+
+        @Test
+        public void whenShardingAccount() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getState(accountKey("asset1"))).thenReturn(CODEC.encode(new Account("asset1", "A", 1001L, AccountType.COMPANY)));
+
+            Account account = contract.ShardAccount(ctx, "asset1", "2");
+
+            assertThat(account).isEqualTo(new Account("asset1", "A", 1001L, AccountType.COMPANY));
+            verify(stub).putState(shardKey("asset1", 0), amountOf(501L));
+            verify(stub).putState(shardKey("asset1", 1), amountOf(500L));
+            verify(stub).putState(shardCountKey("asset1"), amountOf(2L));
+            verify(stub).putState(accountKey("asset1"), CODEC.encode(new Account("asset1", "A", 0L, AccountType.COMPANY)));
+        }
+
+        @Test
+        public void whenShardingUserAccount() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = shardedStub();
+            when(ctx.getStub()).thenReturn(stub);
+
+            Throwable thrown = catchThrowable(() -> {
+                contract.ShardAccount(ctx, "asset2", "2");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasNoCause()
+                    .hasMessage("Account asset2 cannot be split into 2 shards");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INVALID_SHARDING".getBytes());
+        }
+    }
+
+    @Nested
+    class InvokeLedgerStatsTransactions {
+
+        @Test
+        public void whenTransferRecordsStatsDelta() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getTxId()).thenReturn("tx1");
+            when(stub.getTxTimestamp()).thenReturn(TX_TIMESTAMP);
+            when(stub.getState(accountKey("asset1"))).thenReturn(CODEC.encode(new Account("asset1", "A", 2000L, AccountType.USER)));
+            when(stub.getState(accountKey("asset2"))).thenReturn(CODEC.encode(new Account("asset2", "B", 0L, AccountType.USER)));
+            when(stub.getStringState(COMMISSION_INDEX_KEY)).thenReturn("asset3");
+
+            contract.TransferAccount(ctx, "asset1", "asset2", "1000");
+
+            StatsDelta expected = new StatsDelta();
+            expected.addBalance(AccountType.USER, -1001L);
+            expected.addBalance(AccountType.USER, 1000L);
+            expected.addCommission(1L);
+            verify(stub).putState(statsDeltaKey("tx1"), expected.encode());
+            verify(stub, never()).getState(new CompositeKey("stats").toString());
+        }
+
+        @Test
+        public void whenReadingLedgerStats() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            StatsDelta base = new StatsDelta();
+            base.addAccount(AccountType.USER, 2000L);
+            base.addAccount(AccountType.USER, 0L);
+            base.addAccount(AccountType.COMMISSION, 0L);
+
+            StatsDelta created = new StatsDelta();
+            created.addAccount(AccountType.COMPANY, 500L);
+
+            StatsDelta transferred = new StatsDelta();
+            transferred.addBalance(AccountType.USER, -1L);
+            transferred.addCommission(1L);
+
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getState(new CompositeKey("stats").toString())).thenReturn(base.encode());
+            when(stub.getStateByPartialCompositeKey("stats~bucket~txId")).thenReturn(new MockKeyValueIterator(
+                    new MockKeyValue(statsDeltaKey("tx1"), created.encode()),
+                    new MockKeyValue(statsDeltaKey("tx2"), transferred.encode())));
+
+            LedgerStats stats = contract.GetLedgerStats(ctx);
+
+            assertThat(stats.getTypes()).containsExactly(
+                    new TypeStats(AccountType.USER, 2L, 1999L),
+                    new TypeStats(AccountType.COMPANY, 1L, 500L),
+                    new TypeStats(AccountType.COMMISSION, 1L, 1L));
+            assertThat(stats.getCommission()).isEqualTo(1L);
+            assertThat(stats.getTotalSupply()).isEqualTo(2500L);
+        }
+
+        @Test
+        public void whenSweepingLedgerStats() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+
+            StatsDelta created = new StatsDelta();
+            created.addAccount(AccountType.COMPANY, 500L);
+
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getStateByPartialCompositeKey("stats~bucket~txId")).thenReturn(new MockKeyValueIterator(
+                    new MockKeyValue(statsDeltaKey("tx1"), created.encode()),
+                    new MockKeyValue(statsDeltaKey("tx2"), created.encode())));
+            when(stub.getTxTimestamp()).thenReturn(SWEEP_TIMESTAMP);
+
+            contract.SweepLedgerStats(ctx, "1");
+
+            verify(stub).delState(statsDeltaKey("tx1"));
+            verify(stub, never()).delState(statsDeltaKey("tx2"));
+            verify(stub).putState(new CompositeKey("stats").toString(), created.encode());
+        }
+
+        @Test
+        public void whenAccountsPredateTheLedgerStats() {
+            AssetTransfer contract = new AssetTransfer();
+            InMemoryLedger ledger = new InMemoryLedger();
+
+            StatsDelta collected = new StatsDelta();
+            collected.addCommission(7L);
+
+            // accounts written before CreateAsset recorded aggregate deltas, and a commission line already swept
+            InMemoryChaincodeStub legacy = ledger.newTransaction("legacy");
+            legacy.putState(accountKey("asset1"), CODEC.encode(new Account("asset1", "A", 100L, AccountType.USER)));
+            legacy.putState(accountKey("asset2"), CODEC.encode(new Account("asset2", "B", 200L, AccountType.USER)));
+            legacy.putState(accountKey("asset3"), CODEC.encode(new Account("asset3", "creativehill", 7L, AccountType.COMMISSION)));
+            legacy.putState(accountKey("asset4"), CODEC.encode(new Account("asset4", "C", 300L, AccountType.COMPANY)));
+            legacy.putState(new CompositeKey("stats").toString(), collected.encode());
+            ledger.commit(legacy);
+
+            InMemoryChaincodeStub create = ledger.newTransaction("create");
+            contract.CreateAsset(contract.createContext(create), "asset5", "D", "50", AccountType.USER.name());
+            ledger.commit(create);
+
+            InMemoryChaincodeStub first = ledger.newTransaction("rebuild1");
+            String next = contract.RebuildLedgerStats(contract.createContext(first), "", "2");
+            ledger.commit(first);
+            InMemoryChaincodeStub second = ledger.newTransaction("rebuild2");
+            String after = contract.RebuildLedgerStats(contract.createContext(second), next, "2");
+            ledger.commit(second);
+            InMemoryChaincodeStub third = ledger.newTransaction("rebuild3");
+            String last = contract.RebuildLedgerStats(contract.createContext(third), after, "2");
+            ledger.commit(third);
+
+            LedgerStats stats = contract.GetLedgerStats(contract.createContext(ledger.newTransaction("query")));
+
+            assertThat(next).isEqualTo(accountKey("asset3"));
+            assertThat(after).isEqualTo(accountKey("asset5"));
+            assertThat(last).isEmpty();
+            assertThat(ledger.snapshot()).doesNotContainKey(new CompositeKey("stats~rebuild").toString());
+            assertThat(stats.getTypes()).containsExactly(
+                    new TypeStats(AccountType.USER, 3L, 350L),
+                    new TypeStats(AccountType.COMPANY, 1L, 300L),
+                    new TypeStats(AccountType.COMMISSION, 1L, 7L));
+            assertThat(stats.getCommission()).isEqualTo(7L);
+        }
+
+        @Test
+        public void whenResumingRebuildThatWasNotStarted() {
+            AssetTransfer contract = new AssetTransfer();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+
+            Throwable thrown = catchThrowable(() -> {
+                contract.RebuildLedgerStats(ctx, accountKey("asset3"), "2");
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasNoCause()
+                    .hasMessage("No ledger stats rebuild to resume at %s, start again with an empty startKey", accountKey("asset3"));
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INVALID_QUERY".getBytes());
+            verify(stub, never()).putState(any(), any());
+        }
     }
 }
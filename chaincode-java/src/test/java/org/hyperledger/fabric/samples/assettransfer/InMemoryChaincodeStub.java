@@ -0,0 +1,598 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import org.hyperledger.fabric.protos.msp.Identities.SerializedIdentity;
+import org.hyperledger.fabric.protos.peer.ChaincodeEventPackage.ChaincodeEvent;
+import org.hyperledger.fabric.protos.peer.ChaincodeShim.QueryResponseMetadata;
+import org.hyperledger.fabric.protos.peer.ProposalPackage.SignedProposal;
+import org.hyperledger.fabric.samples.assettransfer.InMemoryLedger.ValidationCode;
+import org.hyperledger.fabric.samples.assettransfer.InMemoryLedger.Version;
+import org.hyperledger.fabric.samples.assettransfer.InMemoryLedger.VersionedValue;
+import org.hyperledger.fabric.shim.Chaincode.Response;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Simulation of one transaction against an {@link InMemoryLedger}, with the peer's semantics:
+ *
+ * - reads see the committed state only, never the transaction's own writes;
+ * - the version of every key read and the keys returned by every range query are recorded for validation;
+ * - writes are buffered in the write set and applied only if the transaction is committed as valid;
+ * - paginated queries and writes cannot be mixed in one transaction;
+ * - only the last setEvent call is kept.
+ *
+ * Rich queries run against {@link InMemoryRichQuery} and, as on the peer, are not re-checked at commit.
+ * Private data and chaincode-to-chaincode calls are not emulated.
+ */
+public final class InMemoryChaincodeStub implements ChaincodeStub {
+
+    // Fabric starts an open range after the composite key namespace, so getStateByRange("", "") skips composite keys.
+    private static final String UNSPECIFIED_START_KEY = "\u0001";
+    private static final String MAX_UNICODE_RUNE = "\udbff\udfff";
+
+    private static final String MSP_ID = "Org1MSP";
+
+    // Self-signed client certificate, so that the shim's Context, which parses the creator, can be built over this stub.
+    private static final String CREATOR_CERTIFICATE = String.join("\n",
+            "-----BEGIN CERTIFICATE-----",
+            "MIICCzCCAbGgAwIBAgIUV1cFl4LGavNmm6DP+kG3tKsXZqkwCgYIKoZIzj0EAwIw",
+            "WjELMAkGA1UEBhMCVVMxGTAXBgNVBAoMEG9yZzEuZXhhbXBsZS5jb20xDzANBgNV",
+            "BAsMBmNsaWVudDEfMB0GA1UEAwwWVXNlcjFAb3JnMS5leGFtcGxlLmNvbTAgFw0y",
+            "NjEwMTcxNzQ5MjNaGA8yMTI2MDkyMzE3NDkyM1owWjELMAkGA1UEBhMCVVMxGTAX",
+            "BgNVBAoMEG9yZzEuZXhhbXBsZS5jb20xDzANBgNVBAsMBmNsaWVudDEfMB0GA1UE",
+            "AwwWVXNlcjFAb3JnMS5leGFtcGxlLmNvbTBZMBMGByqGSM49AgEGCCqGSM49AwEH",
+            "A0IABESBkbgk7VWEHUWCzlSR00LerZG5JHUq2/R+aFIHltobEt+EbviAsQ6rmIzY",
+            "qB5cA1xANtUve8rZlqEbK/NvleSjUzBRMB0GA1UdDgQWBBQdVsJtJVa7ieICZWQJ",
+            "XMrt4iI8UTAfBgNVHSMEGDAWgBQdVsJtJVa7ieICZWQJXMrt4iI8UTAPBgNVHRMB",
+            "Af8EBTADAQH/MAoGCCqGSM49BAMCA0gAMEUCIGP0W+gBD5t4r7rBLFgeOdX8MCyP",
+            "8UBlq0ardxHeLd35AiEA2WxVQSAVOQV1xWyqp21wa08ekv1WZKh030gOsS2545w=",
+            "-----END CERTIFICATE-----") + "\n";
+
+    private static final byte[] CREATOR = SerializedIdentity.newBuilder()
+            .setMspid(MSP_ID)
+            .setIdBytes(ByteString.copyFromUtf8(CREATOR_CERTIFICATE))
+            .build()
+            .toByteArray();
+
+    private static final class LedgerKeyValue implements KeyValue {
+
+        private final String key;
+        private final byte[] value;
+
+        LedgerKeyValue(final String key, final byte[] value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public byte[] getValue() {
+            return value;
+        }
+
+        @Override
+        public String getStringValue() {
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Keys and versions returned by one range query, up to where the contract stopped iterating.
+     */
+    private static final class RangeRead {
+
+        private final String startKey;
+        private final String endKey;
+        private final List<String> keys = new ArrayList<>();
+        private final List<Version> versions = new ArrayList<>();
+        private boolean exhausted;
+
+        RangeRead(final String startKey, final String endKey) {
+            this.startKey = startKey;
+            this.endKey = endKey;
+        }
+    }
+
+    private final class RangeIterator implements QueryResultsIterator<KeyValue> {
+
+        private final RangeRead rangeRead;
+        private final List<Map.Entry<String, VersionedValue>> entries;
+
+        RangeIterator(final String startKey, final String endKey) {
+            this.rangeRead = new RangeRead(startKey, endKey);
+            this.entries = new ArrayList<>(ledger.range(startKey, endKey).entrySet());
+            rangeReads.add(rangeRead);
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            return new Iterator<KeyValue>() {
+
+                private int position;
+
+                @Override
+                public boolean hasNext() {
+                    if (position < entries.size()) {
+                        return true;
+                    }
+
+                    rangeRead.exhausted = true;
+                    return false;
+                }
+
+                @Override
+                public KeyValue next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    Map.Entry<String, VersionedValue> entry = entries.get(position++);
+                    rangeRead.keys.add(entry.getKey());
+                    rangeRead.versions.add(entry.getValue().getVersion());
+
+                    return new LedgerKeyValue(entry.getKey(), entry.getValue().getValue());
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    }
+
+    private static final class PageIterator implements QueryResultsIteratorWithMetadata<KeyValue> {
+
+        private final List<KeyValue> page;
+        private final QueryResponseMetadata metadata;
+
+        PageIterator(final List<KeyValue> page, final String bookmark) {
+            this.page = page;
+            this.metadata = QueryResponseMetadata.newBuilder().setFetchedRecordsCount(page.size()).setBookmark(bookmark).build();
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            return page.iterator();
+        }
+
+        @Override
+        public QueryResponseMetadata getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    }
+
+    private final InMemoryLedger ledger;
+    private final String txId;
+    private final Instant txTimestamp;
+    private final List<String> args;
+
+    private final Map<String, Version> readSet = new LinkedHashMap<>();
+    private final List<RangeRead> rangeReads = new ArrayList<>();
+    private final Map<String, byte[]> writeSet = new LinkedHashMap<>();
+    private boolean paginated;
+    private ChaincodeEvent event;
+
+    InMemoryChaincodeStub(final InMemoryLedger ledger, final String txId, final Instant txTimestamp, final List<String> args) {
+        this.ledger = ledger;
+        this.txId = txId;
+        this.txTimestamp = txTimestamp;
+        this.args = args;
+    }
+
+    /**
+     * Checks the recorded reads against the current committed state, as the peer does at commit time.
+     *
+     * @return VALID when every key read still has the version that was read and every range query would return the same keys
+     */
+    ValidationCode validate() {
+        for (Map.Entry<String, Version> read : readSet.entrySet()) {
+            VersionedValue current = ledger.get(read.getKey());
+
+            if (!Objects.equals(current == null ? null : current.getVersion(), read.getValue())) {
+                return ValidationCode.MVCC_READ_CONFLICT;
+            }
+        }
+
+        for (RangeRead rangeRead : rangeReads) {
+            NavigableMap<String, VersionedValue> current = ledger.range(rangeRead.startKey, rangeRead.endKey);
+
+            // an iterator closed early only vouches for the keys up to the last one it returned
+            if (!rangeRead.exhausted) {
+                current = rangeRead.keys.isEmpty()
+                        ? Collections.emptyNavigableMap()
+                        : current.headMap(rangeRead.keys.get(rangeRead.keys.size() - 1), true);
+            }
+
+            if (current.size() != rangeRead.keys.size()) {
+                return ValidationCode.PHANTOM_READ_CONFLICT;
+            }
+
+            int i = 0;
+
+            for (Map.Entry<String, VersionedValue> entry : current.entrySet()) {
+                if (!entry.getKey().equals(rangeRead.keys.get(i)) || !entry.getValue().getVersion().equals(rangeRead.versions.get(i))) {
+                    return ValidationCode.PHANTOM_READ_CONFLICT;
+                }
+
+                i++;
+            }
+        }
+
+        return ValidationCode.VALID;
+    }
+
+    /**
+     * @return the buffered writes in write order, with null values for deleted keys
+     */
+    Map<String, byte[]> getWriteSet() {
+        return Collections.unmodifiableMap(writeSet);
+    }
+
+    /**
+     * @return the keys read through getState, with the version read (null when the key did not exist)
+     */
+    Map<String, Version> getReadSet() {
+        return Collections.unmodifiableMap(readSet);
+    }
+
+    @Override
+    public List<byte[]> getArgs() {
+        List<byte[]> bytes = new ArrayList<>();
+
+        for (String arg : args) {
+            bytes.add(arg.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return bytes;
+    }
+
+    @Override
+    public List<String> getStringArgs() {
+        return args;
+    }
+
+    @Override
+    public String getFunction() {
+        return args.isEmpty() ? null : args.get(0);
+    }
+
+    @Override
+    public List<String> getParameters() {
+        return args.isEmpty() ? Collections.emptyList() : args.subList(1, args.size());
+    }
+
+    @Override
+    public String getTxId() {
+        return txId;
+    }
+
+    @Override
+    public String getChannelId() {
+        return "mychannel";
+    }
+
+    @Override
+    public Response invokeChaincode(final String chaincodeName, final List<byte[]> args, final String channel) {
+        throw new UnsupportedOperationException("invokeChaincode is not emulated");
+    }
+
+    @Override
+    public byte[] getState(final String key) {
+        VersionedValue value = ledger.get(key);
+        readSet.putIfAbsent(key, value == null ? null : value.getVersion());
+
+        // like the peer, a missing key reads as an empty value
+        return value == null ? new byte[0] : value.getValue();
+    }
+
+    @Override
+    public byte[] getStateValidationParameter(final String key) {
+        return null;
+    }
+
+    @Override
+    public void putState(final String key, final byte[] value) {
+        if (value == null || value.length == 0) {
+            throw new IllegalArgumentException("Value for key " + key + " must not be empty, use delState");
+        }
+
+        checkWritable();
+        writeSet.put(key, value.clone());
+    }
+
+    @Override
+    public void setStateValidationParameter(final String key, final byte[] value) {
+        throw new UnsupportedOperationException("State-based endorsement is not emulated");
+    }
+
+    @Override
+    public void delState(final String key) {
+        checkWritable();
+        writeSet.put(key, null);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByRange(final String startKey, final String endKey) {
+        return new RangeIterator(startKey.isEmpty() ? UNSPECIFIED_START_KEY : startKey, endKey);
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(final String startKey, final String endKey,
+                                                                                    final int pageSize, final String bookmark) {
+        return page(startKey.isEmpty() ? UNSPECIFIED_START_KEY : startKey, endKey, pageSize, bookmark);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String compositeKey) {
+        // like the shim, a plain object type is turned into a composite key first
+        CompositeKey key = compositeKey.startsWith(CompositeKey.NAMESPACE)
+                ? CompositeKey.parseCompositeKey(compositeKey)
+                : new CompositeKey(compositeKey);
+
+        return getStateByPartialCompositeKey(key);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String objectType, final String... attributes) {
+        return getStateByPartialCompositeKey(new CompositeKey(objectType, attributes));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final CompositeKey compositeKey) {
+        return new RangeIterator(compositeKey.toString(), compositeKey.toString() + MAX_UNICODE_RUNE);
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(final CompositeKey compositeKey,
+                                                                                                 final int pageSize, final String bookmark) {
+        return page(compositeKey.toString(), compositeKey.toString() + MAX_UNICODE_RUNE, pageSize, bookmark);
+    }
+
+    @Override
+    public CompositeKey createCompositeKey(final String objectType, final String... attributes) {
+        return new CompositeKey(objectType, attributes);
+    }
+
+    @Override
+    public CompositeKey splitCompositeKey(final String compositeKey) {
+        return CompositeKey.parseCompositeKey(compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getQueryResult(final String query) {
+        List<KeyValue> results = new ArrayList<>();
+
+        for (Map.Entry<String, byte[]> match : richQuery(query)) {
+            results.add(new LedgerKeyValue(match.getKey(), match.getValue()));
+        }
+
+        return new QueryResultsIterator<KeyValue>() {
+
+            @Override
+            public Iterator<KeyValue> iterator() {
+                return results.iterator();
+            }
+
+            @Override
+            public void close() {
+                // nothing to release
+            }
+        };
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(final String query, final int pageSize, final String bookmark) {
+        checkPaginationAllowed();
+
+        List<Map.Entry<String, byte[]>> matches = richQuery(query);
+
+        // the bookmark is the number of matches already returned; CouchDB's own bookmarks are opaque as well
+        int from = bookmark == null || bookmark.isEmpty() ? 0 : Integer.parseInt(bookmark);
+        int to = Math.min(from + pageSize, matches.size());
+        List<KeyValue> page = new ArrayList<>();
+
+        for (Map.Entry<String, byte[]> match : matches.subList(Math.min(from, to), to)) {
+            page.add(new LedgerKeyValue(match.getKey(), match.getValue()));
+        }
+
+        return new PageIterator(page, to < matches.size() ? String.valueOf(to) : "");
+    }
+
+    private List<Map.Entry<String, byte[]>> richQuery(final String query) {
+        Map<String, byte[]> committed = new LinkedHashMap<>();
+
+        for (Map.Entry<String, VersionedValue> entry : ledger.range("", "").entrySet()) {
+            committed.put(entry.getKey(), entry.getValue().getValue());
+        }
+
+        return new InMemoryRichQuery(query).run(committed.entrySet());
+    }
+
+    @Override
+    public QueryResultsIterator<KeyModification> getHistoryForKey(final String key) {
+        List<KeyModification> modifications = new ArrayList<>(ledger.history(key));
+
+        return new QueryResultsIterator<KeyModification>() {
+
+            @Override
+            public Iterator<KeyModification> iterator() {
+                return modifications.iterator();
+            }
+
+            @Override
+            public void close() {
+                // nothing to release
+            }
+        };
+    }
+
+    @Override
+    public byte[] getPrivateData(final String collection, final String key) {
+        throw new UnsupportedOperationException("Private data is not emulated");
+    }
+
+    @Override
+    public byte[] getPrivateDataHash(final String collection, final String key) {
+        throw new UnsupportedOperationException("Private data is not emulated");
+    }
+
+    @Override
+    public byte[] getPrivateDataValidationParameter(final String collection, final String key) {
+        throw new UnsupportedOperationException("Private data is not emulated");
+    }
+
+    @Override
+    public void putPrivateData(final String collection, final String key, final byte[] value) {
+        throw new UnsupportedOperationException("Private data is not emulated");
+    }
+
+    @Override
+    public void setPrivateDataValidationParameter(final String collection, final String key, final byte[] value) {
+        throw new UnsupportedOperationException("Private data is not emulated");
+    }
+
+    @Override
+    public void delPrivateData(final String collection, final String key) {
+        throw new UnsupportedOperationException("Private data is not emulated");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByRange(final String collection, final String startKey, final String endKey) {
+        throw new UnsupportedOperationException("Private data is not emulated");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final String compositeKey) {
+        throw new UnsupportedOperationException("Private data is not emulated");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final CompositeKey compositeKey) {
+        throw new UnsupportedOperationException("Private data is not emulated");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final String objectType,
+                                                                              final String... attributes) {
+        throw new UnsupportedOperationException("Private data is not emulated");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataQueryResult(final String collection, final String query) {
+        throw new UnsupportedOperationException("Private data is not emulated");
+    }
+
+    @Override
+    public void setEvent(final String name, final byte[] payload) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("event name can not be nil string");
+        }
+
+        event = ChaincodeEvent.newBuilder()
+                .setChaincodeId(ledger.getChaincodeId())
+                .setTxId(txId)
+                .setEventName(name)
+                .setPayload(ByteString.copyFrom(payload))
+                .build();
+    }
+
+    @Override
+    public ChaincodeEvent getEvent() {
+        return event;
+    }
+
+    @Override
+    public SignedProposal getSignedProposal() {
+        return null;
+    }
+
+    @Override
+    public Instant getTxTimestamp() {
+        return txTimestamp;
+    }
+
+    @Override
+    public byte[] getCreator() {
+        return CREATOR.clone();
+    }
+
+    @Override
+    public Map<String, byte[]> getTransient() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public byte[] getBinding() {
+        return new byte[0];
+    }
+
+    @Override
+    public String getMspId() {
+        return MSP_ID;
+    }
+
+    private void checkWritable() {
+        if (paginated) {
+            throw new IllegalStateException(String.format("txid [%s]: Transaction has already performed a paginated query. Writes are not allowed", txId));
+        }
+    }
+
+    private void checkPaginationAllowed() {
+        if (!writeSet.isEmpty()) {
+            throw new IllegalStateException(String.format("txid [%s]: Paginated queries are not allowed in a transaction that writes", txId));
+        }
+
+        paginated = true;
+    }
+
+    private QueryResultsIteratorWithMetadata<KeyValue> page(final String startKey, final String endKey, final int pageSize, final String bookmark) {
+        checkPaginationAllowed();
+
+        // the bookmark is the first key of the next page, so the query resumes right where the previous page ended
+        String from = bookmark == null || bookmark.isEmpty() || bookmark.compareTo(startKey) < 0 ? startKey : bookmark;
+        List<KeyValue> page = new ArrayList<>();
+        String nextBookmark = "";
+
+        for (Map.Entry<String, VersionedValue> entry : ledger.range(from, endKey).entrySet()) {
+            if (page.size() == pageSize) {
+                nextBookmark = entry.getKey();
+                break;
+            }
+
+            page.add(new LedgerKeyValue(entry.getKey(), entry.getValue().getValue()));
+        }
+
+        return new PageIterator(page, nextBookmark);
+    }
+}
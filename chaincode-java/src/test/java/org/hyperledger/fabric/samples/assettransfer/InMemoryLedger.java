@@ -0,0 +1,349 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import org.hyperledger.fabric.protos.peer.ChaincodeEventPackage.ChaincodeEvent;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+
+/**
+ * Committed world state of a single-peer channel, for replaying transactions offline.
+ *
+ * Transactions are simulated with {@link #newTransaction(String)} against the state committed so far and then
+ * committed in blocks with {@link #commit(List)}. Like the peer's validator, a block checks each transaction in
+ * order against the state left by the valid transactions before it: a transaction whose read set or range
+ * queries no longer match is marked invalid and its writes are discarded.
+ */
+public final class InMemoryLedger {
+
+    /**
+     * Outcome of validating one transaction, named after the peer's TxValidationCode.
+     */
+    public enum ValidationCode {
+        VALID,
+        MVCC_READ_CONFLICT,
+        PHANTOM_READ_CONFLICT
+    }
+
+    /**
+     * Version of a committed key: the block and the position in the block of the transaction that wrote it.
+     */
+    static final class Version {
+
+        private final long blockNumber;
+        private final int txNumber;
+
+        Version(final long blockNumber, final int txNumber) {
+            this.blockNumber = blockNumber;
+            this.txNumber = txNumber;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if ((obj == null) || (getClass() != obj.getClass())) {
+                return false;
+            }
+
+            Version other = (Version) obj;
+
+            return blockNumber == other.blockNumber && txNumber == other.txNumber;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(blockNumber, txNumber);
+        }
+
+        @Override
+        public String toString() {
+            return blockNumber + ":" + txNumber;
+        }
+    }
+
+    static final class VersionedValue {
+
+        private final byte[] value;
+        private final Version version;
+
+        VersionedValue(final byte[] value, final Version version) {
+            this.value = value;
+            this.version = version;
+        }
+
+        byte[] getValue() {
+            return value;
+        }
+
+        Version getVersion() {
+            return version;
+        }
+    }
+
+    private static final class Modification implements KeyModification {
+
+        private final String txId;
+        private final byte[] value;
+        private final Instant timestamp;
+
+        Modification(final String txId, final byte[] value, final Instant timestamp) {
+            this.txId = txId;
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public String getTxId() {
+            return txId;
+        }
+
+        @Override
+        public byte[] getValue() {
+            return value == null ? new byte[0] : value;
+        }
+
+        @Override
+        public String getStringValue() {
+            return new String(getValue());
+        }
+
+        @Override
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public boolean isDeleted() {
+            return value == null;
+        }
+    }
+
+    /**
+     * Validation codes of one committed block, in transaction order.
+     */
+    public static final class BlockResult {
+
+        private final long blockNumber;
+        private final List<ValidationCode> codes;
+
+        BlockResult(final long blockNumber, final List<ValidationCode> codes) {
+            this.blockNumber = blockNumber;
+            this.codes = Collections.unmodifiableList(codes);
+        }
+
+        public long getBlockNumber() {
+            return blockNumber;
+        }
+
+        public List<ValidationCode> getCodes() {
+            return codes;
+        }
+
+        public int getValidCount() {
+            return (int) codes.stream().filter(code -> code == ValidationCode.VALID).count();
+        }
+
+        public int getInvalidCount() {
+            return codes.size() - getValidCount();
+        }
+    }
+
+    // Transaction timestamps advance one millisecond per transaction from a fixed origin, so replays are repeatable.
+    private static final Instant ORIGIN = Instant.parse("2023-01-01T00:00:00Z");
+
+    private final NavigableMap<String, VersionedValue> state = new TreeMap<>();
+    private final Map<String, List<KeyModification>> history = new HashMap<>();
+    private final List<ChaincodeEvent> events = new ArrayList<>();
+    private final String chaincodeId;
+    private final boolean recordHistory;
+
+    private long height;
+    private long transactionCount;
+    private Duration clockOffset = Duration.ZERO;
+    private long validCount;
+
+    public InMemoryLedger() {
+        this("basic", true);
+    }
+
+    /**
+     * @param chaincodeId the chaincode name reported in events
+     * @param recordHistory whether to keep key history and committed events; turn it off for very large replays
+     */
+    public InMemoryLedger(final String chaincodeId, final boolean recordHistory) {
+        this.chaincodeId = chaincodeId;
+        this.recordHistory = recordHistory;
+    }
+
+    /**
+     * Moves the timestamps of the transactions started from now on forward, e.g. past the delay a sweep waits for.
+     *
+     * @param duration how far to move the clock
+     */
+    public void advanceClock(final Duration duration) {
+        clockOffset = clockOffset.plus(duration);
+    }
+
+    /**
+     * Starts simulating a transaction against the state committed so far.
+     *
+     * @param txId the transaction ID
+     * @return the stub to run the transaction with
+     */
+    public InMemoryChaincodeStub newTransaction(final String txId) {
+        return newTransaction(txId, null);
+    }
+
+    /**
+     * Starts simulating a transaction whose stub reports the given function name, as the contract router would see it.
+     *
+     * @param txId the transaction ID
+     * @param function the function name returned by getFunction
+     * @return the stub to run the transaction with
+     */
+    public InMemoryChaincodeStub newTransaction(final String txId, final String function) {
+        return newInvocation(txId, function == null ? Collections.emptyList() : Collections.singletonList(function));
+    }
+
+    /**
+     * Starts simulating a transaction invoked with the given arguments, so it can be run through ContractRouter.invoke.
+     *
+     * @param txId the transaction ID
+     * @param args the function name, e.g. basic:ReadAsset, followed by the transaction parameters
+     * @return the stub to run the transaction with
+     */
+    public InMemoryChaincodeStub newInvocation(final String txId, final List<String> args) {
+        transactionCount++;
+        return new InMemoryChaincodeStub(this, txId, ORIGIN.plus(clockOffset).plusMillis(transactionCount), Collections.unmodifiableList(new ArrayList<>(args)));
+    }
+
+    /**
+     * Validates the simulated transactions in order and commits the writes of the valid ones as the next block.
+     *
+     * @param transactions the transactions of the block
+     * @return the validation code of each transaction
+     */
+    public BlockResult commit(final List<InMemoryChaincodeStub> transactions) {
+        long blockNumber = height++;
+        List<ValidationCode> codes = new ArrayList<>();
+
+        for (int txNumber = 0; txNumber < transactions.size(); txNumber++) {
+            InMemoryChaincodeStub transaction = transactions.get(txNumber);
+            ValidationCode code = transaction.validate();
+            codes.add(code);
+
+            if (code != ValidationCode.VALID) {
+                continue;
+            }
+
+            Version version = new Version(blockNumber, txNumber);
+
+            for (Map.Entry<String, byte[]> write : transaction.getWriteSet().entrySet()) {
+                if (write.getValue() == null) {
+                    state.remove(write.getKey());
+                } else {
+                    state.put(write.getKey(), new VersionedValue(write.getValue(), version));
+                }
+
+                if (recordHistory) {
+                    history.computeIfAbsent(write.getKey(), key -> new ArrayList<>())
+                            .add(0, new Modification(transaction.getTxId(), write.getValue(), transaction.getTxTimestamp()));
+                }
+            }
+
+            if (recordHistory && transaction.getEvent() != null) {
+                events.add(transaction.getEvent());
+            }
+
+            validCount++;
+        }
+
+        return new BlockResult(blockNumber, codes);
+    }
+
+    /**
+     * Simulates and commits a single transaction in its own block.
+     *
+     * @param transaction the transaction
+     * @return its validation code
+     */
+    public ValidationCode commit(final InMemoryChaincodeStub transaction) {
+        return commit(Collections.singletonList(transaction)).getCodes().get(0);
+    }
+
+    public long getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the number of transactions committed as valid
+     */
+    public long getValidCount() {
+        return validCount;
+    }
+
+    /**
+     * @return the events of the valid transactions, in commit order
+     */
+    public List<ChaincodeEvent> getEvents() {
+        return Collections.unmodifiableList(events);
+    }
+
+    /**
+     * @return a copy of the committed world state, without versions
+     */
+    public Map<String, byte[]> snapshot() {
+        Map<String, byte[]> copy = new LinkedHashMap<>();
+
+        for (Map.Entry<String, VersionedValue> entry : state.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().getValue());
+        }
+
+        return copy;
+    }
+
+    String getChaincodeId() {
+        return chaincodeId;
+    }
+
+    VersionedValue get(final String key) {
+        return state.get(key);
+    }
+
+    /**
+     * @param startKey the first key, inclusive
+     * @param endKey the last key, exclusive; empty for no upper bound
+     * @return the committed keys in the range, in key order
+     */
+    NavigableMap<String, VersionedValue> range(final String startKey, final String endKey) {
+        if (endKey.isEmpty()) {
+            return state.tailMap(startKey, true);
+        }
+
+        if (startKey.compareTo(endKey) >= 0) {
+            return Collections.emptyNavigableMap();
+        }
+
+        return state.subMap(startKey, true, endKey, false);
+    }
+
+    List<KeyModification> history(final String key) {
+        return history.getOrDefault(key, Collections.emptyList());
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.samples.assettransfer.InMemoryLedger.BlockResult;
+import org.hyperledger.fabric.samples.assettransfer.InMemoryLedger.ValidationCode;
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public final class InMemoryLedgerTest {
+
+    // the stub carries a parseable creator, so the contract gets the same AccountContext as on a peer
+    private static Context contextOf(final InMemoryChaincodeStub stub) {
+        return new AssetTransfer().createContext(stub);
+    }
+
+    private static void put(final InMemoryLedger ledger, final String key, final String value) {
+        InMemoryChaincodeStub stub = ledger.newTransaction("put-" + key + "-" + ledger.getHeight());
+        stub.putStringState(key, value);
+        assertThat(ledger.commit(stub)).isEqualTo(ValidationCode.VALID);
+    }
+
+    @Nested
+    class Validation {
+
+        @Test
+        public void whenReadingOwnWrites() {
+            InMemoryLedger ledger = new InMemoryLedger();
+            put(ledger, "asset1", "a");
+
+            InMemoryChaincodeStub stub = ledger.newTransaction("tx1");
+            stub.putStringState("asset1", "b");
+            stub.putStringState("asset2", "c");
+
+            assertThat(stub.getStringState("asset1")).isEqualTo("a");
+            assertThat(stub.getStringState("asset2")).isEmpty();
+            assertThat(ledger.snapshot()).doesNotContainKey("asset2");
+        }
+
+        @Test
+        public void whenReadKeyChangedInSameBlock() {
+            InMemoryLedger ledger = new InMemoryLedger();
+            put(ledger, "asset1", "a");
+
+            InMemoryChaincodeStub first = ledger.newTransaction("tx1");
+            first.getState("asset1");
+            first.putStringState("asset1", "b");
+            InMemoryChaincodeStub second = ledger.newTransaction("tx2");
+            second.getState("asset1");
+            second.putStringState("asset1", "c");
+            InMemoryChaincodeStub blind = ledger.newTransaction("tx3");
+            blind.putStringState("asset1", "d");
+
+            BlockResult result = ledger.commit(Arrays.asList(first, second, blind));
+
+            assertThat(result.getCodes()).containsExactly(ValidationCode.VALID, ValidationCode.MVCC_READ_CONFLICT, ValidationCode.VALID);
+            assertThat(new String(ledger.snapshot().get("asset1"))).isEqualTo("d");
+        }
+
+        @Test
+        public void whenReadKeyWasCreatedMeanwhile() {
+            InMemoryLedger ledger = new InMemoryLedger();
+
+            InMemoryChaincodeStub check = ledger.newTransaction("tx1");
+            check.getState("asset1");
+            check.putStringState("asset1", "a");
+            put(ledger, "asset1", "b");
+
+            assertThat(ledger.commit(check)).isEqualTo(ValidationCode.MVCC_READ_CONFLICT);
+        }
+
+        @Test
+        public void whenRangeGainsKey() {
+            InMemoryLedger ledger = new InMemoryLedger();
+            put(ledger, new CompositeKey("delta", "tx0").toString(), "1");
+
+            InMemoryChaincodeStub sweep = ledger.newTransaction("tx1");
+            QueryResultsIterator<KeyValue> results = sweep.getStateByPartialCompositeKey("delta");
+            results.forEach(result -> sweep.delState(result.getKey()));
+            put(ledger, new CompositeKey("delta", "tx2").toString(), "1");
+
+            assertThat(ledger.commit(sweep)).isEqualTo(ValidationCode.PHANTOM_READ_CONFLICT);
+        }
+
+        @Test
+        public void whenRangeGainsKeyAfterEarlyStop() {
+            InMemoryLedger ledger = new InMemoryLedger();
+            put(ledger, new CompositeKey("delta", "tx0").toString(), "1");
+            put(ledger, new CompositeKey("delta", "tx1").toString(), "1");
+
+            InMemoryChaincodeStub sweep = ledger.newTransaction("tx2");
+            KeyValue first = sweep.getStateByPartialCompositeKey("delta").iterator().next();
+            sweep.delState(first.getKey());
+            put(ledger, new CompositeKey("delta", "tx3").toString(), "1");
+
+            assertThat(ledger.commit(sweep)).isEqualTo(ValidationCode.VALID);
+        }
+
+        @Test
+        public void whenRangeSkipsCompositeKeys() {
+            InMemoryLedger ledger = new InMemoryLedger();
+            put(ledger, "asset1", "a");
+            put(ledger, new CompositeKey("owner~accountId", "A", "asset1").toString(), "x");
+
+            List<String> keys = new ArrayList<>();
+            ledger.newTransaction("tx1").getStateByRange("", "").forEach(result -> keys.add(result.getKey()));
+
+            assertThat(keys).containsExactly("asset1");
+        }
+
+        @Test
+        public void whenPaginatedQueryIsFollowedByWrite() {
+            InMemoryLedger ledger = new InMemoryLedger();
+            put(ledger, "asset1", "a");
+            put(ledger, "asset2", "b");
+
+            InMemoryChaincodeStub stub = ledger.newTransaction("tx1");
+            List<String> keys = new ArrayList<>();
+            stub.getStateByRangeWithPagination("", "", 1, "").forEach(result -> keys.add(result.getKey()));
+            String bookmark = stub.getStateByRangeWithPagination("", "", 1, "").getMetadata().getBookmark();
+            stub.getStateByRangeWithPagination("", "", 1, bookmark).forEach(result -> keys.add(result.getKey()));
+
+            Throwable thrown = catchThrowable(() -> {
+                stub.putStringState("asset3", "c");
+            });
+
+            assertThat(keys).containsExactly("asset1", "asset2");
+            assertThat(thrown).isInstanceOf(IllegalStateException.class);
+        }
+
+        @Test
+        public void whenRichQueryIsFollowedByWrite() {
+            InMemoryLedger ledger = new InMemoryLedger();
+            put(ledger, "asset1", "{\"owner\":\"A\"}");
+            put(ledger, "asset2", "{\"owner\":\"B\"}");
+            put(ledger, "asset3", "{\"owner\":\"A\"}");
+
+            InMemoryChaincodeStub stub = ledger.newTransaction("tx1");
+            List<String> keys = new ArrayList<>();
+            stub.getQueryResult("{\"selector\":{\"owner\":\"A\"}}").forEach(result -> keys.add(result.getKey()));
+            stub.putStringState("asset4", "{\"owner\":\"A\"}");
+
+            assertThat(keys).containsExactly("asset1", "asset3");
+            assertThat(ledger.commit(stub)).isEqualTo(ValidationCode.VALID);
+        }
+
+        @Test
+        public void whenTransactionIsInvalid() {
+            InMemoryLedger ledger = new InMemoryLedger();
+            put(ledger, "asset1", "a");
+
+            InMemoryChaincodeStub first = ledger.newTransaction("tx1");
+            first.getState("asset1");
+            first.putStringState("asset1", "b");
+            first.setEvent("Changed", "tx1".getBytes());
+            InMemoryChaincodeStub second = ledger.newTransaction("tx2");
+            second.getState("asset1");
+            second.putStringState("asset1", "c");
+            second.setEvent("Changed", "tx2".getBytes());
+
+            ledger.commit(Arrays.asList(first, second));
+
+            assertThat(ledger.getEvents()).hasSize(1);
+            assertThat(ledger.getEvents().get(0).getTxId()).isEqualTo("tx1");
+            assertThat(ledger.newTransaction("tx3").getHistoryForKey("asset1")).hasSize(2);
+        }
+    }
+
+    @Nested
+    class Invocation {
+
+        @Test
+        public void whenInvokedWithArguments() {
+            InMemoryLedger ledger = new InMemoryLedger();
+            InMemoryChaincodeStub stub = ledger.newInvocation("tx1", Arrays.asList("basic:ReadAsset", "asset1"));
+
+            assertThat(stub.getFunction()).isEqualTo("basic:ReadAsset");
+            assertThat(stub.getParameters()).containsExactly("asset1");
+            assertThat(stub.getStringArgs()).containsExactly("basic:ReadAsset", "asset1");
+            assertThat(stub.getArgs()).hasSize(2);
+        }
+    }
+
+    @Nested
+    class AssetTransferUnderLoad {
+
+        private static final int USERS = 200;
+        private static final int BLOCK_SIZE = 100;
+
+        private final AssetTransfer contract = new AssetTransfer();
+
+        private InMemoryLedger newLedger() {
+            InMemoryLedger ledger = new InMemoryLedger();
+            List<InMemoryChaincodeStub> block = new ArrayList<>();
+
+            for (int i = 0; i < USERS; i++) {
+                InMemoryChaincodeStub stub = ledger.newTransaction("create-user" + i);
+                contract.CreateAsset(contextOf(stub), "user" + i, "owner" + i, "1000000", AccountType.USER.name());
+                block.add(stub);
+            }
+
+            InMemoryChaincodeStub company = ledger.newTransaction("create-company");
+            contract.CreateAsset(contextOf(company), "company", "creativehill", "100000000", AccountType.COMPANY.name());
+            block.add(company);
+
+            InMemoryChaincodeStub commission = ledger.newTransaction("create-commission");
+            contract.CreateAsset(contextOf(commission), "commission", "creativehill", "0", AccountType.COMMISSION.name());
+            block.add(commission);
+
+            assertThat(ledger.commit(block).getInvalidCount()).isZero();
+            return ledger;
+        }
+
+        private BlockResult transferBlock(final InMemoryLedger ledger, final String prefix, final String[][] transfers) {
+            List<InMemoryChaincodeStub> block = new ArrayList<>();
+
+            for (int i = 0; i < transfers.length; i++) {
+                InMemoryChaincodeStub stub = ledger.newTransaction(prefix + i);
+
+                try {
+                    contract.TransferAccount(contextOf(stub), transfers[i][0], transfers[i][1], "1000");
+                    block.add(stub);
+                } catch (ChaincodeException e) {
+                    // failed endorsement, never reaches the orderer
+                }
+            }
+
+            return ledger.commit(block);
+        }
+
+        @Test
+        public void whenFeeBearingTransfersAreDisjoint() {
+            InMemoryLedger ledger = newLedger();
+            String[][] transfers = new String[BLOCK_SIZE][];
+
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                transfers[i] = new String[] {"user" + (2 * i), "user" + (2 * i + 1)};
+            }
+
+            // every transfer pays commission, yet none of them read the commission account or the stats base
+            assertThat(transferBlock(ledger, "tx", transfers).getInvalidCount()).isZero();
+            assertThat(contract.GetCommissionAccount(contextOf(ledger.newTransaction("read"))).getAmount()).isEqualTo((long) BLOCK_SIZE);
+        }
+
+        @Test
+        public void whenHotAccountIsSharded() {
+            InMemoryLedger ledger = newLedger();
+            String[][] transfers = new String[BLOCK_SIZE][];
+
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                transfers[i] = new String[] {"company", "user" + i};
+            }
+
+            assertThat(transferBlock(ledger, "hot", transfers).getValidCount()).isEqualTo(1);
+
+            InMemoryChaincodeStub shard = ledger.newTransaction("shard");
+            contract.ShardAccount(contextOf(shard), "company", String.valueOf(ShardedBalance.MAX_SHARDS));
+            assertThat(ledger.commit(shard)).isEqualTo(ValidationCode.VALID);
+
+            assertThat(transferBlock(ledger, "sharded", transfers).getValidCount()).isGreaterThan(BLOCK_SIZE / 4);
+        }
+
+        @Test
+        public void whenReplayingRandomTransfers() {
+            InMemoryLedger ledger = newLedger();
+            Random random = new Random(42);
+            int blocks = 20;
+            int valid = 0;
+
+            for (int b = 0; b < blocks; b++) {
+                String[][] transfers = new String[BLOCK_SIZE][];
+
+                for (int i = 0; i < BLOCK_SIZE; i++) {
+                    int sender = random.nextInt(USERS);
+                    transfers[i] = new String[] {"user" + sender, "user" + ((sender + 1 + random.nextInt(USERS - 1)) % USERS)};
+                }
+
+                valid += transferBlock(ledger, "b" + b + "-", transfers).getValidCount();
+            }
+
+            // balances and fees stay consistent whatever was rejected
+            LedgerStats stats = contract.GetLedgerStats(contextOf(ledger.newTransaction("stats")));
+            assertThat(stats.getTotalSupply()).isEqualTo(USERS * 1000000L + 100000000L);
+
+            // Only account keys conflict: a transfer is valid when neither account was written earlier in its block.
+            // With 100 random pairs of 200 users that holds for about half of each block (1003 of 2000 on average over
+            // seeds, 961 to 1046 across 2000 of them), so more conflicts mean a shared key slipped into the read set.
+            assertThat(valid).isBetween(blocks * BLOCK_SIZE * 45 / 100, blocks * BLOCK_SIZE * 55 / 100);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.owlike.genson.Genson;
+import com.owlike.genson.JsonBindingException;
+
+/**
+ * CouchDB stand-in for the Mango queries the contract sends with getQueryResult and getQueryResultWithPagination.
+ *
+ * Supports top-level field conditions with $eq, $gt, $gte, $lt, $lte, $in and $exists (a plain value means $eq),
+ * and a sort on top-level fields. Values that are not JSON objects are never matched, as CouchDB keeps them as
+ * attachments. Like CouchDB, a sorted query fails unless one of the indexes shipped in META-INF/statedb/couchdb/indexes
+ * starts with the sort fields and has all its fields in the selector.
+ */
+final class InMemoryRichQuery {
+
+    private static final Path INDEX_DIR = Paths.get("META-INF", "statedb", "couchdb", "indexes");
+
+    private static Genson genson = new Genson();
+
+    private final Map<String, Object> selector;
+    private final List<String> sortFields = new ArrayList<>();
+    private final boolean descending;
+
+    @SuppressWarnings("unchecked")
+    InMemoryRichQuery(final String query) {
+        Map<String, Object> parsed = genson.deserialize(query, Map.class);
+        this.selector = (Map<String, Object>) parsed.getOrDefault("selector", Collections.emptyMap());
+
+        boolean desc = false;
+
+        for (Object sort : (List<Object>) parsed.getOrDefault("sort", Collections.emptyList())) {
+            if (sort instanceof String) {
+                sortFields.add((String) sort);
+            } else {
+                Map.Entry<String, Object> field = ((Map<String, Object>) sort).entrySet().iterator().next();
+                sortFields.add(field.getKey());
+                desc = "desc".equals(field.getValue());
+            }
+        }
+
+        this.descending = desc;
+
+        if (!sortFields.isEmpty()) {
+            checkSortIndex();
+        }
+    }
+
+    /**
+     * @param state the committed world state in key order
+     * @return the keys and values matching the selector, in sort order
+     */
+    List<Map.Entry<String, byte[]>> run(final Collection<Map.Entry<String, byte[]>> state) {
+        List<Map.Entry<String, byte[]>> matches = new ArrayList<>();
+        List<Map<String, Object>> documents = new ArrayList<>();
+
+        for (Map.Entry<String, byte[]> entry : state) {
+            Map<String, Object> document = documentOf(entry.getValue());
+
+            if (document != null && matches(document)) {
+                matches.add(entry);
+                documents.add(document);
+            }
+        }
+
+        if (sortFields.isEmpty()) {
+            return matches;
+        }
+
+        List<Integer> order = new ArrayList<>();
+
+        for (int i = 0; i < matches.size(); i++) {
+            order.add(i);
+        }
+
+        Comparator<Integer> byFields = (a, b) -> {
+            for (String field : sortFields) {
+                int comparison = collate(documents.get(a).get(field), documents.get(b).get(field));
+
+                if (comparison != 0) {
+                    return comparison;
+                }
+            }
+
+            return matches.get(a).getKey().compareTo(matches.get(b).getKey());
+        };
+
+        order.sort(descending ? byFields.reversed() : byFields);
+
+        return order.stream().map(matches::get).collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> documentOf(final byte[] value) {
+        if (value == null || value.length == 0 || value[0] != '{') {
+            return null;
+        }
+
+        try {
+            return genson.deserialize(new String(value, StandardCharsets.UTF_8), Map.class);
+        } catch (JsonBindingException e) {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean matches(final Map<String, Object> document) {
+        for (Map.Entry<String, Object> condition : selector.entrySet()) {
+            Object value = document.get(condition.getKey());
+
+            if (!(condition.getValue() instanceof Map)) {
+                if (!equal(value, condition.getValue())) {
+                    return false;
+                }
+
+                continue;
+            }
+
+            for (Map.Entry<String, Object> operator : ((Map<String, Object>) condition.getValue()).entrySet()) {
+                if (!matches(value, operator.getKey(), operator.getValue())) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean matches(final Object value, final String operator, final Object operand) {
+        switch (operator) {
+            case "$eq":
+                return equal(value, operand);
+            case "$gt":
+                return comparable(value, operand) && collate(value, operand) > 0;
+            case "$gte":
+                return comparable(value, operand) && collate(value, operand) >= 0;
+            case "$lt":
+                return comparable(value, operand) && collate(value, operand) < 0;
+            case "$lte":
+                return comparable(value, operand) && collate(value, operand) <= 0;
+            case "$in":
+                return ((List<?>) operand).stream().anyMatch(candidate -> equal(value, candidate));
+            case "$exists":
+                return (value != null) == Boolean.TRUE.equals(operand);
+            default:
+                throw new UnsupportedOperationException(String.format("Operator %s is not emulated", operator));
+        }
+    }
+
+    private static boolean equal(final Object value, final Object operand) {
+        return comparable(value, operand) && collate(value, operand) == 0;
+    }
+
+    private static boolean comparable(final Object value, final Object operand) {
+        return value instanceof Number && operand instanceof Number || value instanceof String && operand instanceof String;
+    }
+
+    // CouchDB collation for the types used here: missing < numbers < strings
+    private static int collate(final Object a, final Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString()));
+        }
+
+        if (a instanceof String && b instanceof String) {
+            return ((String) a).compareTo((String) b);
+        }
+
+        return Integer.compare(rank(a), rank(b));
+    }
+
+    private static int rank(final Object value) {
+        if (value == null) {
+            return 0;
+        }
+
+        return value instanceof Number ? 1 : 2;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void checkSortIndex() {
+        if (!Files.isDirectory(INDEX_DIR)) {
+            throw new IllegalStateException(String.format("No CouchDB index definitions in %s", INDEX_DIR.toAbsolutePath()));
+        }
+
+        try (Stream<Path> files = Files.list(INDEX_DIR)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Map<String, Object> definition = genson.deserialize(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), Map.class);
+                List<Object> fields = (List<Object>) ((Map<String, Object>) definition.get("index")).get("fields");
+                List<String> names = new ArrayList<>();
+
+                for (Object field : fields) {
+                    names.add(field instanceof String ? (String) field : ((Map<String, Object>) field).keySet().iterator().next());
+                }
+
+                if (names.size() >= sortFields.size() && names.subList(0, sortFields.size()).equals(sortFields)
+                        && selector.keySet().containsAll(names)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        throw new IllegalStateException(String.format("No index exists for sort %s and selector %s", sortFields, selector.keySet()));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.junit.jupiter.api.Test;
+
+public final class StateCacheTest {
+
+    private final AccountCodec codec = new BinaryAccountCodec();
+
+    @Test
+    public void readsEachAccountFromThePeerOnce() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        Account account = new Account("asset1", "Blue", 100L, AccountType.USER);
+        when(stub.getState("account:asset1")).thenReturn(codec.encode(account));
+        StateCache state = new StateCache(stub, codec);
+
+        assertThat(state.getAccount("asset1")).isEqualTo(account);
+        assertThat(state.getAccount("asset1")).isEqualTo(account);
+        assertThat(state.getState("account:asset1")).isEqualTo(codec.encode(account));
+        verify(stub, times(1)).getState("account:asset1");
+    }
+
+    @Test
+    public void remembersMissingKeys() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        when(stub.getState("account:asset1")).thenReturn(new byte[0]);
+        StateCache state = new StateCache(stub, codec);
+
+        assertThat(state.getAccount("asset1")).isNull();
+        assertThat(state.getState("account:asset1")).isNull();
+        verify(stub, times(1)).getState("account:asset1");
+        verify(stub, times(1)).getState("asset1");
+    }
+
+    @Test
+    public void readsBackItsOwnWrites() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        Account account = new Account("asset1", "Blue", 100L, AccountType.USER);
+        Account updated = new Account("asset1", "Blue", 40L, AccountType.USER);
+        when(stub.getState("account:asset1")).thenReturn(codec.encode(account));
+        StateCache state = new StateCache(stub, codec);
+
+        assertThat(state.getAccount("asset1")).isEqualTo(account);
+        state.putAccount(updated);
+
+        assertThat(state.getAccount("asset1")).isEqualTo(updated);
+        verify(stub).putState("account:asset1", codec.encode(updated));
+
+        state.delState("account:asset1");
+
+        assertThat(state.getAccount("asset1")).isNull();
+        verify(stub, times(1)).getState("account:asset1");
+    }
+
+    @Test
+    public void movesLegacyAccountsOnWrite() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        Account account = new Account("asset1", "Blue", 100L, AccountType.USER);
+        Account updated = new Account("asset1", "Blue", 40L, AccountType.USER);
+        when(stub.getState("asset1")).thenReturn(codec.encode(account));
+        StateCache state = new StateCache(stub, codec);
+
+        assertThat(state.getAccount("asset1")).isEqualTo(account);
+        state.putAccount(updated);
+
+        verify(stub).putState("account:asset1", codec.encode(updated));
+        verify(stub).delState("asset1");
+    }
+
+    @Test
+    public void readsBackStringWrites() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        StateCache state = new StateCache(stub, codec);
+
+        state.putStringState("commission", "asset9");
+
+        assertThat(state.getStringState("commission")).isEqualTo("asset9");
+        verify(stub).putStringState("commission", "asset9");
+        verify(stub, times(0)).getStringState("commission");
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public final class TransactionMetricsTest {
+
+    private final AssetTransfer contract = new AssetTransfer();
+
+    private InMemoryLedger ledger;
+
+    @BeforeEach
+    public void createAccounts() {
+        ledger = new InMemoryLedger();
+
+        InMemoryChaincodeStub stub = ledger.newTransaction("create", "CreateAssetsBatch");
+        contract.CreateAssetsBatch(contract.createContext(stub), "[{\"accountId\": \"asset1\", \"owner\": \"A\", \"amount\": 2000, \"type\": \"USER\"},"
+                + " {\"accountId\": \"asset2\", \"owner\": \"B\", \"amount\": 0, \"type\": \"USER\"},"
+                + " {\"accountId\": \"asset3\", \"owner\": \"creativehill\", \"amount\": 0, \"type\": \"COMMISSION\"}]");
+        ledger.commit(stub);
+    }
+
+    @AfterEach
+    public void resetMetrics() {
+        TransactionMetrics.reset();
+    }
+
+    @Test
+    public void whenDisabled() {
+        Context ctx = contract.createContext(ledger.newTransaction("tx1", "AssetTransfer:TransferAccount"));
+
+        contract.beforeTransaction(ctx);
+        contract.afterTransaction(ctx, contract.TransferAccount(ctx, "asset1", "asset2", "100"));
+
+        assertThat(((AccountContext) ctx).getStateCache().getStats()).isNull();
+        assertThat(TransactionMetrics.render()).doesNotContain("TransferAccount");
+    }
+
+    @Test
+    public void whenTransactionSucceeds() {
+        TransactionMetrics.enableExport();
+        Context ctx = contract.createContext(ledger.newTransaction("tx1", "AssetTransfer:TransferAccount"));
+
+        contract.beforeTransaction(ctx);
+        contract.afterTransaction(ctx, contract.TransferAccount(ctx, "asset1", "asset2", "100"));
+
+        TransactionStats stats = ((AccountContext) ctx).getStateCache().getStats();
+        assertThat(stats.getName()).isEqualTo("TransferAccount");
+        assertThat(stats.getKeysRead()).isGreaterThanOrEqualTo(2);
+        assertThat(stats.getKeysWritten()).isGreaterThanOrEqualTo(2);
+        assertThat(TransactionMetrics.render())
+                .contains("chaincode_tx_total{tx=\"TransferAccount\",outcome=\"OK\"} 1")
+                .contains("chaincode_tx_seconds_count{tx=\"TransferAccount\"} 1");
+    }
+
+    @Test
+    public void whenRangeIsScanned() {
+        TransactionMetrics.enableExport();
+        Context ctx = contract.createContext(ledger.newTransaction("tx1", "GetAllAssets"));
+
+        contract.beforeTransaction(ctx);
+        contract.afterTransaction(ctx, contract.GetAllAssets(ctx));
+
+        assertThat(((AccountContext) ctx).getStateCache().getStats().getRangeRows()).isEqualTo(3);
+        assertThat(TransactionMetrics.render()).contains("chaincode_tx_range_rows_total{tx=\"GetAllAssets\"} 3");
+    }
+
+    @Test
+    public void whenTransactionFails() {
+        TransactionMetrics.enableExport();
+        Context ctx = contract.createContext(ledger.newTransaction("tx1", "TransferAccount"));
+
+        contract.beforeTransaction(ctx);
+        Throwable thrown = catchThrowable(() -> {
+            contract.TransferAccount(ctx, "asset1", "asset9", "100");
+        });
+
+        assertThat(thrown).isInstanceOf(ChaincodeException.class);
+        assertThat(TransactionMetrics.render()).contains("chaincode_tx_total{tx=\"TransferAccount\",outcome=\"ASSET_NOT_FOUND\"} 1");
+    }
+
+    @Test
+    public void whenTransactionThrowsUnexpectedly() {
+        TransactionMetrics.enableExport();
+        Context ctx = contract.createContext(ledger.newTransaction("tx1", "TransferAccount"));
+
+        contract.beforeTransaction(ctx);
+        Throwable thrown = catchThrowable(() -> {
+            contract.TransferAccount(ctx, "asset1", "asset2", "not a number");
+        });
+
+        Context next = contract.createContext(ledger.newTransaction("tx2", "ReadAsset"));
+        contract.beforeTransaction(next);
+        contract.afterTransaction(next, contract.ReadAsset(next, "asset1"));
+
+        assertThat(thrown).isInstanceOf(NumberFormatException.class);
+        assertThat(TransactionMetrics.render())
+                .contains("chaincode_tx_total{tx=\"TransferAccount\",outcome=\"ERROR\"} 1")
+                .contains("chaincode_tx_seconds_count{tx=\"TransferAccount\"} 0")
+                .contains("chaincode_tx_total{tx=\"ReadAsset\",outcome=\"OK\"} 1");
+    }
+}